@@ -74,6 +74,7 @@ public class ArscBlamer {
 
   /** Generates blame mappings. */
   public void blame() {
+    Object event = FlightRecorderEvents.beginBlame();
     Multimap<ResourceEntry, TypeChunk.Entry> entries = getResourceEntries();
     for (Entry<ResourceEntry, Collection<TypeChunk.Entry>> entry : entries.asMap().entrySet()) {
       ResourceEntry resourceEntry = entry.getKey();
@@ -93,6 +94,7 @@ public class ArscBlamer {
     for (TypeChunk.Entry entry : typeEntryToBlame.keySet()) {
       blameFromTypeChunkEntry(entry);
     }
+    FlightRecorderEvents.commitBlame(event, entries.keySet().size());
   }
 
   private void blameKeyOrType(Map<PackageChunk, List<ResourceEntry>[]> keyOrType,
@@ -19,6 +19,7 @@ package com.google.devrel.gmscore.tools.apk.arsc;
 import com.google.common.io.ByteArrayDataOutput;
 import com.google.common.io.ByteStreams;
 
+import javax.annotation.Nullable;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.ByteBuffer;
@@ -33,18 +34,59 @@ public final class BinaryResourceFile implements SerializableResource {
   /** The chunks contained in this resource file. */
   private final List<Chunk> chunks = new ArrayList<>();
 
+  /** The buffer this resource file was read from. Only absolute reads may be made against it. */
+  private final ByteBuffer source;
+
+  /** The bytes this resource file was read from, copied out of {@code source} if needed. */
+  @Nullable
+  private byte[] original;
+
   public BinaryResourceFile(byte[] buf) {
-    ByteBuffer buffer = ByteBuffer.wrap(buf).order(ByteOrder.LITTLE_ENDIAN);
+    this(buf, ParseOptions.DEFAULT);
+  }
+
+  /**
+   * Parses {@code buf} with the given options.
+   *
+   * @param buf The bytes of the resource file.
+   * @param options The options controlling how the file is parsed.
+   */
+  public BinaryResourceFile(byte[] buf, ParseOptions options) {
+    this(ByteBuffer.wrap(buf), options);
+    original = buf;
+  }
+
+  /**
+   * Parses the bytes between the position and limit of {@code buf} with the given options. The
+   * position, limit and mark of {@code buf} are never changed, and its contents are only read
+   * through absolute reads and private views. So several threads may parse the same buffer, such as
+   * a memory-mapped file, at once. Chunk offsets are relative to the position of {@code buf}.
+   *
+   * <p>Parsed chunks keep a view of {@code buf}, so it must not be modified while they are in use.
+   *
+   * @param buf The buffer containing the resource file.
+   * @param options The options controlling how the file is parsed.
+   */
+  public BinaryResourceFile(ByteBuffer buf, ParseOptions options) {
+    source = buf.slice().order(ByteOrder.LITTLE_ENDIAN);
+    Object event = FlightRecorderEvents.beginParse();
+    ParseListener listener = options.getListener();
+    long startNanos = listener == null ? 0 : System.nanoTime();
+    ByteBuffer buffer = source.duplicate().order(ByteOrder.LITTLE_ENDIAN);
     while (buffer.remaining() > 0) {
-      try {
-        chunks.add(Chunk.newInstance(buffer));
-      } catch (ZeroSizedChunk zeroSizedChunk) {
+      Chunk chunk = Chunk.tryNewInstance(buffer, null, options);
+      if (chunk == null) {
         // Obfuscators can create chunks that self-report a size of zero at the end such that seeking forward
         // seeks 0 bytes, preventing completion of parsing the file. In such cases we know no real data
         // can exist after this, so we're done.
         break;
       }
+      chunks.add(chunk);
     }
+    if (listener != null) {
+      listener.onFileParsed(source.limit(), System.nanoTime() - startNanos);
+    }
+    FlightRecorderEvents.commitParse(event, source.limit(), chunks.size());
   }
 
   /**
@@ -65,6 +107,17 @@ public final class BinaryResourceFile implements SerializableResource {
     return Collections.unmodifiableList(chunks);
   }
 
+  /** Returns the bytes this resource file was originally read from. */
+  byte[] getOriginalBytes() {
+    byte[] bytes = original;
+    if (bytes == null) {
+      bytes = new byte[source.limit()];
+      source.duplicate().get(bytes);
+      original = bytes;
+    }
+    return bytes;
+  }
+
   @Override
   public byte[] toByteArray() throws IOException {
     return toByteArray(false);
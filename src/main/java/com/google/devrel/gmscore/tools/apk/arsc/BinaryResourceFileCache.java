@@ -0,0 +1,100 @@
+package com.google.devrel.gmscore.tools.apk.arsc;
+
+import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.HashCode;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+import javax.annotation.Nullable;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * An in-memory cache of parsed {@link BinaryResourceFile}s, keyed by a SHA-256 hash of their bytes.
+ *
+ * <p>The cache is bounded by the total {@link RetainedSizeEstimator estimated retained size} of the
+ * cached files rather than by their number, and evicts the least recently used files first. It is
+ * safe for concurrent use, and concurrent requests for the same bytes parse them only once.
+ *
+ * <p>Cached files are shared between callers, so they must not be modified. Parse a private copy
+ * with {@link BinaryResourceFile#BinaryResourceFile(byte[])} to make changes.
+ */
+public final class BinaryResourceFileCache {
+
+  private final Cache<HashCode, BinaryResourceFile> cache;
+
+  /**
+   * Creates a new {@link BinaryResourceFileCache}.
+   *
+   * @param maximumRetainedSize The maximum total estimated retained size in bytes of the cache.
+   */
+  public BinaryResourceFileCache(long maximumRetainedSize) {
+    Preconditions.checkArgument(maximumRetainedSize > 0, "maximumRetainedSize must be positive.");
+    // Guava splits the weight limit between segments, so a single segment keeps the limit exact for
+    // large files. Reads don't lock, so this only serializes insertions.
+    cache = CacheBuilder.newBuilder()
+        .concurrencyLevel(1)
+        .maximumWeight(maximumRetainedSize)
+        .weigher((HashCode key, BinaryResourceFile file) ->
+            (int) Math.min(Integer.MAX_VALUE, RetainedSizeEstimator.estimate(file)))
+        .recordStats()
+        .build();
+  }
+
+  /**
+   * Returns the parsed form of {@code bytes}, parsing and caching it if it is not cached.
+   *
+   * <p>A file which is cached parses a copy of {@code bytes}, so the caller may modify or reuse the
+   * array once this returns. It must not be modified while this call is in progress.
+   *
+   * @param bytes The bytes of a resource file.
+   * @return The shared, parsed resource file.
+   */
+  public BinaryResourceFile get(byte[] bytes) {
+    HashCode key = Chunk.CONTENT_HASH_FUNCTION.hashBytes(bytes);
+    try {
+      // The parsed file keeps the array it was read from, which must stay in sync with the key.
+      return cache.get(key, () -> new BinaryResourceFile(bytes.clone()));
+    } catch (ExecutionException | UncheckedExecutionException ex) {
+      Throwable cause = ex.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw new IllegalStateException(cause);
+    }
+  }
+
+  /**
+   * Returns the cached file whose bytes hash to {@code contentHash}, or null if it is not cached.
+   *
+   * @param contentHash The SHA-256 hash of the file's bytes.
+   */
+  @Nullable
+  public BinaryResourceFile getIfPresent(HashCode contentHash) {
+    return cache.getIfPresent(contentHash);
+  }
+
+  /** Returns the number of cached files. */
+  public long size() {
+    return cache.size();
+  }
+
+  /** Returns the total estimated retained size in bytes of the cached files. */
+  public long getRetainedSize() {
+    long size = 0;
+    for (BinaryResourceFile file : cache.asMap().values()) {
+      size += RetainedSizeEstimator.estimate(file);
+    }
+    return size;
+  }
+
+  /** Returns the fraction of requests which were served from the cache. */
+  public double getHitRate() {
+    return cache.stats().hitRate();
+  }
+
+  /** Removes every file from the cache. */
+  public void clear() {
+    cache.invalidateAll();
+  }
+}
@@ -89,7 +89,14 @@ public final class BinaryResourceString {
       return "";
     }
 
-    return new String(buffer.array(), offset, length, type.charset());
+    if (buffer.hasArray()) {
+      return new String(buffer.array(), buffer.arrayOffset() + offset, length, type.charset());
+    }
+    byte[] data = new byte[length];
+    ByteBuffer view = buffer.duplicate();
+    view.position(offset);
+    view.get(data);
+    return new String(data, type.charset());
   }
 
   /**
@@ -102,10 +102,28 @@ public class BinaryResourceValue implements SerializableResource {
   private final int data;
 
   public static BinaryResourceValue create(ByteBuffer buffer) {
-    int size = (buffer.getShort() & 0xFFFF);
-    buffer.get();  // Unused
-    Type type = Type.fromCode(buffer.get());
-    int data = buffer.getInt();
+    BinaryResourceValue value = create(buffer, buffer.position());
+    buffer.position(buffer.position() + SIZE);
+    return value;
+  }
+
+  /**
+   * Creates a new {@link BinaryResourceValue} from the bytes at {@code offset}, using absolute reads
+   * so {@code buffer} is left unchanged.
+   *
+   * @param buffer The buffer containing the value.
+   * @param offset The offset of the value in {@code buffer}.
+   */
+  public static BinaryResourceValue create(ByteBuffer buffer, int offset) {
+    int size = (buffer.getShort(offset) & 0xFFFF);
+    // The byte at offset + 2 is unused
+    Type type = Type.fromCode(buffer.get(offset + 3));
+    int data = buffer.getInt(offset + 4);
+    return new BinaryResourceValue(size, type, data);
+  }
+
+  /** Creates a value from its already decoded fields. */
+  static BinaryResourceValue create(int size, Type type, int data) {
     return new BinaryResourceValue(size, type, data);
   }
 
@@ -5,7 +5,11 @@ import java.nio.ByteBuffer;
 
 /**
  * Thrown when {@link UnknownChunk} self-reported size is clearly bogus.
+ *
+ * @deprecated Bogus unknown chunks are no longer signalled with an exception. They are reported as
+ * {@link ParseIssue#BOGUS_UNKNOWN_CHUNK} to the {@link ParseDiagnostics} of the parse.
  */
+@Deprecated
 public class BogusUnknownChunkException extends RuntimeException {
 	private final UnknownChunk unknown;
 	private final ByteBuffer buffer;
@@ -21,12 +21,16 @@ import javax.annotation.Nullable;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableMap.Builder;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
 import com.google.common.io.LittleEndianDataOutputStream;
 import com.google.common.primitives.Shorts;
 
 import java.io.ByteArrayOutputStream;
 import java.io.DataOutput;
 import java.io.IOException;
+import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.util.Map;
@@ -89,6 +93,9 @@ public abstract class Chunk implements SerializableResource {
   /** The offset in bytes, from the start of the chunk, where the chunk size can be found. */
   private static final int CHUNK_SIZE_OFFSET = 4;
 
+  /** The hash function used for {@link #getContentHash()}. */
+  static final HashFunction CONTENT_HASH_FUNCTION = Hashing.sha256();
+
   /** The parent to this chunk, if any. */
   @Nullable
   private final Chunk parent;
@@ -102,8 +109,23 @@ public abstract class Chunk implements SerializableResource {
   /** Offset of this chunk from the start of the file. */
   protected final int offset;
 
+  /** The buffer this chunk was read from. Only absolute reads may be made against it. */
+  private final ByteBuffer source;
+
+  /** Lazily computed hash of the original bytes of this chunk. */
+  @Nullable
+  private HashCode contentHash;
+
+  /** The options this chunk was parsed with. Set before {@link #init} is called. */
+  ParseOptions options = ParseOptions.DEFAULT;
+
+  /** The problem which stopped this chunk from being fully read, if any. */
+  @Nullable
+  private ParseIssue failure;
+
   protected Chunk(ByteBuffer buffer, @Nullable Chunk parent) {
     this.parent = parent;
+    this.source = buffer;
     offset = buffer.position() - 2;
     headerSize = (buffer.getShort() & 0xFFFF);
     chunkSize = buffer.getInt();
@@ -147,15 +169,76 @@ public abstract class Chunk implements SerializableResource {
     return chunkSize;
   }
 
+  /** Returns the offset of this chunk from the start of the buffer it was read from. */
+  public final int getOffset() {
+    return offset;
+  }
+
+  /**
+   * Returns a copy of the bytes this chunk occupied in the buffer it was read from. Unlike
+   * {@link #toByteArray}, this does not reflect any modifications made to the chunk since.
+   */
+  public final byte[] getOriginalBytes() {
+    int end = Math.min(offset + getOriginalChunkSize(), source.limit());
+    byte[] bytes = new byte[Math.max(0, end - offset)];
+    ByteBuffer view = source.duplicate();
+    view.position(offset);
+    view.get(bytes);
+    return bytes;
+  }
+
+  /**
+   * Returns a SHA-256 hash of the bytes this chunk occupied in the buffer it was read from. Two
+   * chunks with the same hash were byte-for-byte identical when read, regardless of where they were
+   * located. Like {@link #getOriginalBytes()}, this does not reflect later modifications.
+   */
+  public final HashCode getContentHash() {
+    HashCode hash = contentHash;
+    if (hash == null) {
+      int end = Math.min(offset + getOriginalChunkSize(), source.limit());
+      ByteBuffer view = source.duplicate();
+      view.limit(Math.max(offset, end));
+      view.position(offset);
+      hash = CONTENT_HASH_FUNCTION.newHasher().putBytes(view).hash();
+      contentHash = hash;
+    }
+    return hash;
+  }
+
+  /** Returns the buffer this chunk was read from. */
+  final ByteBuffer getSource() {
+    return source;
+  }
+
+  /** Returns the options this chunk was parsed with. */
+  final ParseOptions getParseOptions() {
+    return options;
+  }
+
+  /** Reports a recovery from malformed input in this chunk that did not stop it being read. */
+  final void report(ParseIssue issue) {
+    options.reportIssue(issue, getType(), offset);
+  }
+
+  /**
+   * Marks this chunk as not fully read. Call this from {@link #init} instead of throwing, and return
+   * without reading further. The issue is reported once {@link #init} returns.
+   */
+  final void fail(ParseIssue issue) {
+    failure = issue;
+  }
+
   /**
    * Reposition the buffer after this chunk. Use this at the end of a Chunk constructor.
    * @param buffer The buffer to be repositioned.
+   * @return false if the chunk's reported size goes beyond the buffer, in which case it's unchanged.
    */
-  private final void seekToEndOfChunk(ByteBuffer buffer) {
+  private final boolean seekToEndOfChunk(ByteBuffer buffer) {
     int newPosition = offset + chunkSize;
-    if (newPosition > buffer.limit())
-      throw new IllegalStateException("Chunk's reported size goes beyond buffer capacity");
+    if (newPosition < offset || newPosition > buffer.limit())
+      return false;
     buffer.position(newPosition);
+    return true;
   }
 
   /**
@@ -222,6 +305,7 @@ public abstract class Chunk implements SerializableResource {
    */
   @Override
   public final byte[] toByteArray(boolean shrink) throws IOException {
+    Object event = parent == null ? FlightRecorderEvents.beginSerialize() : null;
     ByteBuffer header = ByteBuffer.allocate(getHeaderSize()).order(ByteOrder.LITTLE_ENDIAN);
     writeHeader(header, 0);  // The chunk size isn't known yet. This will be filled in later.
     ByteArrayOutputStream baos = new ByteArrayOutputStream();
@@ -238,6 +322,9 @@ public abstract class Chunk implements SerializableResource {
     ByteBuffer result = ByteBuffer.allocate(chunkSize).order(ByteOrder.LITTLE_ENDIAN);
     result.put(header.array());
     result.put(payloadBytes);
+    if (event != null) {
+      FlightRecorderEvents.commitSerialize(event, getType(), chunkSize, shrink);
+    }
     return result.array();
   }
 
@@ -257,82 +344,143 @@ public abstract class Chunk implements SerializableResource {
    * @param buffer A buffer positioned at the start of a chunk.
    * @param parent The parent to this chunk (or null if there's no parent).
    * @return new chunk
+   * @throws ZeroSizedChunk If the chunk reports a size of zero.
+   * @throws BufferUnderflowException If the buffer ends before the chunk's header.
    */
   @Nonnull
   public static Chunk newInstance(ByteBuffer buffer, @Nullable Chunk parent) {
+    ParseOptions options = parent == null ? ParseOptions.DEFAULT : parent.options;
+    ParseIssue issue = checkHeader(buffer);
+    if (issue == ParseIssue.ZERO_SIZED_CHUNK) {
+      throw new ZeroSizedChunk();
+    } else if (issue == ParseIssue.TRUNCATED_CHUNK) {
+      throw new BufferUnderflowException();
+    }
+    Chunk result = tryNewInstance(buffer, parent, options);
+    if (result == null) {
+      throw new IllegalStateException("Chunk at " + buffer.position() + " could not be read.");
+    }
+    return result;
+  }
+
+  /**
+   * Creates a new chunk whose contents start at {@code buffer}'s current position, or returns null
+   * if no chunk can be read there. Malformed input is reported to the diagnostics of
+   * {@code options} rather than thrown.
+   *
+   * <p>If null is returned, no further chunks can be read from the enclosing sequence.
+   */
+  @Nullable
+  static Chunk tryNewInstance(ByteBuffer buffer, @Nullable Chunk parent, ParseOptions options) {
+    int offset = buffer.position();
+    ParseIssue issue = checkHeader(buffer);
+    if (issue != null) {
+      Type type = buffer.remaining() >= 2 ? Type.fromCode(buffer.getShort(offset)) : Type.UNKNOWN;
+      options.reportIssue(issue, type, offset);
+      return null;
+    }
     short typeCode = buffer.getShort();
-    buffer.mark();
     if (typeCode == Type.NULL.code()) {
       // There are some obfuscated samples which rewrite the type-code of the XML chunk to be the null identifier.
-      // We'll see if this is such a case and handle it with XML if possible.
-      try {
-        return getChunk(buffer, parent, Type.XML.code());
-      } catch (Throwable t) {
-        // Not a valid XML chunk, reset the buffer position and treat it as a null chunk.
-        buffer.reset();
-      }
+      options.reportIssue(ParseIssue.NULL_TYPE_AS_XML, Type.NULL, offset);
+      typeCode = Type.XML.code();
     }
-    return getChunk(buffer, parent, typeCode);
+    return getChunk(buffer, parent, typeCode, options);
   }
 
-  @Nonnull
-  private static Chunk getChunk(ByteBuffer buffer, Chunk parent, short typeCode) {
+  /** Returns the issue which prevents a chunk being read at {@code buffer}'s position, or null. */
+  @Nullable
+  private static ParseIssue checkHeader(ByteBuffer buffer) {
+    if (buffer.remaining() < METADATA_SIZE) {
+      return ParseIssue.TRUNCATED_CHUNK;
+    } else if (buffer.getInt(buffer.position() + CHUNK_SIZE_OFFSET) == 0) {
+      // Obfuscators can create chunks that self-report a size of zero, which would never advance.
+      return ParseIssue.ZERO_SIZED_CHUNK;
+    }
+    return null;
+  }
+
+  @Nullable
+  private static Chunk getChunk(ByteBuffer buffer, @Nullable Chunk parent, short typeCode,
+                                ParseOptions options) {
     int start = buffer.position();
+    ParseListener listener = options.getListener();
+    long startNanos = listener == null ? 0 : System.nanoTime();
     Chunk result;
     Type type = Type.fromCode(typeCode);
+    try {
+      ParseFilter filter = options.getFilter();
+      if (filter != ParseFilter.ALL
+          && FilteredChunk.isRejected(buffer, start - 2, parent, type, filter)) {
+        result = new FilteredChunk(buffer, parent, type);
+      } else {
+        result = createChunk(buffer, parent, type);
+      }
+    } catch (RuntimeException e) {
+      // The header could not be read, such as a configuration running past the end of the buffer.
+      options.reportIssue(ParseIssue.MALFORMED_CHUNK, type, start - 2);
+      buffer.position(buffer.limit());
+      return null;
+    }
+    result.options = options;
+    try {
+      result.init(buffer);
+    } catch (RuntimeException e) {
+      result.fail(ParseIssue.MALFORMED_CHUNK);
+    }
+    if (result.failure == null && !result.seekToEndOfChunk(buffer)) {
+      result.fail(ParseIssue.CHUNK_EXCEEDS_BUFFER);
+    }
+    if (result.failure != null) {
+      result.report(result.failure);
+      if (result.failure == ParseIssue.BOGUS_UNKNOWN_CHUNK && parent != null) {
+        // Skip to the end of the containing chunk, treating the remainder as part of this chunk.
+        int containingSize = parent.getOriginalChunkSize();
+        buffer.position((int) Math.min(buffer.limit(), (long) start + containingSize));
+        ((UnknownChunk) result).setPatchedSize(containingSize - parent.getHeaderSize());
+      } else {
+        // Skip to the end of the buffer.
+        // If we're the top-most chunk this will be it, all parsing is done.
+        buffer.position(buffer.limit());
+      }
+    }
+    if (listener != null) {
+      listener.onChunkParsed(type, result.offset, result.getOriginalChunkSize(),
+          System.nanoTime() - startNanos);
+    }
+    return result;
+  }
+
+  private static Chunk createChunk(ByteBuffer buffer, @Nullable Chunk parent, Type type) {
     switch (type) {
       case STRING_POOL:
-        result = new StringPoolChunk(buffer, parent);
-        break;
+        return new StringPoolChunk(buffer, parent);
       case TABLE:
-        result = new ResourceTableChunk(buffer, parent);
-        break;
+        return new ResourceTableChunk(buffer, parent);
       case XML:
-        result = new XmlChunk(buffer, parent);
-        break;
+        return new XmlChunk(buffer, parent);
       case XML_START_NAMESPACE:
-        result = new XmlNamespaceStartChunk(buffer, parent);
-        break;
+        return new XmlNamespaceStartChunk(buffer, parent);
       case XML_END_NAMESPACE:
-        result = new XmlNamespaceEndChunk(buffer, parent);
-        break;
+        return new XmlNamespaceEndChunk(buffer, parent);
       case XML_START_ELEMENT:
-        result = new XmlStartElementChunk(buffer, parent);
-        break;
+        return new XmlStartElementChunk(buffer, parent);
       case XML_END_ELEMENT:
-        result = new XmlEndElementChunk(buffer, parent);
-        break;
+        return new XmlEndElementChunk(buffer, parent);
       case XML_CDATA:
-        result = new XmlCdataChunk(buffer, parent);
-        break;
+        return new XmlCdataChunk(buffer, parent);
       case XML_RESOURCE_MAP:
-        result = new XmlResourceMapChunk(buffer, parent);
-        break;
+        return new XmlResourceMapChunk(buffer, parent);
       case TABLE_PACKAGE:
-        result = new PackageChunk(buffer, parent);
-        break;
+        return new PackageChunk(buffer, parent);
       case TABLE_TYPE:
-        result = new TypeChunk(buffer, parent);
-        break;
+        return new TypeChunk(buffer, parent);
       case TABLE_TYPE_SPEC:
-        result = new TypeSpecChunk(buffer, parent);
-        break;
+        return new TypeSpecChunk(buffer, parent);
       case TABLE_LIBRARY:
-        result = new LibraryChunk(buffer, parent);
-        break;
+        return new LibraryChunk(buffer, parent);
       default:
-        result = new UnknownChunk(buffer, parent);
-    }
-    try {
-      result.init(buffer);
-      result.seekToEndOfChunk(buffer);
-    } catch (BogusUnknownChunkException bogus) {
-      bogus.skipToEndOfContainingChunk(parent, start);
-    } catch (Throwable t) {
-      // Skip to the end of the buffer.
-      // If we're the top-most chunk this will be it, all parsing is done.
-      buffer.position(buffer.limit());
+        return new UnknownChunk(buffer, parent);
     }
-    return result;
   }
 }
@@ -0,0 +1,142 @@
+package com.google.devrel.gmscore.tools.apk.arsc;
+
+import com.google.common.base.Preconditions;
+import com.google.common.hash.HashCode;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Archives resource files into a {@link ChunkStore} so that chunks which are byte-identical
+ * between files, such as unchanged {@link TypeChunk}s and {@link StringPoolChunk}s across builds,
+ * are only stored once.
+ *
+ * <p>A file is split along its chunk tree: every chunk without sub-chunks is one blob, while a
+ * {@link ChunkWithChunks} contributes a blob for its header and then the blobs of its children.
+ * Bytes which belong to no chunk, such as padding, become blobs of their own. The resulting
+ * {@link ChunkManifest} lists the blobs in file order.
+ */
+public final class ChunkArchive {
+
+  private final ChunkStore store;
+
+  /**
+   * Creates a new {@link ChunkArchive}.
+   *
+   * @param store The store that blobs are written to and read from.
+   */
+  public ChunkArchive(ChunkStore store) {
+    this.store = store;
+  }
+
+  /**
+   * Stores each distinct chunk of {@code file} that is not yet in the store.
+   *
+   * @param file The resource file to archive.
+   * @return The manifest needed to reconstruct {@code file}.
+   * @throws IOException Thrown if the store could not be written to.
+   */
+  public ChunkManifest archive(BinaryResourceFile file) throws IOException {
+    byte[] bytes = file.getOriginalBytes();
+    List<ChunkManifest.Segment> segments = new ArrayList<>();
+    int end = addChildren(bytes, file.getChunks(), 0, bytes.length, segments);
+    addRange(bytes, end, bytes.length, segments);
+    return new ChunkManifest(segments);
+  }
+
+  /**
+   * Reassembles the bytes of an archived file.
+   *
+   * @param manifest The manifest returned when the file was archived.
+   * @return The original bytes of the file.
+   * @throws IOException Thrown if a blob is missing from the store or has been corrupted.
+   */
+  public byte[] restoreBytes(ChunkManifest manifest) throws IOException {
+    byte[] result = new byte[manifest.getSize()];
+    int position = 0;
+    for (ChunkManifest.Segment segment : manifest.getSegments()) {
+      byte[] blob = store.get(segment.hash());
+      if (blob == null) {
+        throw new IOException("Chunk store is missing blob " + segment.hash());
+      }
+      if (blob.length != segment.length()
+          || !Chunk.CONTENT_HASH_FUNCTION.hashBytes(blob).equals(segment.hash())) {
+        throw new IOException("Chunk store has a corrupt blob " + segment.hash());
+      }
+      System.arraycopy(blob, 0, result, position, blob.length);
+      position += blob.length;
+    }
+    return result;
+  }
+
+  /**
+   * Reassembles and parses an archived file.
+   *
+   * @param manifest The manifest returned when the file was archived.
+   * @return The resource file.
+   * @throws IOException Thrown if a blob is missing from the store or has been corrupted.
+   */
+  public BinaryResourceFile restore(ChunkManifest manifest) throws IOException {
+    return new BinaryResourceFile(restoreBytes(manifest));
+  }
+
+  /**
+   * Adds the segments for {@code chunks}, which must lie within {@code [start, end)}, and the gaps
+   * between them. Returns the position after the last chunk.
+   */
+  private int addChildren(byte[] bytes, Collection<Chunk> chunks, int start, int end,
+                          List<ChunkManifest.Segment> segments) throws IOException {
+    int position = start;
+    for (Chunk chunk : chunks) {
+      int chunkStart = chunk.getOffset();
+      int chunkSize = chunk.getOriginalChunkSize();
+      int headerSize = chunk.getHeaderSize();
+      if (chunkStart < position || chunkSize <= 0 || chunkSize < headerSize
+          || (long) chunkStart + chunkSize > end) {
+        // Overlapping, empty or out of bounds, as seen with tampered chunk and header sizes.
+        // Whatever is left is kept as a single opaque blob by the caller.
+        break;
+      }
+      addRange(bytes, position, chunkStart, segments);
+      addChunk(bytes, chunk, segments);
+      position = chunkStart + chunkSize;
+    }
+    return position;
+  }
+
+  private void addChunk(byte[] bytes, Chunk chunk, List<ChunkManifest.Segment> segments)
+      throws IOException {
+    int start = chunk.getOffset();
+    int end = start + chunk.getOriginalChunkSize();
+    if (chunk instanceof ChunkWithChunks) {
+      int headerEnd = start + chunk.getHeaderSize();
+      addRange(bytes, start, headerEnd, segments);
+      Collection<Chunk> children = ((ChunkWithChunks) chunk).getChunks().values();
+      int childrenEnd = addChildren(bytes, children, headerEnd, end, segments);
+      addRange(bytes, childrenEnd, end, segments);
+    } else {
+      HashCode hash = chunk.getContentHash();
+      if (!store.contains(hash)) {
+        store.put(hash, chunk.getOriginalBytes());
+      }
+      segments.add(new ChunkManifest.Segment(hash, end - start));
+    }
+  }
+
+  private void addRange(byte[] bytes, int start, int end, List<ChunkManifest.Segment> segments)
+      throws IOException {
+    Preconditions.checkState(start <= end, "Negative range [%s, %s)", start, end);
+    if (start == end) {
+      return;
+    }
+    HashCode hash = Chunk.CONTENT_HASH_FUNCTION.hashBytes(bytes, start, end - start);
+    if (!store.contains(hash)) {
+      byte[] blob = new byte[end - start];
+      System.arraycopy(bytes, start, blob, 0, blob.length);
+      store.put(hash, blob);
+    }
+    segments.add(new ChunkManifest.Segment(hash, end - start));
+  }
+}
@@ -0,0 +1,251 @@
+package com.google.devrel.gmscore.tools.apk.arsc;
+
+import com.google.common.base.Preconditions;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * A table of contents of the chunks in a binary resource file, built by reading only chunk headers.
+ * Unlike {@link BinaryResourceFile}, no string pools, entries, attributes or configurations are
+ * decoded while scanning, so this is suited to jobs which only need to know which packages, types
+ * and configurations a file contains and how large each chunk is.
+ *
+ * <p>Chunks are numbered in the order they appear in the file, which is a depth-first order with
+ * parents before their children. Every chunk is described by five integers: its type code, offset,
+ * header size, size, and the number of its parent (or {@link #NO_PARENT}). See {@link #toArray()}.
+ *
+ * <p>Malformed input is handled the same way as {@link BinaryResourceFile}: the scan stops at the
+ * first chunk which cannot be read, and a bogus unknown chunk is treated as extending to the end of
+ * its container. Fields within a chunk's header are only read, and so only validated, on request.
+ */
+public final class ChunkIndex {
+
+  /** The parent number of top-level chunks. */
+  public static final int NO_PARENT = -1;
+
+  /** The number of integers describing each chunk in {@link #toArray()}. */
+  public static final int RECORD_SIZE = 5;
+
+  private static final int TYPE = 0;
+  private static final int OFFSET = 1;
+  private static final int HEADER_SIZE = 2;
+  private static final int SIZE = 3;
+  private static final int PARENT = 4;
+
+  /** The offset in bytes, from the start of a chunk, of the first field after its metadata. */
+  private static final int FIELDS_OFFSET = Chunk.METADATA_SIZE;
+
+  /** The offset in bytes, from the start of a type or type spec chunk, of its entry count. */
+  private static final int ENTRY_COUNT_OFFSET = 12;
+
+  /** The offset in bytes, from the start of a {@link TypeChunk}, of its configuration. */
+  private static final int CONFIGURATION_OFFSET = 20;
+
+  private final ByteBuffer buffer;
+  private int[] records = new int[RECORD_SIZE * 64];
+  private int count;
+
+  private ChunkIndex(ByteBuffer buffer) {
+    this.buffer = buffer;
+  }
+
+  /**
+   * Scans the chunks in a binary resource file.
+   *
+   * @param bytes The bytes of the file.
+   * @return The chunks in the file.
+   */
+  public static ChunkIndex scan(byte[] bytes) {
+    return scan(ByteBuffer.wrap(bytes));
+  }
+
+  /**
+   * Scans the chunks between the position and limit of {@code buffer}, which is not modified.
+   * Offsets are relative to the position of {@code buffer}, the same as {@link Chunk#getOffset()}
+   * for chunks parsed by {@link BinaryResourceFile#BinaryResourceFile(ByteBuffer, ParseOptions)}.
+   *
+   * @param buffer The buffer containing the file. The index keeps a view of it to read headers from.
+   * @return The chunks in the buffer.
+   */
+  public static ChunkIndex scan(ByteBuffer buffer) {
+    ChunkIndex index = new ChunkIndex(buffer.slice().order(ByteOrder.LITTLE_ENDIAN));
+    index.scan(0, index.buffer.limit(), NO_PARENT);
+    return index;
+  }
+
+  /**
+   * Scans a sequence of sibling chunks.
+   *
+   * @return false if a chunk could not be read, in which case nothing further in the file can be.
+   */
+  private boolean scan(int start, long end, int parent) {
+    int limit = buffer.limit();
+    int offset = start;
+    while (offset < end) {
+      if (limit - offset < Chunk.METADATA_SIZE || buffer.getInt(offset + 4) == 0) {
+        return false;
+      }
+      short typeCode = buffer.getShort(offset);
+      if (typeCode == Chunk.Type.NULL.code()) {
+        // Read as XML, since obfuscators rewrite the type code of XML chunks to the null type.
+        typeCode = Chunk.Type.XML.code();
+      }
+      Chunk.Type type = Chunk.Type.fromCode(typeCode);
+      int headerSize = buffer.getShort(offset + 2) & 0xFFFF;
+      int size = buffer.getInt(offset + 4);
+      int number = add(typeCode & 0xFFFF, offset, headerSize, size, parent);
+
+      if (type == Chunk.Type.UNKNOWN && isBogus(offset, headerSize, size)) {
+        if (parent == NO_PARENT) {
+          return false;
+        }
+        // The remainder of the container is treated as part of this chunk, as in UnknownChunk.
+        records[number * RECORD_SIZE + SIZE] =
+            records[parent * RECORD_SIZE + SIZE] - records[parent * RECORD_SIZE + HEADER_SIZE];
+        return true;
+      }
+      long chunkEnd = (long) offset + size;
+      if (isContainer(type) && !scan(offset + headerSize, chunkEnd, number)) {
+        return false;
+      }
+      if (size < 0 || chunkEnd > limit) {
+        return false;
+      }
+      offset = (int) chunkEnd;
+    }
+    return true;
+  }
+
+  private boolean isBogus(int offset, int headerSize, int size) {
+    int remaining = buffer.limit() - offset - Chunk.METADATA_SIZE;
+    int extraHeaderSize = headerSize - Chunk.METADATA_SIZE;
+    int payloadSize = size - headerSize;
+    return extraHeaderSize < 0 || extraHeaderSize > remaining
+        || payloadSize < 0 || payloadSize > remaining - extraHeaderSize;
+  }
+
+  private static boolean isContainer(Chunk.Type type) {
+    return type == Chunk.Type.TABLE || type == Chunk.Type.XML || type == Chunk.Type.TABLE_PACKAGE;
+  }
+
+  private int add(int type, int offset, int headerSize, int size, int parent) {
+    if ((count + 1) * RECORD_SIZE > records.length) {
+      records = Arrays.copyOf(records, records.length * 2);
+    }
+    int base = count * RECORD_SIZE;
+    records[base + TYPE] = type;
+    records[base + OFFSET] = offset;
+    records[base + HEADER_SIZE] = headerSize;
+    records[base + SIZE] = size;
+    records[base + PARENT] = parent;
+    return count++;
+  }
+
+  /** Returns the number of chunks in the file. */
+  public int size() {
+    return count;
+  }
+
+  /** Returns the type of chunk {@code number}. Chunks with the null type code are XML. */
+  public Chunk.Type getType(int number) {
+    return Chunk.Type.fromCode((short) get(number, TYPE));
+  }
+
+  /** Returns the raw type code of chunk {@code number}, including for unknown chunk types. */
+  public int getTypeCode(int number) {
+    return get(number, TYPE);
+  }
+
+  /** Returns the offset of chunk {@code number} from the start of the buffer. */
+  public int getOffset(int number) {
+    return get(number, OFFSET);
+  }
+
+  /** Returns the size of the header of chunk {@code number}. */
+  public int getHeaderSize(int number) {
+    return get(number, HEADER_SIZE);
+  }
+
+  /** Returns the size of chunk {@code number}, the same as {@link Chunk#getOriginalChunkSize()}. */
+  public int getChunkSize(int number) {
+    return get(number, SIZE);
+  }
+
+  /** Returns the number of the parent of chunk {@code number}, or {@link #NO_PARENT}. */
+  public int getParent(int number) {
+    return get(number, PARENT);
+  }
+
+  /**
+   * Returns the numbers of every chunk of {@code type}, in order.
+   *
+   * @param type The type of chunk to find.
+   * @return The numbers of the matching chunks.
+   */
+  public int[] find(Chunk.Type type) {
+    int[] result = new int[count];
+    int found = 0;
+    for (int i = 0; i < count; ++i) {
+      if (records[i * RECORD_SIZE + TYPE] == (type.code() & 0xFFFF)) {
+        result[found++] = i;
+      }
+    }
+    return Arrays.copyOf(result, found);
+  }
+
+  /** Returns the id of the {@link PackageChunk} numbered {@code number}. */
+  public int getPackageId(int number) {
+    return buffer.getInt(checkType(number, Chunk.Type.TABLE_PACKAGE) + FIELDS_OFFSET);
+  }
+
+  /** Returns the name of the {@link PackageChunk} numbered {@code number}. */
+  public String getPackageName(int number) {
+    int start = checkType(number, Chunk.Type.TABLE_PACKAGE) + FIELDS_OFFSET + 4;
+    return PackageUtils.peekPackageName(buffer, start);
+  }
+
+  /** Returns the (1-based) type id of the {@link TypeChunk} or {@link TypeSpecChunk} {@code number}. */
+  public int getTypeId(int number) {
+    return buffer.get(checkTypeOrSpec(number) + FIELDS_OFFSET) & 0xFF;
+  }
+
+  /** Returns the number of entries in the {@link TypeChunk} or {@link TypeSpecChunk} {@code number}. */
+  public int getEntryCount(int number) {
+    return buffer.getInt(checkTypeOrSpec(number) + ENTRY_COUNT_OFFSET);
+  }
+
+  /** Decodes the configuration of the {@link TypeChunk} numbered {@code number}. */
+  public BinaryResourceConfiguration getConfiguration(int number) {
+    ByteBuffer view = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+    view.position(checkType(number, Chunk.Type.TABLE_TYPE) + CONFIGURATION_OFFSET);
+    return BinaryResourceConfiguration.create(view);
+  }
+
+  /**
+   * Returns a copy of the records describing every chunk. Chunk {@code n} is described by the
+   * {@link #RECORD_SIZE} integers starting at {@code n * RECORD_SIZE}: type code, offset, header
+   * size, size, and parent number.
+   */
+  public int[] toArray() {
+    return Arrays.copyOf(records, count * RECORD_SIZE);
+  }
+
+  private int get(int number, int field) {
+    Preconditions.checkElementIndex(number, count);
+    return records[number * RECORD_SIZE + field];
+  }
+
+  private int checkType(int number, Chunk.Type type) {
+    Preconditions.checkArgument(getType(number) == type, "Chunk %s is not %s.", number, type);
+    return getOffset(number);
+  }
+
+  private int checkTypeOrSpec(int number) {
+    Chunk.Type type = getType(number);
+    Preconditions.checkArgument(type == Chunk.Type.TABLE_TYPE || type == Chunk.Type.TABLE_TYPE_SPEC,
+        "Chunk %s is not a type or type spec.", number);
+    return getOffset(number);
+  }
+}
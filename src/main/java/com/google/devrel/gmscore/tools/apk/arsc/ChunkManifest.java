@@ -0,0 +1,123 @@
+package com.google.devrel.gmscore.tools.apk.arsc;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.hash.HashCode;
+import com.google.common.io.LittleEndianDataOutputStream;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.List;
+
+/**
+ * Describes a resource file as the ordered list of blobs in a {@link ChunkStore} that make up its
+ * bytes. Concatenating the blobs of every segment reproduces the original file exactly.
+ *
+ * @see ChunkArchive
+ */
+public final class ChunkManifest implements SerializableResource {
+
+  /** Identifies serialized manifests. The bytes "ARCM" in little-endian. */
+  private static final int MAGIC = 0x4D435241;
+
+  /** The version of the serialized manifest format. */
+  private static final int VERSION = 1;
+
+  /** The number of bytes in a SHA-256 hash. */
+  private static final int HASH_SIZE = 32;
+
+  private final List<Segment> segments;
+  private final int size;
+
+  ChunkManifest(List<Segment> segments) {
+    this.segments = ImmutableList.copyOf(segments);
+    long size = 0;
+    for (Segment segment : segments) {
+      size += segment.length();
+    }
+    Preconditions.checkArgument(size <= Integer.MAX_VALUE, "Manifest size overflows: %s", size);
+    this.size = (int) size;
+  }
+
+  /**
+   * Reads a manifest previously written by {@link #toByteArray()}.
+   *
+   * @param bytes The serialized manifest.
+   * @return The manifest.
+   * @throws IllegalArgumentException If {@code bytes} is not a valid manifest.
+   */
+  public static ChunkManifest fromByteArray(byte[] bytes) {
+    ByteBuffer buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+    Preconditions.checkArgument(bytes.length >= 12 && buffer.getInt() == MAGIC,
+        "Not a chunk manifest.");
+    int version = buffer.getInt();
+    Preconditions.checkArgument(version == VERSION, "Unsupported manifest version: %s", version);
+    int count = buffer.getInt();
+    Preconditions.checkArgument(count >= 0
+        && (long) count * (4 + HASH_SIZE) == buffer.remaining(), "Truncated chunk manifest.");
+    ImmutableList.Builder<Segment> segments = ImmutableList.builder();
+    for (int i = 0; i < count; i++) {
+      int length = buffer.getInt();
+      byte[] hash = new byte[HASH_SIZE];
+      buffer.get(hash);
+      segments.add(new Segment(HashCode.fromBytes(hash), length));
+    }
+    return new ChunkManifest(segments.build());
+  }
+
+  /** Returns the blobs which make up the file, in order. */
+  public List<Segment> getSegments() {
+    return segments;
+  }
+
+  /** Returns the size in bytes of the file described by this manifest. */
+  public int getSize() {
+    return size;
+  }
+
+  @Override
+  public byte[] toByteArray() throws IOException {
+    return toByteArray(false);
+  }
+
+  @Override
+  public byte[] toByteArray(boolean shrink) throws IOException {
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    try (LittleEndianDataOutputStream output = new LittleEndianDataOutputStream(baos)) {
+      output.writeInt(MAGIC);
+      output.writeInt(VERSION);
+      output.writeInt(segments.size());
+      for (Segment segment : segments) {
+        output.writeInt(segment.length());
+        output.write(segment.hash().asBytes());
+      }
+    }
+    return baos.toByteArray();
+  }
+
+  /** A single blob of a {@link ChunkManifest}. */
+  public static final class Segment {
+    private final HashCode hash;
+    private final int length;
+
+    Segment(HashCode hash, int length) {
+      Preconditions.checkArgument(hash.bits() == HASH_SIZE * 8, "Segment hash must be SHA-256.");
+      Preconditions.checkArgument(length >= 0, "Negative segment length: %s", length);
+      this.hash = hash;
+      this.length = length;
+    }
+
+    /** The content hash of the blob. */
+    public HashCode hash() { return hash; }
+
+    /** The length in bytes of the blob. */
+    public int length() { return length; }
+
+    @Override
+    public String toString() {
+      return String.format("Segment{hash=%s, length=%d}", hash, length);
+    }
+  }
+}
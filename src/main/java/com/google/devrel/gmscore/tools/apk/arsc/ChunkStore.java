@@ -0,0 +1,32 @@
+package com.google.devrel.gmscore.tools.apk.arsc;
+
+import com.google.common.hash.HashCode;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+
+/**
+ * Content-addressed storage of byte blobs, typically the original bytes of a {@link Chunk}. Blobs
+ * are keyed by their {@link Chunk#getContentHash() content hash}, so storing the same bytes twice
+ * only keeps one copy.
+ *
+ * @see ChunkArchive
+ */
+public interface ChunkStore {
+
+  /** Returns true if a blob with the given {@code hash} has been stored. */
+  boolean contains(HashCode hash) throws IOException;
+
+  /**
+   * Stores {@code bytes} under {@code hash}, unless a blob with that hash is already stored.
+   *
+   * @param hash The content hash of {@code bytes}.
+   * @param bytes The blob to store.
+   * @return True if the blob was written, false if it was already present.
+   */
+  boolean put(HashCode hash, byte[] bytes) throws IOException;
+
+  /** Returns the blob stored under {@code hash}, or null if there is none. */
+  @Nullable
+  byte[] get(HashCode hash) throws IOException;
+}
@@ -20,13 +20,35 @@ import javax.annotation.Nullable;
 import java.io.DataOutput;
 import java.io.IOException;
 import java.nio.ByteBuffer;
-import java.util.LinkedHashMap;
+import java.util.AbstractList;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
 
 /** Represents a chunk whose payload is a list of sub-chunks. */
 public abstract class ChunkWithChunks extends Chunk {
 
-  private final Map<Integer, Chunk> chunks = new LinkedHashMap<>();
+  private static final int[] NO_OFFSETS = new int[0];
+  private static final Chunk[] NO_CHUNKS = new Chunk[0];
+
+  /** The buffer offsets of the sub-chunks, in ascending order. */
+  private int[] offsets = NO_OFFSETS;
+
+  /** The sub-chunks, parallel to {@code offsets}. */
+  private Chunk[] chunks = NO_CHUNKS;
+
+  /** The number of sub-chunks. */
+  private int chunkCount;
+
+  private final Map<Integer, Chunk> chunkMap = new ChunkMap();
+
+  private final List<Chunk> chunkList = new ChunkList();
 
   protected ChunkWithChunks(ByteBuffer buffer, @Nullable Chunk parent) {
     super(buffer, parent);
@@ -35,38 +57,166 @@ public abstract class ChunkWithChunks extends Chunk {
   @Override
   protected void init(ByteBuffer buffer) {
     super.init(buffer);
-    chunks.clear();
+    offsets = NO_OFFSETS;
+    chunks = NO_CHUNKS;
+    chunkCount = 0;
     int start = this.offset + getHeaderSize();
     int offset = start;
     int end = this.offset + getOriginalChunkSize();
-    int position = buffer.position();
-    buffer.position(start);
+    // Children are read through their own cursor, leaving the position of this chunk's buffer alone.
+    ByteBuffer cursor = buffer.duplicate().order(buffer.order());
+    cursor.position(start);
 
     while (offset < end) {
-      Chunk chunk = Chunk.newInstance(buffer, this);
-      chunks.put(offset, chunk);
+      Chunk chunk = Chunk.tryNewInstance(cursor, this, getParseOptions());
+      if (chunk == null) {
+        fail(ParseIssue.UNREADABLE_CHILD);
+        return;
+      }
+      add(offset, chunk);
       offset += chunk.getOriginalChunkSize();
     }
+  }
 
-    buffer.position(position);
+  private void add(int offset, Chunk chunk) {
+    if (chunkCount == offsets.length) {
+      int capacity = Math.max(4, chunkCount * 2);
+      offsets = Arrays.copyOf(offsets, capacity);
+      chunks = Arrays.copyOf(chunks, capacity);
+    }
+    offsets[chunkCount] = offset;
+    chunks[chunkCount] = chunk;
+    chunkCount++;
   }
 
   /**
-   * Retrieves the @{code chunks} contained in this chunk.
+   * Removes {@code chunk} from the chunks contained in this chunk, so that it is no longer written.
    *
-   * @return map of buffer offset -> chunk contained in this chunk.
+   * @param chunk The chunk to remove.
+   * @return True if {@code chunk} was contained in this chunk.
+   */
+  protected boolean removeChunk(Chunk chunk) {
+    for (int i = 0; i < chunkCount; ++i) {
+      if (chunks[i] == chunk) {
+        System.arraycopy(offsets, i + 1, offsets, i, chunkCount - i - 1);
+        System.arraycopy(chunks, i + 1, chunks, i, chunkCount - i - 1);
+        chunks[--chunkCount] = null;
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Retrieves the @{code chunks} contained in this chunk. The map is a view, and modifying it throws
+   * {@link UnsupportedOperationException}.
+   *
+   * @return read-only map of buffer offset -> chunk contained in this chunk, in offset order.
    */
   public final Map<Integer, Chunk> getChunks() {
-    return chunks;
+    return chunkMap;
+  }
+
+  /** Returns a read-only view of the chunks contained in this chunk, in offset order. */
+  public final List<Chunk> getChunkList() {
+    return chunkList;
+  }
+
+  /** Returns the number of chunks contained in this chunk. */
+  public final int getChunkCount() {
+    return chunkCount;
+  }
+
+  /**
+   * Returns the contained chunk which starts at {@code offset} in the original buffer, or null if
+   * there is none. This is a binary search, and doesn't box {@code offset}.
+   *
+   * @param offset The offset of the chunk from the start of the buffer.
+   */
+  @Nullable
+  public final Chunk getChunkAt(int offset) {
+    int index = Arrays.binarySearch(offsets, 0, chunkCount, offset);
+    return index >= 0 ? chunks[index] : null;
   }
 
   @Override
   protected void writePayload(DataOutput output, ByteBuffer header, boolean shrink)
       throws IOException {
-    for (Chunk chunk : getChunks().values()) {
-      byte[] chunkBytes = chunk.toByteArray(shrink);
+    for (int i = 0; i < chunkCount; ++i) {
+      byte[] chunkBytes = chunks[i].toByteArray(shrink);
       output.write(chunkBytes);
       writePad(output, chunkBytes.length);
     }
   }
+
+  /** A view of the sub-chunks as a list. */
+  private final class ChunkList extends AbstractList<Chunk> {
+    @Override
+    public Chunk get(int index) {
+      if (index < 0 || index >= chunkCount) {
+        throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + chunkCount);
+      }
+      return chunks[index];
+    }
+
+    @Override
+    public int size() {
+      return chunkCount;
+    }
+  }
+
+  /** A view of the sub-chunks as a map keyed by their offset. */
+  private final class ChunkMap extends AbstractMap<Integer, Chunk> {
+    @Override
+    public Chunk get(Object key) {
+      return key instanceof Integer ? getChunkAt((Integer) key) : null;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+      return get(key) != null;
+    }
+
+    @Override
+    public int size() {
+      return chunkCount;
+    }
+
+    @Override
+    public Set<Entry<Integer, Chunk>> entrySet() {
+      return new AbstractSet<Entry<Integer, Chunk>>() {
+        @Override
+        public Iterator<Entry<Integer, Chunk>> iterator() {
+          return new Iterator<Entry<Integer, Chunk>>() {
+            private int index;
+
+            @Override
+            public boolean hasNext() {
+              return index < chunkCount;
+            }
+
+            @Override
+            public Entry<Integer, Chunk> next() {
+              if (index >= chunkCount) {
+                throw new NoSuchElementException();
+              }
+              Entry<Integer, Chunk> entry = new SimpleImmutableEntry<>(offsets[index], chunks[index]);
+              index++;
+              return entry;
+            }
+          };
+        }
+
+        @Override
+        public int size() {
+          return chunkCount;
+        }
+      };
+    }
+
+    @Override
+    public Collection<Chunk> values() {
+      return chunkList;
+    }
+  }
 }
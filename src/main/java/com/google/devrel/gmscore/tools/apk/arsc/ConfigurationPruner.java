@@ -0,0 +1,111 @@
+package com.google.devrel.gmscore.tools.apk.arsc;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeSet;
+
+/**
+ * Removes entries of non-default configurations which hold the same value as the entry of the
+ * default configuration, and then any {@link TypeChunk} of a non-default configuration left without
+ * entries.
+ *
+ * <p>A resource's entries are only removed when every configuration holds the same value as the
+ * default configuration. Whichever configuration the framework would have matched, it then falls
+ * back to a configuration with the same value. If any configuration differs, all of the resource's
+ * entries are kept, since removing an entry could make the differing configuration the best match
+ * where it wasn't before.
+ *
+ * <p>Types with configurations skipped by a {@link ParseFilter} are left as they are, since the
+ * values of the skipped configurations can't be compared.
+ */
+public final class ConfigurationPruner {
+
+  private ConfigurationPruner() {}  // Prevent instantiation
+
+  /**
+   * Prunes every package of {@code resourceTable}.
+   *
+   * @param resourceTable The resource table, which is modified in place.
+   * @return The number of entries removed.
+   */
+  public static int prune(ResourceTableChunk resourceTable) {
+    int removed = 0;
+    for (PackageChunk packageChunk : resourceTable.getPackages()) {
+      removed += prune(packageChunk);
+    }
+    return removed;
+  }
+
+  /**
+   * Prunes the types of {@code packageChunk}, except those with type chunks skipped by a
+   * {@link ParseFilter}.
+   *
+   * @param packageChunk The package, which is modified in place.
+   * @return The number of entries removed.
+   */
+  public static int prune(PackageChunk packageChunk) {
+    int removed = 0;
+    TreeSet<Integer> typeIds = new TreeSet<>();
+    for (TypeChunk typeChunk : packageChunk.getTypeChunks()) {
+      typeIds.add(typeChunk.getId());
+    }
+    typeIds.removeAll(packageChunk.getFilteredTypeIds());
+    for (int typeId : typeIds) {
+      List<TypeChunk> typeChunks = new ArrayList<>(packageChunk.getTypeChunks(typeId));
+      TypeChunk defaultChunk = null;
+      for (TypeChunk typeChunk : typeChunks) {
+        if (typeChunk.getConfiguration().isDefault()) {
+          defaultChunk = typeChunk;
+          break;
+        }
+      }
+      if (defaultChunk == null) {
+        continue;
+      }
+      typeChunks.remove(defaultChunk);
+      removed += prune(defaultChunk, typeChunks);
+      for (TypeChunk typeChunk : typeChunks) {
+        if (!typeChunk.getConfiguration().isDefault() && typeChunk.getEntries().isEmpty()) {
+          packageChunk.removeTypeChunk(typeChunk);
+        }
+      }
+    }
+    return removed;
+  }
+
+  /** Removes the entries of {@code typeChunks} for resources whose value never differs. */
+  private static int prune(TypeChunk defaultChunk, List<TypeChunk> typeChunks) {
+    int removed = 0;
+    List<TypeChunk> redundant = new ArrayList<>();
+    for (Map.Entry<Integer, TypeChunk.Entry> mapping : defaultChunk.getEntries().entrySet()) {
+      int index = mapping.getKey();
+      redundant.clear();
+      for (TypeChunk typeChunk : typeChunks) {
+        TypeChunk.Entry entry = typeChunk.getEntries().get(index);
+        if (entry == null) {
+          continue;
+        } else if (!isSameValue(mapping.getValue(), entry)) {
+          redundant.clear();
+          break;
+        }
+        redundant.add(typeChunk);
+      }
+      for (TypeChunk typeChunk : redundant) {
+        typeChunk.overrideEntry(index, null);
+        removed++;
+      }
+    }
+    return removed;
+  }
+
+  /** Returns true if two entries of the same resource resolve to the same value. */
+  private static boolean isSameValue(TypeChunk.Entry a, TypeChunk.Entry b) {
+    return a.flags() == b.flags()
+        && a.keyIndex() == b.keyIndex()
+        && a.parentEntry() == b.parentEntry()
+        && Objects.equals(a.value(), b.value())
+        && Objects.equals(a.values(), b.values());
+  }
+}
@@ -0,0 +1,82 @@
+package com.google.devrel.gmscore.tools.apk.arsc;
+
+import com.google.common.hash.HashCode;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * A {@link ChunkStore} which keeps each blob in its own file below a root directory. Files are
+ * named after the hex form of their hash and sharded into sub-directories by its first two
+ * characters. Blobs are written to a temporary file first and then moved into place, so concurrent
+ * writers of the same blob never expose a partially written file.
+ */
+public final class DirectoryChunkStore implements ChunkStore {
+
+  private final Path root;
+
+  /**
+   * Creates a new {@link DirectoryChunkStore}.
+   *
+   * @param root The directory to store blobs in. It is created if it does not exist.
+   * @throws IOException Thrown if {@code root} could not be created.
+   */
+  public DirectoryChunkStore(Path root) throws IOException {
+    this.root = Files.createDirectories(root);
+  }
+
+  /** Returns the directory blobs are stored in. */
+  public Path getRoot() {
+    return root;
+  }
+
+  @Override
+  public boolean contains(HashCode hash) {
+    return Files.isRegularFile(pathOf(hash));
+  }
+
+  @Override
+  public boolean put(HashCode hash, byte[] bytes) throws IOException {
+    Path path = pathOf(hash);
+    if (Files.isRegularFile(path)) {
+      return false;
+    }
+    Path directory = Files.createDirectories(path.getParent());
+    Path temp = Files.createTempFile(directory, hash.toString(), ".tmp");
+    try {
+      Files.write(temp, bytes);
+      try {
+        Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE);
+      } catch (AtomicMoveNotSupportedException ex) {
+        Files.move(temp, path);
+      }
+      return true;
+    } catch (FileAlreadyExistsException ex) {
+      // Another writer stored the same blob first
+      return false;
+    } finally {
+      Files.deleteIfExists(temp);
+    }
+  }
+
+  @Nullable
+  @Override
+  public byte[] get(HashCode hash) throws IOException {
+    try {
+      return Files.readAllBytes(pathOf(hash));
+    } catch (NoSuchFileException ex) {
+      return null;
+    }
+  }
+
+  private Path pathOf(HashCode hash) {
+    String name = hash.toString();
+    return root.resolve(name.substring(0, 2)).resolve(name);
+  }
+}
@@ -0,0 +1,95 @@
+package com.google.devrel.gmscore.tools.apk.arsc;
+
+import javax.annotation.Nullable;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * A placeholder for a chunk which was rejected by a {@link ParseFilter}. Only the chunk's metadata
+ * is read, and it's written back as the bytes it occupied in the buffer it was read from.
+ */
+public final class FilteredChunk extends Chunk {
+
+  /** The offset in bytes, from the start of a package, type or type spec chunk, of its id. */
+  private static final int ID_OFFSET = Chunk.METADATA_SIZE;
+
+  /** The offset in bytes, from the start of a {@link TypeChunk}, of its configuration. */
+  private static final int CONFIGURATION_OFFSET = 20;
+
+  private final Type type;
+
+  FilteredChunk(ByteBuffer buffer, @Nullable Chunk parent, Type type) {
+    super(buffer, parent);
+    this.type = type;
+  }
+
+  /**
+   * Returns true if the chunk starting at {@code offset} is rejected by {@code filter}. Only the
+   * fields of the chunk's header that the filter needs are read.
+   *
+   * @param buffer The buffer containing the chunk. Only absolute reads are made.
+   * @param offset The offset of the chunk in {@code buffer}.
+   * @param parent The parent of the chunk.
+   * @param type The type of the chunk.
+   * @param filter The filter to apply.
+   */
+  static boolean isRejected(ByteBuffer buffer, int offset, @Nullable Chunk parent, Type type,
+                            ParseFilter filter) {
+    switch (type) {
+      case TABLE_PACKAGE:
+        return !filter.acceptPackage(buffer.getInt(offset + ID_OFFSET),
+            PackageUtils.peekPackageName(buffer, offset + ID_OFFSET + 4));
+      case TABLE_TYPE_SPEC:
+        return !acceptType(buffer, offset, parent, filter);
+      case TABLE_TYPE:
+        if (!acceptType(buffer, offset, parent, filter)) {
+          return true;
+        }
+        ByteBuffer view = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        view.position(offset + CONFIGURATION_OFFSET);
+        return !filter.acceptConfiguration(BinaryResourceConfiguration.create(view));
+      default:
+        return false;
+    }
+  }
+
+  private static boolean acceptType(ByteBuffer buffer, int offset, @Nullable Chunk parent,
+                                    ParseFilter filter) {
+    int id = buffer.get(offset + ID_OFFSET) & 0xFF;
+    String name = null;
+    if (parent instanceof PackageChunk) {
+      name = ((PackageChunk) parent).findTypeName(id);
+    }
+    return filter.acceptType(id, name);
+  }
+
+  /** Returns the id of the type which was skipped, if this is a type or type spec chunk. */
+  int getTypeId() {
+    return getSource().get(getOffset() + ID_OFFSET) & 0xFF;
+  }
+
+  /** Returns the type of the chunk which was skipped. */
+  public Type getFilteredType() {
+    return type;
+  }
+
+  @Override
+  protected Type getType() {
+    return type;
+  }
+
+  @Override
+  protected void writeHeader(ByteBuffer output) {
+    output.put(getOriginalBytes(), METADATA_SIZE, getHeaderSize() - METADATA_SIZE);
+  }
+
+  @Override
+  protected void writePayload(DataOutput output, ByteBuffer header, boolean shrink)
+      throws IOException {
+    byte[] bytes = getOriginalBytes();
+    output.write(bytes, getHeaderSize(), bytes.length - getHeaderSize());
+  }
+}
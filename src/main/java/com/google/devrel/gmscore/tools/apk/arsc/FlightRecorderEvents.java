@@ -0,0 +1,77 @@
+package com.google.devrel.gmscore.tools.apk.arsc;
+
+import javax.annotation.Nullable;
+
+/**
+ * Emits Java Flight Recorder events for parsing, XML decoding, serialization and blaming.
+ *
+ * <p>This is the Java 8 version, which emits nothing. On Java 11 and later the multi-release jar
+ * supplies a version which emits events whenever a recording enables them. Each phase is bracketed
+ * by a {@code begin} call, which returns a token or null if the event is disabled, and a
+ * {@code commit} call which accepts that token.
+ */
+public final class FlightRecorderEvents {
+
+  private FlightRecorderEvents() {}  // Prevent instantiation
+
+  /** Starts timing the parse of a resource file. */
+  @Nullable
+  public static Object beginParse() {
+    return null;
+  }
+
+  /**
+   * Records the parse of a resource file.
+   *
+   * @param token The token returned by {@link #beginParse()}.
+   * @param size The size of the file in bytes.
+   * @param chunkCount The number of top-level chunks in the file.
+   */
+  public static void commitParse(@Nullable Object token, int size, int chunkCount) {}
+
+  /** Starts timing the decoding of an XML document. */
+  @Nullable
+  public static Object beginDecode() {
+    return null;
+  }
+
+  /**
+   * Records the decoding of an XML document.
+   *
+   * @param token The token returned by {@link #beginDecode()}.
+   * @param size The size of the binary XML chunk in bytes.
+   * @param length The length of the decoded text.
+   */
+  public static void commitDecode(@Nullable Object token, int size, int length) {}
+
+  /** Starts timing the serialization of a top-level chunk. */
+  @Nullable
+  public static Object beginSerialize() {
+    return null;
+  }
+
+  /**
+   * Records the serialization of a top-level chunk.
+   *
+   * @param token The token returned by {@link #beginSerialize()}.
+   * @param type The type of the chunk.
+   * @param size The size of the serialized chunk in bytes.
+   * @param shrink True if the chunk was optimized for size.
+   */
+  public static void commitSerialize(@Nullable Object token, Chunk.Type type, int size,
+                                     boolean shrink) {}
+
+  /** Starts timing the blaming of a resource table. */
+  @Nullable
+  public static Object beginBlame() {
+    return null;
+  }
+
+  /**
+   * Records the blaming of a resource table.
+   *
+   * @param token The token returned by {@link #beginBlame()}.
+   * @param resourceCount The number of resources that were blamed.
+   */
+  public static void commitBlame(@Nullable Object token, int resourceCount) {}
+}
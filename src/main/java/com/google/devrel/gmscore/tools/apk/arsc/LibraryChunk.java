@@ -92,7 +92,7 @@ public final class LibraryChunk extends Chunk {
 
     static Entry create(ByteBuffer buffer, int offset) {
       int packageId = buffer.getInt(offset);
-      String packageName = PackageUtils.readPackageName(buffer, offset + 4);
+      String packageName = PackageUtils.peekPackageName(buffer, offset + 4);
       return new Entry(packageId, packageName);
     }
 
@@ -28,6 +28,8 @@ import java.nio.ByteBuffer;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
 
 /** A package chunk is a collection of resource data types within a package. */
 public final class PackageChunk extends ChunkWithChunks {
@@ -98,7 +100,7 @@ public final class PackageChunk extends ChunkWithChunks {
             throw new IllegalStateException("Multiple library chunks present in package chunk.");
           }
           libraryChunk = Optional.of((LibraryChunk) chunk);
-        } else if (!(chunk instanceof StringPoolChunk)) {
+        } else if (!(chunk instanceof StringPoolChunk) && !(chunk instanceof FilteredChunk)) {
           throw new IllegalStateException(String.format("PackageChunk contains an unexpected chunk: %s", chunk.getClass()));
         }
       }
@@ -114,21 +116,68 @@ public final class PackageChunk extends ChunkWithChunks {
    * Returns the string pool that contains the names of the resources in this package.
    */
   public StringPoolChunk getKeyStringPool() {
-    Chunk chunk = Preconditions.checkNotNull(getChunks().get(keyStringsOffset + offset));
+    Chunk chunk = Preconditions.checkNotNull(getChunkAt(keyStringsOffset + offset));
     Preconditions.checkState(chunk instanceof StringPoolChunk, "Key string pool not found.");
     return (StringPoolChunk) chunk;
   }
 
+  /**
+   * Sorts the key string pool and renumbers the keys of this package's entries to match, so that
+   * resource names are looked up by binary search in {@link StringPoolChunk#indexOf} and
+   * {@link ResourceTableIndex#indexOfString}. Duplicate keys are merged, and every entry is decoded.
+   *
+   * @throws IllegalStateException If type chunks of this package were skipped by a
+   *     {@link ParseFilter}, since their keys can't be renumbered.
+   */
+  public void sortKeyStringPool() {
+    Preconditions.checkState(getFilteredTypeIds().isEmpty(),
+        "Key string pool can't be sorted with type chunks filtered out.");
+    int[] keyIndices = getKeyStringPool().sortStrings();
+    for (TypeChunk typeChunk : getTypeChunks()) {
+      typeChunk.remapKeys(keyIndices);
+    }
+  }
+
   /**
    * Returns the string pool that contains the type strings for this package, such as "layout",
    * "string", "color".
    */
   public StringPoolChunk getTypeStringPool() {
-    Chunk chunk = Preconditions.checkNotNull(getChunks().get(typeStringsOffset + offset));
+    Chunk chunk = Preconditions.checkNotNull(getChunkAt(typeStringsOffset + offset));
     Preconditions.checkState(chunk instanceof StringPoolChunk, "Type string pool not found.");
     return (StringPoolChunk) chunk;
   }
 
+  /**
+   * Returns the name of the type with the (1-based) {@code id}, or null if the type string pool
+   * hasn't been read yet or doesn't contain it. Unlike {@link #getTypeStringPool()}, this can be
+   * called while this package's chunks are still being read.
+   */
+  @Nullable
+  String findTypeName(int id) {
+    Chunk chunk = getChunkAt(typeStringsOffset + offset);
+    if (chunk instanceof StringPoolChunk && id >= 1
+        && id <= ((StringPoolChunk) chunk).getStringCount()) {
+      return ((StringPoolChunk) chunk).getString(id - 1);
+    }
+    return null;
+  }
+
+  /**
+   * Returns the ids of the types with type chunks which were skipped by a {@link ParseFilter}.
+   * Those chunks are written back as they were read, so they still use the original keys.
+   */
+  Set<Integer> getFilteredTypeIds() {
+    Set<Integer> ids = new TreeSet<>();
+    for (Chunk chunk : getChunks().values()) {
+      if (chunk instanceof FilteredChunk
+          && ((FilteredChunk) chunk).getFilteredType() == Type.TABLE_TYPE) {
+        ids.add(((FilteredChunk) chunk).getTypeId());
+      }
+    }
+    return ids;
+  }
+
   /** Returns all {@link TypeChunk} in this package. */
   public Collection<TypeChunk> getTypeChunks() {
     return types.values();
@@ -157,6 +206,17 @@ public final class PackageChunk extends ChunkWithChunks {
     return getTypeChunks(typeStringPool.indexOf(type) + 1);  // Convert 0-based index to 1-based
   }
 
+  /**
+   * Removes a {@link TypeChunk} from this package, such as one left without entries.
+   *
+   * @param typeChunk The chunk to remove.
+   * @return True if {@code typeChunk} was in this package.
+   */
+  public boolean removeTypeChunk(TypeChunk typeChunk) {
+    types.remove(typeChunk.getId(), typeChunk);
+    return removeChunk(typeChunk);
+  }
+
   /** Returns all {@link TypeSpecChunk} in this package. */
   public Collection<TypeSpecChunk> getTypeSpecChunks() {
     return typeSpecs.values();
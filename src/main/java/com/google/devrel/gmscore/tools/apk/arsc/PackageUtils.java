@@ -34,20 +34,33 @@ public final class PackageUtils {
    * @return The package name.
    */
   public static String readPackageName(ByteBuffer buffer, int offset) {
-    byte[] data = buffer.array();
+    String str = peekPackageName(buffer, offset);
+    buffer.position(offset + PACKAGE_NAME_SIZE);
+    return str;
+  }
+
+  /**
+   * Reads the package name at {@code offset} in the buffer using absolute reads, leaving the
+   * buffer's position unchanged.
+   * @param buffer A little-endian buffer containing the package name.
+   * @param offset The offset in the buffer to read from.
+   * @return The package name.
+   */
+  public static String peekPackageName(ByteBuffer buffer, int offset) {
     int length = 0;
     // Look for the null terminator for the string instead of using the entire buffer.
     // It's UTF-16 so check 2 bytes at a time to see if its double 0.
-    for (int i = offset; i < data.length && i < PACKAGE_NAME_SIZE + offset; i += 2) {
-      if (data[i] == 0 && data[i + 1] == 0) {
+    for (int i = offset; i + 1 < buffer.limit() && i < PACKAGE_NAME_SIZE + offset; i += 2) {
+      if (buffer.getShort(i) == 0) {
         length = i - offset;
         break;
       }
     }
-    Charset utf16 = Charset.forName("UTF-16LE");
-    String str = new String(data, offset, length, utf16);
-    buffer.position(offset + PACKAGE_NAME_SIZE);
-    return str;
+    byte[] data = new byte[length];
+    ByteBuffer view = buffer.duplicate();
+    view.position(offset);
+    view.get(data);
+    return new String(data, Charset.forName("UTF-16LE"));
   }
 
   /**
@@ -0,0 +1,17 @@
+package com.google.devrel.gmscore.tools.apk.arsc;
+
+/** Receives the {@link ParseIssue}s found while parsing a resource file. */
+public interface ParseDiagnostics {
+
+  /** Diagnostics which ignore every issue. */
+  ParseDiagnostics NONE = (issue, type, offset) -> {};
+
+  /**
+   * Called when parsing recovers from a malformed part of the input.
+   *
+   * @param issue The problem found.
+   * @param type The type of the chunk the problem was found in.
+   * @param offset The offset of that chunk from the start of the buffer.
+   */
+  void onIssue(ParseIssue issue, Chunk.Type type, int offset);
+}
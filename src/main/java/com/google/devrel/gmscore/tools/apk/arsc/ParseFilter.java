@@ -0,0 +1,45 @@
+package com.google.devrel.gmscore.tools.apk.arsc;
+
+import javax.annotation.Nullable;
+
+/**
+ * Selects which packages, types and configurations of a resource table are parsed. Chunks which are
+ * rejected are skipped without reading their contents, and kept as {@link FilteredChunk}
+ * placeholders which are written back unchanged. Every method accepts by default.
+ */
+public interface ParseFilter {
+
+  /** A filter which accepts everything. */
+  ParseFilter ALL = new ParseFilter() {};
+
+  /**
+   * @param id The id of the package.
+   * @param name The name of the package.
+   * @return True if the {@link PackageChunk} should be parsed.
+   */
+  default boolean acceptPackage(int id, String name) {
+    return true;
+  }
+
+  /**
+   * Called for both {@link TypeSpecChunk} and {@link TypeChunk}.
+   *
+   * @param id The (1-based) type id.
+   * @param name The name of the type (e.g. string, attr, id), or null if the package's type string
+   *     pool has not been read yet.
+   * @return True if the chunk should be parsed.
+   */
+  default boolean acceptType(int id, @Nullable String name) {
+    return true;
+  }
+
+  /**
+   * Called for {@link TypeChunk} whose type was accepted.
+   *
+   * @param configuration The configuration of the type chunk's entries.
+   * @return True if the chunk should be parsed.
+   */
+  default boolean acceptConfiguration(BinaryResourceConfiguration configuration) {
+    return true;
+  }
+}
@@ -0,0 +1,31 @@
+package com.google.devrel.gmscore.tools.apk.arsc;
+
+/**
+ * A problem found in a malformed resource file, and how parsing recovered from it. Issues are
+ * reported to the {@link ParseDiagnostics} of the {@link ParseOptions} used for parsing.
+ */
+public enum ParseIssue {
+  /** A chunk reports a size of zero. No further chunks are read from the enclosing sequence. */
+  ZERO_SIZED_CHUNK,
+
+  /** The buffer ends before a chunk's header. No further chunks are read from the sequence. */
+  TRUNCATED_CHUNK,
+
+  /** A chunk reports a size beyond the end of the buffer. Parsing resumes at the end. */
+  CHUNK_EXCEEDS_BUFFER,
+
+  /** A chunk has the null type code, so it is read as an XML chunk. */
+  NULL_TYPE_AS_XML,
+
+  /** An unknown chunk is larger than the buffer. It is patched to the end of its container. */
+  BOGUS_UNKNOWN_CHUNK,
+
+  /** A child of a container could not be read. Parsing resumes at the end of the buffer. */
+  UNREADABLE_CHILD,
+
+  /** A resource entry lies outside of the buffer. The entry is skipped. */
+  INVALID_ENTRY,
+
+  /** A chunk's contents could not be read. Parsing resumes at the end of the buffer. */
+  MALFORMED_CHUNK
+}
@@ -0,0 +1,32 @@
+package com.google.devrel.gmscore.tools.apk.arsc;
+
+/**
+ * Observes the parsing of resource files, such as to collect {@link ParseMetrics}. Listeners are
+ * installed with {@link ParseOptions#withListener(ParseListener)}, and also receive every
+ * {@link ParseIssue} found. Parsing has no instrumentation overhead when no listener is installed.
+ *
+ * <p>A listener may be shared by files parsed concurrently, so implementations must be thread-safe.
+ */
+public interface ParseListener extends ParseDiagnostics {
+
+  /**
+   * Called after a chunk, including all of its children, has been read.
+   *
+   * @param type The type of the chunk.
+   * @param offset The offset of the chunk from the start of the buffer.
+   * @param size The size of the chunk in bytes.
+   * @param nanos The time taken to read the chunk and its children, in nanoseconds.
+   */
+  default void onChunkParsed(Chunk.Type type, int offset, int size, long nanos) {}
+
+  /**
+   * Called after a resource file has been read.
+   *
+   * @param size The size of the file in bytes.
+   * @param nanos The time taken to read the file, in nanoseconds.
+   */
+  default void onFileParsed(int size, long nanos) {}
+
+  @Override
+  default void onIssue(ParseIssue issue, Chunk.Type type, int offset) {}
+}
@@ -0,0 +1,128 @@
+package com.google.devrel.gmscore.tools.apk.arsc;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A {@link ParseListener} which counts parsed files, chunks and recoveries from malformed input.
+ * Counters are cumulative and safe to update and read concurrently, so one instance can be shared
+ * by every parse in a process and polled by a metrics exporter.
+ *
+ * <p>Chunk timings include the time taken to read the chunk's children.
+ */
+public final class ParseMetrics implements ParseListener {
+
+  private final Map<Chunk.Type, LongAdder> chunkCounts = adders(Chunk.Type.class);
+  private final Map<Chunk.Type, LongAdder> chunkBytes = adders(Chunk.Type.class);
+  private final Map<Chunk.Type, LongAdder> chunkNanos = adders(Chunk.Type.class);
+  private final Map<ParseIssue, LongAdder> issueCounts = adders(ParseIssue.class);
+  private final LongAdder fileCount = new LongAdder();
+  private final LongAdder fileBytes = new LongAdder();
+  private final LongAdder fileNanos = new LongAdder();
+
+  @Override
+  public void onChunkParsed(Chunk.Type type, int offset, int size, long nanos) {
+    chunkCounts.get(type).increment();
+    chunkBytes.get(type).add(size);
+    chunkNanos.get(type).add(nanos);
+  }
+
+  @Override
+  public void onFileParsed(int size, long nanos) {
+    fileCount.increment();
+    fileBytes.add(size);
+    fileNanos.add(nanos);
+  }
+
+  @Override
+  public void onIssue(ParseIssue issue, Chunk.Type type, int offset) {
+    issueCounts.get(issue).increment();
+  }
+
+  /** Returns the number of chunks of {@code type} that were read. */
+  public long getChunkCount(Chunk.Type type) {
+    return chunkCounts.get(type).sum();
+  }
+
+  /** Returns the total size in bytes of the chunks of {@code type} that were read. */
+  public long getChunkBytes(Chunk.Type type) {
+    return chunkBytes.get(type).sum();
+  }
+
+  /** Returns the total time in nanoseconds taken to read chunks of {@code type}. */
+  public long getChunkNanos(Chunk.Type type) {
+    return chunkNanos.get(type).sum();
+  }
+
+  /** Returns the number of times {@code issue} was found. */
+  public long getIssueCount(ParseIssue issue) {
+    return issueCounts.get(issue).sum();
+  }
+
+  /** Returns the number of resource entries skipped because they lie outside of the buffer. */
+  public long getSkippedEntryCount() {
+    return getIssueCount(ParseIssue.INVALID_ENTRY);
+  }
+
+  /** Returns the number of bogus unknown chunks patched to the end of their container. */
+  public long getPatchedChunkCount() {
+    return getIssueCount(ParseIssue.BOGUS_UNKNOWN_CHUNK);
+  }
+
+  /** Returns the number of resource files that were read. */
+  public long getFileCount() {
+    return fileCount.sum();
+  }
+
+  /** Returns the total size in bytes of the resource files that were read. */
+  public long getBytesProcessed() {
+    return fileBytes.sum();
+  }
+
+  /** Returns the total time in nanoseconds taken to read resource files. */
+  public long getFileNanos() {
+    return fileNanos.sum();
+  }
+
+  /** Resets every counter to zero. */
+  public void reset() {
+    chunkCounts.values().forEach(LongAdder::reset);
+    chunkBytes.values().forEach(LongAdder::reset);
+    chunkNanos.values().forEach(LongAdder::reset);
+    issueCounts.values().forEach(LongAdder::reset);
+    fileCount.reset();
+    fileBytes.reset();
+    fileNanos.reset();
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder result = new StringBuilder("ParseMetrics{files=").append(getFileCount())
+        .append(", bytes=").append(getBytesProcessed())
+        .append(", nanos=").append(getFileNanos());
+    for (Chunk.Type type : Chunk.Type.values()) {
+      long count = getChunkCount(type);
+      if (count > 0) {
+        result.append(", ").append(type).append("={count=").append(count)
+            .append(", bytes=").append(getChunkBytes(type))
+            .append(", nanos=").append(getChunkNanos(type)).append('}');
+      }
+    }
+    for (ParseIssue issue : ParseIssue.values()) {
+      long count = getIssueCount(issue);
+      if (count > 0) {
+        result.append(", ").append(issue).append('=').append(count);
+      }
+    }
+    return result.append('}').toString();
+  }
+
+  private static <K extends Enum<K>> Map<K, LongAdder> adders(Class<K> keyType) {
+    Map<K, LongAdder> result = new EnumMap<>(keyType);
+    for (K key : keyType.getEnumConstants()) {
+      result.put(key, new LongAdder());
+    }
+    return result;
+  }
+}
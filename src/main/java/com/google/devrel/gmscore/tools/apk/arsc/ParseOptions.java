@@ -0,0 +1,110 @@
+package com.google.devrel.gmscore.tools.apk.arsc;
+
+import com.google.common.base.Preconditions;
+
+import javax.annotation.Nullable;
+
+/** Immutable options which control how a {@link BinaryResourceFile} is parsed. */
+public final class ParseOptions {
+
+  /** The options used when none are given. */
+  public static final ParseOptions DEFAULT =
+      new ParseOptions(ParseDiagnostics.NONE, null, false, ParseFilter.ALL);
+
+  private final ParseDiagnostics diagnostics;
+
+  @Nullable
+  private final ParseListener listener;
+
+  private final boolean lazyEntries;
+
+  private final ParseFilter filter;
+
+  private ParseOptions(ParseDiagnostics diagnostics, @Nullable ParseListener listener,
+                       boolean lazyEntries, ParseFilter filter) {
+    this.diagnostics = diagnostics;
+    this.listener = listener;
+    this.lazyEntries = lazyEntries;
+    this.filter = filter;
+  }
+
+  /** Returns the diagnostics that recoveries from malformed input are reported to. */
+  public ParseDiagnostics getDiagnostics() {
+    return diagnostics;
+  }
+
+  /** Returns the listener observing the parse, or null if parsing is not instrumented. */
+  @Nullable
+  public ParseListener getListener() {
+    return listener;
+  }
+
+  /** Reports {@code issue} to the diagnostics and, if there is one, the listener. */
+  void reportIssue(ParseIssue issue, Chunk.Type type, int offset) {
+    diagnostics.onIssue(issue, type, offset);
+    if (listener != null) {
+      listener.onIssue(issue, type, offset);
+    }
+  }
+
+  /**
+   * Returns true if the entries of a {@link TypeChunk} are only decoded when they're requested,
+   * rather than while parsing. See {@link TypeChunk#getEntry(int)}.
+   */
+  public boolean isLazyEntries() {
+    return lazyEntries;
+  }
+
+  /** Returns the filter selecting which packages, types and configurations are parsed. */
+  public ParseFilter getFilter() {
+    return filter;
+  }
+
+  /**
+   * Returns a copy of these options which report to {@code diagnostics}.
+   *
+   * @param diagnostics The diagnostics to report recoveries from malformed input to.
+   * @return A copy of these options with the only difference being the diagnostics.
+   */
+  public ParseOptions withDiagnostics(ParseDiagnostics diagnostics) {
+    Preconditions.checkNotNull(diagnostics);
+    return new ParseOptions(diagnostics, listener, lazyEntries, filter);
+  }
+
+  /**
+   * Returns a copy of these options which are observed by {@code listener}. The listener receives
+   * every issue in addition to the {@link #getDiagnostics() diagnostics}.
+   *
+   * @param listener The listener to notify as chunks are read, or null to remove instrumentation.
+   * @return A copy of these options with the only difference being the listener.
+   */
+  public ParseOptions withListener(@Nullable ParseListener listener) {
+    return new ParseOptions(diagnostics, listener, lazyEntries, filter);
+  }
+
+  /**
+   * Returns a copy of these options which decode the entries of a {@link TypeChunk} lazily. Lazy
+   * chunks decode entries from the buffer they were read from, so the buffer must not be modified
+   * until all of their entries have been requested. Lazy chunks may be read from several threads,
+   * as eagerly parsed chunks may while they aren't modified, but issues in entries are then
+   * reported from the reading threads, so the diagnostics and listener must be thread-safe.
+   *
+   * @param lazyEntries True to decode entries on demand, false to decode them while parsing.
+   * @return A copy of these options with the only difference being when entries are decoded.
+   */
+  public ParseOptions withLazyEntries(boolean lazyEntries) {
+    return new ParseOptions(diagnostics, listener, lazyEntries, filter);
+  }
+
+  /**
+   * Returns a copy of these options which only parse the packages, types and configurations
+   * accepted by {@code filter}. Rejected chunks are kept as {@link FilteredChunk} placeholders.
+   *
+   * @param filter The filter to apply, or {@link ParseFilter#ALL} to parse everything.
+   * @return A copy of these options with the only difference being the filter.
+   */
+  public ParseOptions withFilter(ParseFilter filter) {
+    Preconditions.checkNotNull(filter);
+    return new ParseOptions(diagnostics, listener, lazyEntries, filter);
+  }
+}
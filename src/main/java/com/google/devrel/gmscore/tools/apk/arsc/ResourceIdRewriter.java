@@ -0,0 +1,227 @@
+package com.google.devrel.gmscore.tools.apk.arsc;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.BitSet;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Renumbers resource ids in the raw bytes of a resource table or compiled XML file, without parsing
+ * it into chunks. Chunks are located with a {@link ChunkIndex}, then every id is passed through a
+ * remap function and written back in place:
+ *
+ * <ul>
+ *   <li>{@link PackageChunk} ids and {@link LibraryChunk} entry package ids
+ *   <li>{@code REFERENCE} and {@code ATTRIBUTE} values, including dynamic ones, of {@link TypeChunk}
+ *       entries, complex entry parents and map keys
+ *   <li>{@link XmlResourceMapChunk} ids, and reference values of XML attributes and character data
+ * </ul>
+ *
+ * <p>Package ids are rewritten to the package of {@code remap(packageId << 24)}. Null (zero) ids are
+ * left alone. Entries and values are read the same way as the model reads them, and anything the
+ * model would skip as malformed is skipped here too.
+ */
+public final class ResourceIdRewriter {
+
+  /** The size in bytes of a {@link LibraryChunk} entry. */
+  private static final int LIBRARY_ENTRY_SIZE = 260;
+
+  /** The offset in bytes of a {@link TypeChunk}'s configuration. */
+  private static final int TYPE_CONFIGURATION_OFFSET = 20;
+
+  /** The offset in bytes of the typed value of an {@link XmlCdataChunk}. */
+  private static final int CDATA_VALUE_OFFSET = 20;
+
+  /** The size in bytes of an XML attribute's namespace, name and raw value. */
+  private static final int ATTRIBUTE_LOCAL_SIZE = 12;
+
+  private final ByteBuffer buffer;
+  private final IntUnaryOperator remap;
+  private int rewritten;
+
+  private ResourceIdRewriter(ByteBuffer buffer, IntUnaryOperator remap) {
+    this.buffer = buffer;
+    this.remap = remap;
+  }
+
+  /**
+   * Returns a remap function which moves ids in package {@code from} to package {@code to}, and
+   * leaves all other ids alone.
+   */
+  public static IntUnaryOperator rebasePackage(int from, int to) {
+    return id -> id >>> 24 == from ? (to << 24) | (id & 0xFFFFFF) : id;
+  }
+
+  /**
+   * Renumbers the resource ids in a resource table or compiled XML file.
+   *
+   * @param bytes The file, which is modified in place.
+   * @param remap The function mapping each resource id to its new id.
+   * @return The number of ids which were changed.
+   */
+  public static int rewrite(byte[] bytes, IntUnaryOperator remap) {
+    return rewrite(ByteBuffer.wrap(bytes), remap);
+  }
+
+  /**
+   * Renumbers the resource ids in the resource table or compiled XML file between the position and
+   * limit of {@code buffer}. The buffer's position is not modified.
+   *
+   * @param buffer The file, which is modified in place.
+   * @param remap The function mapping each resource id to its new id.
+   * @return The number of ids which were changed.
+   */
+  public static int rewrite(ByteBuffer buffer, IntUnaryOperator remap) {
+    // Index offsets are relative to the position, so the rewriter reads the file from there too.
+    ByteBuffer file = buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+    ChunkIndex index = ChunkIndex.scan(file);
+    ResourceIdRewriter rewriter = new ResourceIdRewriter(file, remap);
+    for (int i = 0; i < index.size(); ++i) {
+      int offset = index.getOffset(i);
+      int headerSize = index.getHeaderSize(i);
+      int end = (int) Math.min(file.limit(), (long) offset + index.getChunkSize(i));
+      switch (index.getType(i)) {
+        case TABLE_PACKAGE:
+          rewriter.rewritePackageId(offset + Chunk.METADATA_SIZE, end);
+          break;
+        case TABLE_LIBRARY:
+          rewriter.rewriteLibrary(offset, headerSize, end);
+          break;
+        case TABLE_TYPE:
+          rewriter.rewriteType(offset, end);
+          break;
+        case XML_RESOURCE_MAP:
+          for (int id = offset + headerSize; id + 4 <= end; id += 4) {
+            rewriter.rewriteId(id);
+          }
+          break;
+        case XML_START_ELEMENT:
+          rewriter.rewriteAttributes(offset, headerSize, end);
+          break;
+        case XML_CDATA:
+          rewriter.rewriteValue(offset + CDATA_VALUE_OFFSET, end);
+          break;
+        default:
+          break;
+      }
+    }
+    return rewriter.rewritten;
+  }
+
+  private void rewritePackageId(int offset, int end) {
+    if (offset + 4 <= end) {
+      int id = buffer.getInt(offset);
+      int newId = remap.applyAsInt(id << 24) >>> 24;
+      if (newId != id) {
+        buffer.putInt(offset, newId);
+        rewritten++;
+      }
+    }
+  }
+
+  private void rewriteLibrary(int offset, int headerSize, int end) {
+    int count = buffer.getInt(offset + Chunk.METADATA_SIZE);
+    int entry = offset + headerSize;
+    for (int i = 0; i < count && entry + LIBRARY_ENTRY_SIZE <= end; ++i) {
+      rewritePackageId(entry, end);
+      entry += LIBRARY_ENTRY_SIZE;
+    }
+  }
+
+  private void rewriteType(int offset, int end) {
+    int entryCount = buffer.getInt(offset + 12);
+    int entriesStart = offset + buffer.getInt(offset + 16);
+    ByteBuffer view = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+    view.position(offset + TYPE_CONFIGURATION_OFFSET);
+    BinaryResourceConfiguration.create(view);
+    int offsets = view.position();
+    if (entryCount < 0 || offsets + 4L * entryCount > buffer.limit()) {
+      return;
+    }
+    // Deduplicated tables share entries between offsets, and each must only be rewritten once.
+    BitSet visited = new BitSet();
+    for (int i = 0; i < entryCount; ++i) {
+      int entryOffset = buffer.getInt(offsets + i * 4);
+      int start = entriesStart + entryOffset;
+      if (entryOffset == TypeChunk.Entry.NO_ENTRY || entryOffset < 0 || start < 0
+          || !fitsEntry(start) || visited.get(entryOffset)) {
+        continue;
+      }
+      visited.set(entryOffset);
+      int flags = buffer.getShort(start + 2) & 0xFFFF;
+      if ((flags & TypeChunk.Entry.FLAG_COMPLEX) == 0) {
+        rewriteValue(start + 8, buffer.limit());
+        continue;
+      }
+      rewriteId(start + 8);  // Parent entry
+      int valueCount = buffer.getInt(start + 12);
+      int mapping = start + 16;
+      for (int j = 0; j < valueCount; ++j) {
+        rewriteId(mapping);
+        rewriteValue(mapping + 4, buffer.limit());
+        mapping += TypeChunk.Entry.MAPPING_SIZE;
+      }
+    }
+  }
+
+  /** Returns true if the entry at {@code start} lies within the buffer, as the model checks. */
+  private boolean fitsEntry(int start) {
+    int remaining = buffer.limit() - start;
+    if (remaining < 8) {
+      return false;
+    } else if ((buffer.getShort(start + 2) & TypeChunk.Entry.FLAG_COMPLEX) == 0) {
+      return remaining >= 8 + BinaryResourceValue.SIZE;
+    } else if (remaining < 16) {
+      return false;
+    }
+    int valueCount = buffer.getInt(start + 12);
+    return valueCount >= 0 && valueCount <= (remaining - 16) / TypeChunk.Entry.MAPPING_SIZE;
+  }
+
+  private void rewriteAttributes(int offset, int headerSize, int end) {
+    if (offset + 30 > end) {
+      return;
+    }
+    int attributeStart = buffer.getShort(offset + 24) & 0xFFFF;
+    int count = buffer.getShort(offset + 28) & 0xFFFF;
+    int attribute = offset + headerSize + attributeStart;
+    for (int i = 0; i < count; ++i) {
+      int value = attribute + ATTRIBUTE_LOCAL_SIZE;
+      if (value + BinaryResourceValue.SIZE > buffer.limit()) {
+        return;
+      }
+      rewriteValue(value, buffer.limit());
+      // Attributes are stepped over by the size of their values, as in XmlStartElementChunk.
+      attribute = value + (buffer.getShort(value) & 0xFFFF);
+    }
+  }
+
+  private void rewriteValue(int offset, int end) {
+    if (offset + BinaryResourceValue.SIZE > end) {
+      return;
+    }
+    BinaryResourceValue.Type type = BinaryResourceValue.Type.fromCode(buffer.get(offset + 3));
+    switch (type) {
+      case REFERENCE:
+      case ATTRIBUTE:
+      case DYNAMIC_REFERENCE:
+      case DYNAMIC_ATTRIBUTE:
+        rewriteId(offset + 4);
+        break;
+      default:
+        break;
+    }
+  }
+
+  private void rewriteId(int offset) {
+    int id = buffer.getInt(offset);
+    if (id == 0) {
+      return;
+    }
+    int newId = remap.applyAsInt(id);
+    if (newId != id) {
+      buffer.putInt(offset, newId);
+      rewritten++;
+    }
+  }
+}
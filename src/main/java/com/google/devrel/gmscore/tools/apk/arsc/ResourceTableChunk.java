@@ -87,6 +87,12 @@ public final class ResourceTableChunk extends ChunkWithChunks {
   @Override
   protected void writeHeader(ByteBuffer output) {
     super.writeHeader(output);
-    output.putInt(packages.size());
+    int filteredPackages = 0;
+    for (Chunk chunk : getChunks().values()) {
+      if (chunk instanceof FilteredChunk) {
+        filteredPackages++;
+      }
+    }
+    output.putInt(packages.size() + filteredPackages);
   }
 }
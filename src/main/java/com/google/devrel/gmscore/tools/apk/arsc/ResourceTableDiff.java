@@ -0,0 +1,172 @@
+package com.google.devrel.gmscore.tools.apk.arsc;
+
+import com.google.common.base.Preconditions;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Computes a {@link ResourceTablePatch} between two versions of a resource file.
+ *
+ * <p>Chunks are matched structurally rather than by position: packages by id and name, type specs
+ * by type id, types by type id and {@link BinaryResourceConfiguration}, and any other chunk by its
+ * type and order of appearance. Matched chunks that are byte-for-byte identical become a single copy
+ * from the old file. Matched containers are compared child by child, and matched {@link TypeChunk}s
+ * are compared entry by entry so only the entries that changed are carried in the patch.
+ *
+ * <p>The new side of the diff is the current state of the new file's chunks (as returned by
+ * {@link BinaryResourceFile#toByteArray()}), so modifications made to a parsed file are included.
+ */
+public final class ResourceTableDiff {
+
+  /** Offset in bytes, from the start of a {@link TypeChunk}, of its {@code entriesStart} field. */
+  private static final int TYPE_ENTRIES_START_OFFSET = 16;
+
+  private ResourceTableDiff() {}  // Prevent instantiation
+
+  /**
+   * Computes a patch which rebuilds {@code newFile} from the original bytes of {@code oldFile}.
+   *
+   * @param oldFile The resource file the patch will be applied to.
+   * @param newFile The resource file the patch should produce.
+   * @return The patch.
+   * @throws IOException Thrown if a chunk of {@code newFile} cannot be serialized.
+   */
+  public static ResourceTablePatch diff(BinaryResourceFile oldFile, BinaryResourceFile newFile)
+      throws IOException {
+    ResourceTablePatch.Builder builder = new ResourceTablePatch.Builder(oldFile.getOriginalBytes());
+    diffChunks(oldFile.getChunks(), newFile.getChunks(), false, builder);
+    return builder.build();
+  }
+
+  private static void diffChunks(Collection<Chunk> oldChunks, Collection<Chunk> newChunks,
+                                 boolean padded, ResourceTablePatch.Builder builder)
+      throws IOException {
+    Map<Object, Deque<Chunk>> candidates = new HashMap<>();
+    for (Chunk chunk : oldChunks) {
+      candidates.computeIfAbsent(keyOf(chunk), k -> new ArrayDeque<>()).add(chunk);
+    }
+    for (Chunk chunk : newChunks) {
+      Deque<Chunk> matches = candidates.get(keyOf(chunk));
+      Chunk match = matches == null ? null : matches.poll();
+      int length = diffChunk(match, chunk, builder);
+      if (padded) {
+        insertPadding(length, builder);
+      }
+    }
+  }
+
+  /** Adds the operations which produce {@code newChunk} and returns its serialized length. */
+  private static int diffChunk(@Nullable Chunk oldChunk, Chunk newChunk,
+                               ResourceTablePatch.Builder builder) throws IOException {
+    byte[] newBytes = newChunk.toByteArray();
+    if (oldChunk == null) {
+      builder.insert(newBytes, 0, newBytes.length);
+      return newBytes.length;
+    }
+
+    int oldOffset = oldChunk.getOffset();
+    if (oldChunk.getOriginalChunkSize() == newBytes.length
+        && builder.rangeEquals(oldOffset, newBytes, 0, newBytes.length)) {
+      builder.copy(oldOffset, newBytes.length);
+    } else if (oldChunk instanceof ChunkWithChunks && newChunk instanceof ChunkWithChunks
+        && oldChunk.getHeaderSize() == newChunk.getHeaderSize()) {
+      int start = builder.size();
+      builder.copyOrInsert(oldOffset, newBytes, 0, newChunk.getHeaderSize());
+      diffChunks(((ChunkWithChunks) oldChunk).getChunks().values(),
+          ((ChunkWithChunks) newChunk).getChunks().values(), true, builder);
+      Preconditions.checkState(builder.size() - start == newBytes.length,
+          "Children of %s did not serialize to the size of their parent.", newChunk.getType());
+    } else if (oldChunk instanceof TypeChunk && newChunk instanceof TypeChunk
+        && oldChunk.getHeaderSize() == newChunk.getHeaderSize()) {
+      diffEntries((TypeChunk) oldChunk, newBytes, newChunk.getHeaderSize(), builder);
+    } else {
+      builder.insert(newBytes, 0, newBytes.length);
+    }
+    return newBytes.length;
+  }
+
+  /**
+   * Adds the operations which produce the serialized {@link TypeChunk} {@code newBytes}, copying
+   * each entry payload from the entry with the same index in {@code oldChunk} when it is unchanged.
+   */
+  private static void diffEntries(TypeChunk oldChunk, byte[] newBytes, int headerSize,
+                                  ResourceTablePatch.Builder builder) {
+    ByteBuffer newBuffer = ByteBuffer.wrap(newBytes).order(ByteOrder.LITTLE_ENDIAN);
+    ByteBuffer oldBuffer = ByteBuffer.wrap(builder.oldBytes()).order(ByteOrder.LITTLE_ENDIAN);
+    int oldOffset = oldChunk.getOffset();
+    int oldEnd = oldOffset + oldChunk.getOriginalChunkSize();
+    int oldOffsetsStart = oldOffset + oldChunk.getEntryOffsetsStart();
+    int oldEntriesStart = oldOffset + oldChunk.getEntriesStart();
+    int oldEntryCount = oldChunk.getTotalEntryCount();
+    int newEntriesStart = newBuffer.getInt(TYPE_ENTRIES_START_OFFSET);
+    int newEntryCount = (newEntriesStart - headerSize) / 4;
+
+    // The header and offset table. The offsets change whenever an entry before them changes size.
+    builder.copyOrInsert(oldOffset, newBytes, 0, newEntriesStart);
+
+    // Entries may share a payload, so walk the distinct payload offsets in ascending order.
+    Map<Integer, Integer> firstIndexAtOffset = new HashMap<>();
+    TreeSet<Integer> payloadOffsets = new TreeSet<>();
+    for (int i = 0; i < newEntryCount; i++) {
+      int entryOffset = newBuffer.getInt(headerSize + i * 4);
+      if (entryOffset != TypeChunk.Entry.NO_ENTRY) {
+        payloadOffsets.add(entryOffset);
+        firstIndexAtOffset.putIfAbsent(entryOffset, i);
+      }
+    }
+
+    int position = newEntriesStart;
+    for (int entryOffset : payloadOffsets) {
+      int start = newEntriesStart + entryOffset;
+      Integer next = payloadOffsets.higher(entryOffset);
+      int end = next == null ? newBytes.length : newEntriesStart + next;
+      Preconditions.checkState(start == position, "Entry payloads are not contiguous.");
+      int index = firstIndexAtOffset.get(entryOffset);
+      int oldEntryStart = -1;
+      if (index < oldEntryCount) {
+        int oldEntryOffset = oldBuffer.getInt(oldOffsetsStart + index * 4);
+        if (oldEntryOffset != TypeChunk.Entry.NO_ENTRY
+            && oldEntriesStart + oldEntryOffset + (end - start) <= oldEnd) {
+          oldEntryStart = oldEntriesStart + oldEntryOffset;
+        }
+      }
+      if (oldEntryStart >= 0) {
+        builder.copyOrInsert(oldEntryStart, newBytes, start, end - start);
+      } else {
+        builder.insert(newBytes, start, end - start);
+      }
+      position = end;
+    }
+    builder.insert(newBytes, position, newBytes.length - position);
+  }
+
+  /** Returns the structural key used to match {@code chunk} against chunks of the other file. */
+  private static Object keyOf(Chunk chunk) {
+    Chunk.Type type = chunk.getType();
+    if (chunk instanceof PackageChunk) {
+      PackageChunk packageChunk = (PackageChunk) chunk;
+      return Arrays.asList(type, packageChunk.getId(), packageChunk.getPackageName());
+    } else if (chunk instanceof TypeSpecChunk) {
+      return Arrays.asList(type, ((TypeSpecChunk) chunk).getId());
+    } else if (chunk instanceof TypeChunk) {
+      TypeChunk typeChunk = (TypeChunk) chunk;
+      return Arrays.asList(type, typeChunk.getId(), typeChunk.getConfiguration());
+    }
+    return Arrays.asList(type, chunk.getClass());
+  }
+
+  private static void insertPadding(int length, ResourceTablePatch.Builder builder) {
+    int padding = (Chunk.PAD_BOUNDARY - length % Chunk.PAD_BOUNDARY) % Chunk.PAD_BOUNDARY;
+    builder.insert(new byte[padding], 0, padding);
+  }
+}
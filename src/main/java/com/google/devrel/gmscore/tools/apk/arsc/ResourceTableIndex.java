@@ -0,0 +1,458 @@
+package com.google.devrel.gmscore.tools.apk.arsc;
+
+import com.google.common.base.Preconditions;
+import com.google.common.io.LittleEndianDataOutputStream;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * A compact, flat index of a resource table which answers lookups directly against the table's
+ * bytes without building a {@link Chunk} tree. The index holds the offsets of every string in the
+ * table's string pools, the distinct {@link BinaryResourceConfiguration}s, and for every resource id
+ * the offset of its {@link TypeChunk.Entry} in each configuration.
+ *
+ * <p>The index is a single little-endian byte array, so it can be written to disk and memory-mapped
+ * when reopened. See {@link ResourceTableIndexCache}.
+ */
+public final class ResourceTableIndex {
+
+  /** Identifies serialized indices. The bytes "ARIX" in little-endian. */
+  private static final int MAGIC = 0x58495241;
+
+  /** The version of the serialized index format. */
+  private static final int VERSION = 3;
+
+  /** The offset in bytes of the CRC32 of everything after the header. */
+  private static final int CHECKSUM_OFFSET = 24;
+
+  /** The number of bytes before the pool records. */
+  private static final int HEADER_SIZE = 28;
+
+  /** The number of bytes in a pool record: flags, string count, string offsets position. */
+  private static final int POOL_RECORD_SIZE = 12;
+
+  /** Set in a pool record's flags if the pool's strings are UTF-8. */
+  private static final int POOL_UTF8 = 1;
+
+  /** Set in a pool record's flags if the pool's strings are sorted. */
+  private static final int POOL_SORTED = 2;
+
+  /** The number of bytes in a package record: id, type pool, key pool, type count, types position. */
+  private static final int PACKAGE_RECORD_SIZE = 20;
+
+  /** The offset in bytes, from the start of a {@link TypeChunk}, of its configuration. */
+  private static final int TYPE_CONFIGURATION_OFFSET = 20;
+
+  /** The number of bytes in the size, flags and key fields at the start of an entry. */
+  private static final int ENTRY_HEADER_SIZE = 8;
+
+  /** The index of the resource table's global string pool. */
+  public static final int GLOBAL_STRING_POOL = 0;
+
+  /** Returned when a resource has no entry in a configuration. */
+  public static final int NO_ENTRY = -1;
+
+  private final ByteBuffer index;
+  private final ByteBuffer table;
+  private final int poolCount;
+  private final int configurationCount;
+  private final int packageCount;
+  private final int configurationsStart;
+  private final int packagesStart;
+
+  /**
+   * Creates a view of a serialized index over the table it was built from.
+   *
+   * @param index The serialized index, such as returned by {@link #build(BinaryResourceFile)}.
+   * @param table The bytes of the resource table the index was built from.
+   * @throws IllegalArgumentException If {@code index} is not a valid index for {@code table}.
+   */
+  public ResourceTableIndex(ByteBuffer index, byte[] table) {
+    this.index = index.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+    this.table = ByteBuffer.wrap(table).order(ByteOrder.LITTLE_ENDIAN);
+    Preconditions.checkArgument(this.index.limit() >= HEADER_SIZE
+        && this.index.getInt(0) == MAGIC, "Not a resource table index.");
+    Preconditions.checkArgument(this.index.getInt(4) == VERSION, "Unsupported index version.");
+    Preconditions.checkArgument(this.index.getInt(8) == table.length,
+        "Index was built for a table of a different size.");
+    // Every position in the index is trusted once the body matches the checksum, so truncated or
+    // garbled indices are rejected here rather than failing on lookups.
+    Preconditions.checkArgument(this.index.getInt(CHECKSUM_OFFSET) == checksum(this.index),
+        "Index is truncated or corrupt.");
+    poolCount = this.index.getInt(12);
+    configurationCount = this.index.getInt(16);
+    packageCount = this.index.getInt(20);
+    long packagesEnd = HEADER_SIZE + (long) poolCount * POOL_RECORD_SIZE
+        + (long) configurationCount * 4 + (long) packageCount * PACKAGE_RECORD_SIZE;
+    Preconditions.checkArgument(poolCount >= 0 && configurationCount >= 0 && packageCount >= 0
+        && packagesEnd <= this.index.limit(), "Index records are out of bounds.");
+    configurationsStart = HEADER_SIZE + poolCount * POOL_RECORD_SIZE;
+    packagesStart = configurationsStart + configurationCount * 4;
+  }
+
+  /**
+   * Builds the index of the first {@link ResourceTableChunk} in {@code file}.
+   *
+   * @param file A resource file containing a resource table.
+   * @return The serialized index.
+   * @throws IllegalArgumentException If {@code file} does not contain a resource table.
+   */
+  public static byte[] build(BinaryResourceFile file) throws IOException {
+    ResourceTableChunk resourceTable = null;
+    for (Chunk chunk : file.getChunks()) {
+      if (chunk instanceof ResourceTableChunk) {
+        resourceTable = (ResourceTableChunk) chunk;
+        break;
+      }
+    }
+    Preconditions.checkArgument(resourceTable != null, "File does not contain a resource table.");
+    return new Writer(file.getOriginalBytes()).write(resourceTable);
+  }
+
+  /** Returns the number of string pools in the index. The global pool is always first. */
+  public int getStringPoolCount() {
+    return poolCount;
+  }
+
+  /** Returns the number of strings in the given pool. */
+  public int getStringCount(int pool) {
+    return index.getInt(poolRecord(pool) + 4);
+  }
+
+  /**
+   * Returns a string of one of the table's string pools, decoding only that string.
+   *
+   * @param pool The index of the string pool, e.g. {@link #GLOBAL_STRING_POOL}.
+   * @param stringIndex The (0-based) index of the string in the pool.
+   * @return The string, or "?" if the index is out of bounds like {@link StringPoolChunk}.
+   */
+  @Nonnull
+  public String getString(int pool, int stringIndex) {
+    int record = poolRecord(pool);
+    if (stringIndex < 0 || stringIndex >= index.getInt(record + 4)) {
+      return "?";
+    }
+    BinaryResourceString.Type type = (index.getInt(record) & POOL_UTF8) != 0
+        ? BinaryResourceString.Type.UTF8 : BinaryResourceString.Type.UTF16;
+    int stringOffset = index.getInt(index.getInt(record + 8) + stringIndex * 4);
+    return BinaryResourceString.decodeString(table, stringOffset, type);
+  }
+
+  /**
+   * Returns the (0-based) index of the first occurrence of {@code string} in one of the table's
+   * string pools. Sorted pools, such as key pools after {@link PackageChunk#sortKeyStringPool()},
+   * are binary searched and only the strings compared against are decoded. Other pools are
+   * searched linearly.
+   *
+   * @param pool The index of the string pool, e.g. {@link #GLOBAL_STRING_POOL}.
+   * @param string The string to find.
+   * @return The index of the string, or -1 if it's not in the pool.
+   */
+  public int indexOfString(int pool, String string) {
+    int record = poolRecord(pool);
+    int count = index.getInt(record + 4);
+    if ((index.getInt(record) & POOL_SORTED) == 0) {
+      for (int i = 0; i < count; i++) {
+        if (string.equals(getString(pool, i))) {
+          return i;
+        }
+      }
+      return -1;
+    }
+    int low = 0;
+    int high = count - 1;
+    int result = -1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      int compare = getString(pool, mid).compareTo(string);
+      if (compare < 0) {
+        low = mid + 1;
+      } else {
+        if (compare == 0) {
+          result = mid;
+        }
+        high = mid - 1;
+      }
+    }
+    return result;
+  }
+
+  /** Returns the number of distinct configurations used by the table. */
+  public int getConfigurationCount() {
+    return configurationCount;
+  }
+
+  /** Returns the configuration with the given (0-based) index. */
+  public BinaryResourceConfiguration getConfiguration(int configurationIndex) {
+    Preconditions.checkElementIndex(configurationIndex, configurationCount);
+    ByteBuffer view = table.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+    view.position(index.getInt(configurationsStart + configurationIndex * 4));
+    return BinaryResourceConfiguration.create(view);
+  }
+
+  /** Returns the number of packages in the table. */
+  public int getPackageCount() {
+    return packageCount;
+  }
+
+  /** Returns the id of the package with the given (0-based) index. */
+  public int getPackageId(int packageIndex) {
+    Preconditions.checkElementIndex(packageIndex, packageCount);
+    return index.getInt(packagesStart + packageIndex * PACKAGE_RECORD_SIZE);
+  }
+
+  /**
+   * Returns the number of configurations in which the type of {@code resourceId} is defined, or 0
+   * if the type is unknown. Configurations are addressed by a slot in {@code [0, count)}.
+   */
+  public int getSlotCount(int resourceId) {
+    int type = typeRecord(resourceId);
+    return type == 0 ? 0 : index.getInt(type + 4);
+  }
+
+  /** Returns the index of the configuration in the given slot of {@code resourceId}'s type. */
+  public int getConfigurationIndex(int resourceId, int slot) {
+    int type = typeRecord(resourceId);
+    Preconditions.checkState(type != 0, "Unknown resource type of %s", resourceId);
+    Preconditions.checkElementIndex(slot, index.getInt(type + 4));
+    return index.getInt(type + 8 + slot * 4);
+  }
+
+  /**
+   * Returns the offset in the table of the entry of {@code resourceId} in the given slot, or
+   * {@link #NO_ENTRY} if the resource is not defined in that configuration.
+   */
+  public int getEntryOffset(int resourceId, int slot) {
+    int type = typeRecord(resourceId);
+    if (type == 0) {
+      return NO_ENTRY;
+    }
+    int entryCount = index.getInt(type);
+    int slotCount = index.getInt(type + 4);
+    int entry = resourceId & 0xFFFF;
+    if (slot < 0 || slot >= slotCount || entry >= entryCount) {
+      return NO_ENTRY;
+    }
+    return index.getInt(type + 8 + slotCount * 4 + (slot * entryCount + entry) * 4);
+  }
+
+  /** Returns the name of the type of {@code resourceId} (e.g. string, attr, id), or null. */
+  @Nullable
+  public String getTypeName(int resourceId) {
+    int record = packageRecord(resourceId >>> 24);
+    int typeId = (resourceId >> 16) & 0xFF;
+    return record < 0 || typeId == 0 ? null : getString(index.getInt(record + 4), typeId - 1);
+  }
+
+  /** Returns the key name of {@code resourceId}, or null if it has no entry in any configuration. */
+  @Nullable
+  public String getKeyName(int resourceId) {
+    int slots = getSlotCount(resourceId);
+    for (int slot = 0; slot < slots; slot++) {
+      int entryOffset = getEntryOffset(resourceId, slot);
+      if (entryOffset != NO_ENTRY) {
+        int record = packageRecord(resourceId >>> 24);
+        return getString(index.getInt(record + 8), table.getInt(entryOffset + 4));
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Returns the value of a simple (non-complex) entry of {@code resourceId} in the given slot, or
+   * null if there is no entry or the entry is complex.
+   */
+  @Nullable
+  public BinaryResourceValue getValue(int resourceId, int slot) {
+    int entryOffset = getEntryOffset(resourceId, slot);
+    if (entryOffset == NO_ENTRY) {
+      return null;
+    }
+    int flags = table.getShort(entryOffset + 2) & 0xFFFF;
+    if ((flags & TypeChunk.Entry.FLAG_COMPLEX) != 0) {
+      return null;
+    }
+    // Like TypeChunk.Entry, the value is read directly after the fixed part of the entry header,
+    // since tampered tables can carry bogus header sizes.
+    return BinaryResourceValue.create(table, entryOffset + ENTRY_HEADER_SIZE);
+  }
+
+  /** Returns the CRC32 of the bytes of {@code index} after the header. */
+  private static int checksum(ByteBuffer index) {
+    ByteBuffer body = index.duplicate();
+    body.position(HEADER_SIZE);
+    CRC32 crc = new CRC32();
+    crc.update(body);
+    return (int) crc.getValue();
+  }
+
+  private int poolRecord(int pool) {
+    Preconditions.checkElementIndex(pool, poolCount);
+    return HEADER_SIZE + pool * POOL_RECORD_SIZE;
+  }
+
+  /** Returns the position of the record of package {@code packageId}, or -1 if there is none. */
+  private int packageRecord(int packageId) {
+    for (int i = 0; i < packageCount; i++) {
+      int record = packagesStart + i * PACKAGE_RECORD_SIZE;
+      if (index.getInt(record) == packageId) {
+        return record;
+      }
+    }
+    return -1;
+  }
+
+  /** Returns the position of the type record of {@code resourceId}, or 0 if there is none. */
+  private int typeRecord(int resourceId) {
+    int record = packageRecord(resourceId >>> 24);
+    int typeId = (resourceId >> 16) & 0xFF;
+    if (record < 0 || typeId == 0 || typeId > index.getInt(record + 12)) {
+      return 0;
+    }
+    return index.getInt(index.getInt(record + 16) + (typeId - 1) * 4);
+  }
+
+  /** Serializes the index of a parsed resource table. */
+  private static final class Writer {
+    private final ByteBuffer table;
+    private final List<StringPoolChunk> pools = new ArrayList<>();
+    private final Map<BinaryResourceConfiguration, Integer> configurations = new LinkedHashMap<>();
+    private final List<Integer> configurationOffsets = new ArrayList<>();
+
+    Writer(byte[] table) {
+      this.table = ByteBuffer.wrap(table).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    byte[] write(ResourceTableChunk resourceTable) throws IOException {
+      Collection<PackageChunk> packages = resourceTable.getPackages();
+      pools.add(resourceTable.getStringPool());
+      for (PackageChunk packageChunk : packages) {
+        pools.add(packageChunk.getTypeStringPool());
+        pools.add(packageChunk.getKeyStringPool());
+        for (TypeChunk typeChunk : packageChunk.getTypeChunks()) {
+          if (!configurations.containsKey(typeChunk.getConfiguration())) {
+            configurations.put(typeChunk.getConfiguration(), configurations.size());
+            configurationOffsets.add(typeChunk.getOffset() + TYPE_CONFIGURATION_OFFSET);
+          }
+        }
+      }
+
+      // Sections are laid out in order: header, pool records, configurations, package records,
+      // type tables, string offsets. Positions are computed up front and everything after the
+      // package records is accumulated separately.
+      int packagesStart = HEADER_SIZE + pools.size() * POOL_RECORD_SIZE
+          + configurations.size() * 4;
+      int tablesStart = packagesStart + packages.size() * PACKAGE_RECORD_SIZE;
+      ByteArrayOutputStream tablesBytes = new ByteArrayOutputStream();
+      LittleEndianDataOutputStream tables = new LittleEndianDataOutputStream(tablesBytes);
+
+      ByteArrayOutputStream packageBytes = new ByteArrayOutputStream();
+      LittleEndianDataOutputStream packageRecords = new LittleEndianDataOutputStream(packageBytes);
+      int poolIndex = 1;
+      for (PackageChunk packageChunk : packages) {
+        int typeCount = 0;
+        for (TypeChunk typeChunk : packageChunk.getTypeChunks()) {
+          typeCount = Math.max(typeCount, typeChunk.getId());
+        }
+        packageRecords.writeInt(packageChunk.getId());
+        packageRecords.writeInt(poolIndex++);
+        packageRecords.writeInt(poolIndex++);
+        packageRecords.writeInt(typeCount);
+        packageRecords.writeInt(tablesStart + tablesBytes.size());
+        writeTypes(packageChunk, typeCount, tablesStart + tablesBytes.size(), tables);
+      }
+
+      int offsetsStart = tablesStart + tablesBytes.size();
+      ByteArrayOutputStream baos = new ByteArrayOutputStream();
+      try (LittleEndianDataOutputStream output = new LittleEndianDataOutputStream(baos)) {
+        output.writeInt(MAGIC);
+        output.writeInt(VERSION);
+        output.writeInt(table.limit());
+        output.writeInt(pools.size());
+        output.writeInt(configurations.size());
+        output.writeInt(packages.size());
+        output.writeInt(0);  // Checksum, filled in below
+        int offsetsPosition = offsetsStart;
+        for (StringPoolChunk pool : pools) {
+          output.writeInt((pool.isUTF8() ? POOL_UTF8 : 0) | (pool.isSearchable() ? POOL_SORTED : 0));
+          output.writeInt(pool.getStringCount());
+          output.writeInt(offsetsPosition);
+          offsetsPosition += pool.getStringCount() * 4;
+        }
+        for (int configurationOffset : configurationOffsets) {
+          output.writeInt(configurationOffset);
+        }
+        output.write(packageBytes.toByteArray());
+        output.write(tablesBytes.toByteArray());
+        for (StringPoolChunk pool : pools) {
+          writeStringOffsets(pool, output);
+        }
+      }
+      ByteBuffer result = ByteBuffer.wrap(baos.toByteArray()).order(ByteOrder.LITTLE_ENDIAN);
+      result.putInt(CHECKSUM_OFFSET, checksum(result));
+      return result.array();
+    }
+
+    /**
+     * Writes the type position table of a package, followed by each type record.
+     *
+     * @param position The position in the index that {@code tables} is currently at.
+     */
+    private void writeTypes(PackageChunk packageChunk, int typeCount, int position,
+                            LittleEndianDataOutputStream tables) throws IOException {
+      ByteArrayOutputStream recordBytes = new ByteArrayOutputStream();
+      LittleEndianDataOutputStream records = new LittleEndianDataOutputStream(recordBytes);
+      int recordsStart = position + typeCount * 4;
+      for (int typeId = 1; typeId <= typeCount; typeId++) {
+        Collection<TypeChunk> typeChunks = packageChunk.getTypeChunks(typeId);
+        if (typeChunks.isEmpty()) {
+          tables.writeInt(0);
+          continue;
+        }
+        tables.writeInt(recordsStart + recordBytes.size());
+        int entryCount = 0;
+        for (TypeChunk typeChunk : typeChunks) {
+          entryCount = Math.max(entryCount, typeChunk.getTotalEntryCount());
+        }
+        records.writeInt(entryCount);
+        records.writeInt(typeChunks.size());
+        for (TypeChunk typeChunk : typeChunks) {
+          records.writeInt(configurations.get(typeChunk.getConfiguration()));
+        }
+        for (TypeChunk typeChunk : typeChunks) {
+          int start = typeChunk.getOffset();
+          int offsets = start + typeChunk.getEntryOffsetsStart();
+          int entriesStart = start + typeChunk.getEntriesStart();
+          Map<Integer, TypeChunk.Entry> entries = typeChunk.getEntries();
+          for (int i = 0; i < entryCount; i++) {
+            // Entries that could not be parsed, e.g. due to bogus offsets, are left out.
+            records.writeInt(entries.containsKey(i)
+                ? entriesStart + table.getInt(offsets + i * 4) : NO_ENTRY);
+          }
+        }
+      }
+      tables.write(recordBytes.toByteArray());
+    }
+
+    private void writeStringOffsets(StringPoolChunk pool, LittleEndianDataOutputStream output)
+        throws IOException {
+      int start = pool.getOffset();
+      int offsets = start + pool.getHeaderSize();
+      int stringsStart = start + table.getInt(start + 20);
+      for (int i = 0; i < pool.getStringCount(); i++) {
+        output.writeInt(stringsStart + table.getInt(offsets + i * 4));
+      }
+    }
+  }
+}
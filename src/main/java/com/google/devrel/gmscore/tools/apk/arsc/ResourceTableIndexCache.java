@@ -0,0 +1,179 @@
+package com.google.devrel.gmscore.tools.apk.arsc;
+
+import com.google.common.base.Preconditions;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A persistent cache of {@link ResourceTableIndex}es in a local directory, keyed by a SHA-256 hash
+ * of the table bytes. Opening a table whose index is cached memory-maps the index and skips parsing
+ * the table entirely.
+ *
+ * <p>The directory is bounded in size. Whenever a new index is written, the least recently opened
+ * indices are deleted until the directory fits in the configured maximum. Recency is tracked through
+ * file modification times, so it survives restarts and is shared by processes using the same
+ * directory.
+ */
+public final class ResourceTableIndexCache {
+
+  /** The file extension of cached indices. */
+  private static final String EXTENSION = ".arsc-index";
+
+  private final Path directory;
+  private final long maximumSize;
+
+  /**
+   * Creates a new {@link ResourceTableIndexCache}.
+   *
+   * @param directory The directory to keep indices in. It is created if it does not exist.
+   * @param maximumSize The maximum total size in bytes of the cached indices.
+   * @throws IOException Thrown if {@code directory} could not be created.
+   */
+  public ResourceTableIndexCache(Path directory, long maximumSize) throws IOException {
+    Preconditions.checkArgument(maximumSize > 0, "maximumSize must be positive.");
+    this.directory = Files.createDirectories(directory);
+    this.maximumSize = maximumSize;
+  }
+
+  /**
+   * Returns the index of {@code table}, from the cache if present, otherwise by parsing the table
+   * and caching the result.
+   *
+   * @param table The bytes of a resource table.
+   * @return The index of the table.
+   * @throws IOException Thrown if the cache directory could not be read or written.
+   * @throws IllegalArgumentException If {@code table} does not contain a resource table.
+   */
+  public ResourceTableIndex open(byte[] table) throws IOException {
+    Path path = directory.resolve(Chunk.CONTENT_HASH_FUNCTION.hashBytes(table) + EXTENSION);
+    ByteBuffer index = map(path);
+    if (index != null) {
+      try {
+        return new ResourceTableIndex(index, table);
+      } catch (IllegalArgumentException ex) {
+        // Stale or corrupt, such as an index from an older format version. Rebuild it.
+        Files.deleteIfExists(path);
+      }
+    }
+
+    byte[] built = ResourceTableIndex.build(new BinaryResourceFile(table));
+    write(path, built);
+    evict(path);
+    return new ResourceTableIndex(ByteBuffer.wrap(built), table);
+  }
+
+  /** Returns the total size in bytes of the cached indices. */
+  public long getSize() throws IOException {
+    long size = 0;
+    for (Path path : listIndices()) {
+      size += sizeOf(path);
+    }
+    return size;
+  }
+
+  /** Deletes every cached index. */
+  public void clear() throws IOException {
+    for (Path path : listIndices()) {
+      deleteQuietly(path);
+    }
+  }
+
+  /** Memory-maps the index at {@code path} and marks it as recently used, or returns null. */
+  private static ByteBuffer map(Path path) throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      Files.setLastModifiedTime(path, FileTime.fromMillis(System.currentTimeMillis()));
+      return buffer;
+    } catch (NoSuchFileException ex) {
+      return null;
+    }
+  }
+
+  private void write(Path path, byte[] bytes) throws IOException {
+    Path temp = Files.createTempFile(directory, path.getFileName().toString(), ".tmp");
+    try {
+      Files.write(temp, bytes);
+      try {
+        Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE,
+            StandardCopyOption.REPLACE_EXISTING);
+      } catch (AtomicMoveNotSupportedException ex) {
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+      }
+    } finally {
+      Files.deleteIfExists(temp);
+    }
+  }
+
+  /** Deletes the least recently used indices, other than {@code keep}, until the cache fits. */
+  private void evict(Path keep) throws IOException {
+    List<Path> paths = listIndices();
+    long size = 0;
+    for (Path path : paths) {
+      size += sizeOf(path);
+    }
+    if (size <= maximumSize) {
+      return;
+    }
+    paths.sort(Comparator.comparingLong(ResourceTableIndexCache::lastModified));
+    for (Path path : paths) {
+      if (size <= maximumSize) {
+        break;
+      }
+      if (!path.equals(keep)) {
+        long pathSize = sizeOf(path);
+        if (deleteQuietly(path)) {
+          size -= pathSize;
+        }
+      }
+    }
+  }
+
+  private List<Path> listIndices() throws IOException {
+    List<Path> paths = new ArrayList<>();
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + EXTENSION)) {
+      for (Path path : stream) {
+        paths.add(path);
+      }
+    }
+    return paths;
+  }
+
+  private static long sizeOf(Path path) {
+    try {
+      return Files.size(path);
+    } catch (IOException ex) {
+      return 0;
+    }
+  }
+
+  private static long lastModified(Path path) {
+    try {
+      return Files.getLastModifiedTime(path).toMillis();
+    } catch (IOException ex) {
+      return 0;
+    }
+  }
+
+  private static boolean deleteQuietly(Path path) {
+    try {
+      return Files.deleteIfExists(path);
+    } catch (IOException ex) {
+      // Mapped files cannot be deleted on some platforms while in use. They're retried next time.
+      return false;
+    }
+  }
+}
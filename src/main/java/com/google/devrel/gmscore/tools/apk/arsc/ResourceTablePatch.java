@@ -0,0 +1,318 @@
+package com.google.devrel.gmscore.tools.apk.arsc;
+
+import com.google.common.base.Preconditions;
+import com.google.common.io.LittleEndianDataOutputStream;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * A binary delta which rebuilds a resource file from the bytes of an older version of it. Patches
+ * are created by {@link ResourceTableDiff} and are a flat list of operations which either copy a
+ * byte range of the old file or insert new bytes. Applying a patch never parses the old file.
+ */
+public final class ResourceTablePatch implements SerializableResource {
+
+  /** Identifies serialized patches. The bytes "ARPT" in little-endian. */
+  private static final int MAGIC = 0x54505241;
+
+  /** The version of the serialized patch format. */
+  private static final int VERSION = 1;
+
+  /** The size in bytes of the serialized patch header. */
+  private static final int HEADER_SIZE = 24;
+
+  /** The size in bytes of the smallest serialized operation, an empty insert. */
+  private static final int MIN_OPERATION_SIZE = 5;
+
+  /** The operation code for copying a range of the old file. */
+  private static final byte OP_COPY = 1;
+
+  /** The operation code for inserting new bytes. */
+  private static final byte OP_INSERT = 2;
+
+  private final int oldSize;
+  private final int oldChecksum;
+  private final int newSize;
+  private final List<Operation> operations;
+
+  private ResourceTablePatch(int oldSize, int oldChecksum, int newSize,
+                             List<Operation> operations) {
+    this.oldSize = oldSize;
+    this.oldChecksum = oldChecksum;
+    this.newSize = newSize;
+    this.operations = operations;
+  }
+
+  /**
+   * Reads a patch previously written by {@link #toByteArray()}.
+   *
+   * @param bytes The serialized patch.
+   * @return The patch.
+   * @throws IllegalArgumentException If {@code bytes} is not a valid patch.
+   */
+  public static ResourceTablePatch fromByteArray(byte[] bytes) {
+    ByteBuffer buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+    Preconditions.checkArgument(bytes.length >= HEADER_SIZE && buffer.getInt() == MAGIC,
+        "Not a resource table patch.");
+    int version = buffer.getInt();
+    Preconditions.checkArgument(version == VERSION, "Unsupported patch version: %s", version);
+    int oldSize = buffer.getInt();
+    int oldChecksum = buffer.getInt();
+    int newSize = buffer.getInt();
+    int operationCount = buffer.getInt();
+    Preconditions.checkArgument(oldSize >= 0 && newSize >= 0 && operationCount >= 0,
+        "Patch header is corrupt.");
+    List<Operation> operations =
+        new ArrayList<>(Math.min(operationCount, buffer.remaining() / MIN_OPERATION_SIZE));
+    long size = 0;
+    for (int i = 0; i < operationCount; i++) {
+      checkRemaining(buffer, MIN_OPERATION_SIZE);
+      byte code = buffer.get();
+      if (code == OP_COPY) {
+        checkRemaining(buffer, 8);
+        int offset = buffer.getInt();
+        int length = buffer.getInt();
+        Preconditions.checkArgument(
+            offset >= 0 && length >= 0 && (long) offset + length <= oldSize,
+            "Copy operation is outside of the old file.");
+        operations.add(Operation.copy(offset, length));
+        size += length;
+      } else if (code == OP_INSERT) {
+        int length = buffer.getInt();
+        Preconditions.checkArgument(length >= 0, "Insert operation has a negative length.");
+        checkRemaining(buffer, length);
+        byte[] data = new byte[length];
+        buffer.get(data);
+        operations.add(Operation.insert(data));
+        size += length;
+      } else {
+        throw new IllegalArgumentException("Unknown patch operation: " + code);
+      }
+    }
+    Preconditions.checkArgument(size == newSize,
+        "Patch operations produce %s bytes, but the new file has %s.", size, newSize);
+    return new ResourceTablePatch(oldSize, oldChecksum, newSize, operations);
+  }
+
+  /**
+   * Rebuilds the new resource file from the bytes of the old one.
+   *
+   * @param oldBytes The bytes of the resource file this patch was created against.
+   * @return The bytes of the new resource file.
+   * @throws IllegalArgumentException If {@code oldBytes} is not the file this patch was made for.
+   */
+  public byte[] apply(byte[] oldBytes) {
+    Preconditions.checkArgument(oldBytes.length == oldSize && checksum(oldBytes) == oldChecksum,
+        "Patch does not apply to the given resource file.");
+    byte[] result = new byte[newSize];
+    int position = 0;
+    for (Operation operation : operations) {
+      if (operation.data == null) {
+        System.arraycopy(oldBytes, operation.offset, result, position, operation.length);
+      } else {
+        System.arraycopy(operation.data, 0, result, position, operation.length);
+      }
+      position += operation.length;
+    }
+    return result;
+  }
+
+  /** Returns the size in bytes of the file that this patch rebuilds. */
+  public int getNewSize() {
+    return newSize;
+  }
+
+  /** Returns the number of bytes that this patch copies from the old file. */
+  public int getCopiedByteCount() {
+    int count = 0;
+    for (Operation operation : operations) {
+      if (operation.data == null) {
+        count += operation.length;
+      }
+    }
+    return count;
+  }
+
+  /** Returns the number of bytes that this patch carries itself. */
+  public int getInsertedByteCount() {
+    return newSize - getCopiedByteCount();
+  }
+
+  /** Returns true if applying this patch yields the old file unchanged. */
+  public boolean isIdentity() {
+    return oldSize == newSize
+        && (operations.isEmpty() || (operations.size() == 1
+            && operations.get(0).data == null && operations.get(0).offset == 0));
+  }
+
+  @Override
+  public byte[] toByteArray() throws IOException {
+    return toByteArray(false);
+  }
+
+  @Override
+  public byte[] toByteArray(boolean shrink) throws IOException {
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    try (LittleEndianDataOutputStream output = new LittleEndianDataOutputStream(baos)) {
+      output.writeInt(MAGIC);
+      output.writeInt(VERSION);
+      output.writeInt(oldSize);
+      output.writeInt(oldChecksum);
+      output.writeInt(newSize);
+      output.writeInt(operations.size());
+      for (Operation operation : operations) {
+        if (operation.data == null) {
+          output.writeByte(OP_COPY);
+          output.writeInt(operation.offset);
+          output.writeInt(operation.length);
+        } else {
+          output.writeByte(OP_INSERT);
+          output.writeInt(operation.length);
+          output.write(operation.data);
+        }
+      }
+    }
+    return baos.toByteArray();
+  }
+
+  @Override
+  public String toString() {
+    return String.format("ResourceTablePatch{operations=%d, copied=%d, inserted=%d}",
+        operations.size(), getCopiedByteCount(), getInsertedByteCount());
+  }
+
+  private static void checkRemaining(ByteBuffer buffer, int size) {
+    Preconditions.checkArgument(buffer.remaining() >= size, "Patch is truncated.");
+  }
+
+  private static int checksum(byte[] bytes) {
+    CRC32 crc = new CRC32();
+    crc.update(bytes, 0, bytes.length);
+    return (int) crc.getValue();
+  }
+
+  /** A single copy or insert operation. */
+  private static final class Operation {
+    private final int offset;
+    private final int length;
+    private final byte[] data;
+
+    private Operation(int offset, int length, byte[] data) {
+      this.offset = offset;
+      this.length = length;
+      this.data = data;
+    }
+
+    static Operation copy(int offset, int length) {
+      return new Operation(offset, length, null);
+    }
+
+    static Operation insert(byte[] data) {
+      return new Operation(0, data.length, data);
+    }
+  }
+
+  /** Accumulates operations, merging adjacent copies and inserts. */
+  static final class Builder {
+    private final byte[] oldBytes;
+    private final List<Operation> operations = new ArrayList<>();
+    private final ByteArrayOutputStream pending = new ByteArrayOutputStream();
+    private int copyOffset = -1;
+    private int copyLength;
+    private int size;
+
+    Builder(byte[] oldBytes) {
+      this.oldBytes = oldBytes;
+    }
+
+    /** Returns the bytes of the file being patched. */
+    byte[] oldBytes() {
+      return oldBytes;
+    }
+
+    /** Adds a copy of {@code length} bytes of the old file starting at {@code offset}. */
+    void copy(int offset, int length) {
+      if (length == 0) {
+        return;
+      }
+      flushInsert();
+      if (copyOffset >= 0 && copyOffset + copyLength == offset) {
+        copyLength += length;
+      } else {
+        flushCopy();
+        copyOffset = offset;
+        copyLength = length;
+      }
+      size += length;
+    }
+
+    /** Adds {@code length} bytes of {@code data}, starting at {@code start}. */
+    void insert(byte[] data, int start, int length) {
+      if (length == 0) {
+        return;
+      }
+      flushCopy();
+      pending.write(data, start, length);
+      size += length;
+    }
+
+    /**
+     * Adds the range {@code [start, start + length)} of {@code data}, copying it from
+     * {@code oldOffset} in the old file if the bytes there are identical.
+     */
+    void copyOrInsert(int oldOffset, byte[] data, int start, int length) {
+      if (rangeEquals(oldOffset, data, start, length)) {
+        copy(oldOffset, length);
+      } else {
+        insert(data, start, length);
+      }
+    }
+
+    /** Returns true if {@code length} bytes of the old file at {@code oldOffset} match. */
+    boolean rangeEquals(int oldOffset, byte[] data, int start, int length) {
+      if (oldOffset < 0 || oldOffset + length > oldBytes.length) {
+        return false;
+      }
+      for (int i = 0; i < length; i++) {
+        if (oldBytes[oldOffset + i] != data[start + i]) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    /** Returns the number of bytes the patch will produce so far. */
+    int size() {
+      return size;
+    }
+
+    ResourceTablePatch build() {
+      flushInsert();
+      flushCopy();
+      return new ResourceTablePatch(oldBytes.length, checksum(oldBytes), size,
+          Collections.unmodifiableList(new ArrayList<>(operations)));
+    }
+
+    private void flushCopy() {
+      if (copyOffset >= 0) {
+        operations.add(Operation.copy(copyOffset, copyLength));
+        copyOffset = -1;
+        copyLength = 0;
+      }
+    }
+
+    private void flushInsert() {
+      if (pending.size() > 0) {
+        operations.add(Operation.insert(pending.toByteArray()));
+        pending.reset();
+      }
+    }
+  }
+}
@@ -0,0 +1,185 @@
+package com.google.devrel.gmscore.tools.apk.arsc;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Estimates the number of heap bytes retained by a parsed {@link BinaryResourceFile}.
+ *
+ * <p>The estimate assumes a 64-bit JVM without compressed references and strings stored as UTF-16,
+ * so it errs on the high side. It is meant for budgeting caches of parsed files rather than for
+ * exact accounting.
+ */
+public final class RetainedSizeEstimator {
+
+  /** Size in bytes of an object header. */
+  private static final int OBJECT_HEADER = 16;
+
+  /** Size in bytes of an object reference. */
+  private static final int REFERENCE = 8;
+
+  /** Size in bytes of an array header. */
+  private static final int ARRAY_HEADER = 24;
+
+  /** Size in bytes of a boxed {@link Integer}. */
+  private static final int BOXED_INTEGER = 16;
+
+  /** Size in bytes of an {@link java.util.ArrayList} without its backing array. */
+  private static final int ARRAY_LIST = 40;
+
+  /** Size in bytes of a hash map, excluding its table and entries. */
+  private static final int HASH_MAP = 64;
+
+  /** Size in bytes of a single hash map node, in a linked hash map or a tree map. */
+  private static final int MAP_NODE = 56;
+
+  /** Size in bytes of the fields common to all {@link Chunk}s. */
+  private static final int CHUNK = OBJECT_HEADER + 4 * 3 + REFERENCE * 3;
+
+  /** Size in bytes of a {@link BinaryResourceValue}. */
+  private static final int VALUE = OBJECT_HEADER + REFERENCE + 4 * 2;
+
+  /** Size in bytes of a {@link TypeChunk.Entry}, excluding its values. */
+  private static final int ENTRY = OBJECT_HEADER + 4 * 4 + REFERENCE * 3;
+
+  /** Size in bytes of a {@link BinaryResourceConfiguration}, excluding its byte arrays. */
+  private static final int CONFIGURATION = OBJECT_HEADER + 4 * 18 + REFERENCE * 5;
+
+  private RetainedSizeEstimator() {}  // Prevent instantiation
+
+  /**
+   * Estimates the heap bytes retained by {@code file}, including the bytes it was read from.
+   *
+   * @param file The parsed resource file.
+   * @return The estimated retained size in bytes.
+   */
+  public static long estimate(BinaryResourceFile file) {
+    long size = OBJECT_HEADER + REFERENCE * 2 + list(file.getChunks().size());
+    size += byteArray(file.getOriginalBytes().length);
+    size += OBJECT_HEADER + 48;  // The shared ByteBuffer wrapping the original bytes
+    for (Chunk chunk : file.getChunks()) {
+      size += estimate(chunk);
+    }
+    return size;
+  }
+
+  /**
+   * Estimates the heap bytes retained by {@code chunk} and its children, excluding the buffer it was
+   * read from.
+   *
+   * @param chunk The chunk.
+   * @return The estimated retained size in bytes.
+   */
+  public static long estimate(Chunk chunk) {
+    long size = CHUNK;
+    if (chunk instanceof ChunkWithChunks) {
+      List<Chunk> children = ((ChunkWithChunks) chunk).getChunkList();
+      // Parallel offset and chunk arrays, plus the list and map views over them.
+      size += 4 + REFERENCE * 4 + intArray(children.size()) + referenceArray(children.size())
+          + OBJECT_HEADER * 2 + REFERENCE * 2;
+      for (Chunk child : children) {
+        size += estimate(child);
+      }
+      if (chunk instanceof PackageChunk) {
+        // Type specs and types are indexed a second time by id.
+        size += map(children.size()) + REFERENCE * 7;
+        size += string(((PackageChunk) chunk).getPackageName());
+      }
+    } else if (chunk instanceof StringPoolChunk) {
+      size += estimateStringPool((StringPoolChunk) chunk);
+    } else if (chunk instanceof TypeChunk) {
+      size += estimateType((TypeChunk) chunk);
+    } else if (chunk instanceof TypeSpecChunk) {
+      size += 4 + intArray(((TypeSpecChunk) chunk).getResourceCount());
+    } else if (chunk instanceof XmlStartElementChunk) {
+      // Five ints per packed attribute, plus the list view over them.
+      size += 4 * 7 + REFERENCE * 2 + OBJECT_HEADER + REFERENCE
+          + intArray(((XmlStartElementChunk) chunk).getAttributeCount() * 5);
+    } else if (chunk instanceof XmlResourceMapChunk) {
+      size += REFERENCE + intArray(((XmlResourceMapChunk) chunk).getResourceCount());
+    } else if (chunk instanceof UnknownChunk) {
+      size += REFERENCE * 3 + 8 + ARRAY_HEADER * 2 + ((UnknownChunk) chunk).getCopiedSize();
+    } else {
+      // Remaining chunks hold a handful of indices into a string pool.
+      size += 4 * 6;
+    }
+    return size;
+  }
+
+  /**
+   * Estimates the heap bytes retained by {@code configuration}.
+   *
+   * @param configuration The configuration.
+   * @return The estimated retained size in bytes.
+   */
+  public static long estimate(BinaryResourceConfiguration configuration) {
+    return CONFIGURATION
+        + byteArray(configuration.language().length)
+        + byteArray(configuration.region().length)
+        + byteArray(configuration.localeScript().length)
+        + byteArray(configuration.localeVariant().length)
+        + byteArray(configuration.unknown().length);
+  }
+
+  private static long estimateStringPool(StringPoolChunk chunk) {
+    long size = 4 * 5 + 1 + REFERENCE * 2;
+    int stringCount = chunk.getStringCount();
+    size += list(stringCount);
+    for (int i = 0; i < stringCount; i++) {
+      size += string(chunk.getString(i));
+    }
+    int styleCount = chunk.getStyleCount();
+    size += list(styleCount);
+    for (int i = 0; i < styleCount; i++) {
+      // Each span holds three ints and a reference back to the pool.
+      int spanCount = chunk.getStyle(i).getSpanCount();
+      size += OBJECT_HEADER + REFERENCE + list(spanCount)
+          + (long) spanCount * (OBJECT_HEADER + 4 * 3 + REFERENCE);
+    }
+    return size;
+  }
+
+  private static long estimateType(TypeChunk chunk) {
+    long size = 4 * 5 + REFERENCE * 2 + estimate(chunk.getConfiguration());
+    Map<Integer, TypeChunk.Entry> entries = chunk.getDecodedEntries();
+    size += OBJECT_HEADER + 32;  // The tree map itself
+    for (TypeChunk.Entry entry : entries.values()) {
+      size += MAP_NODE + BOXED_INTEGER + ENTRY;
+      if (entry.value() != null) {
+        size += VALUE;
+      }
+      size += map(entry.values().size()) + (long) entry.values().size() * (BOXED_INTEGER + VALUE);
+    }
+    return size;
+  }
+
+  private static long string(String string) {
+    return OBJECT_HEADER + 8 + ARRAY_HEADER + 2L * string.length();
+  }
+
+  private static long byteArray(int length) {
+    return align(ARRAY_HEADER + (long) length);
+  }
+
+  private static long intArray(int length) {
+    return align(ARRAY_HEADER + 4L * length);
+  }
+
+  private static long referenceArray(int length) {
+    return align(ARRAY_HEADER + (long) REFERENCE * length);
+  }
+
+  private static long list(int size) {
+    return ARRAY_LIST + align(ARRAY_HEADER + (long) REFERENCE * size);
+  }
+
+  private static long map(int size) {
+    // Hash tables are sized to the next power of two above size / 0.75.
+    int capacity = Integer.highestOneBit(Math.max(1, size * 4 / 3) * 2 - 1);
+    return HASH_MAP + align(ARRAY_HEADER + (long) REFERENCE * capacity) + (long) MAP_NODE * size;
+  }
+
+  private static long align(long size) {
+    return (size + 7) & ~7L;
+  }
+}
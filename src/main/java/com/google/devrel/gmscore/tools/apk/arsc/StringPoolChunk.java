@@ -18,6 +18,7 @@ package com.google.devrel.gmscore.tools.apk.arsc;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableList.Builder;
 import com.google.common.io.LittleEndianDataOutputStream;
@@ -35,11 +36,17 @@ public final class StringPoolChunk extends Chunk {
   private static final int SORTED_FLAG = 1 << 0;
   private static final int UTF8_FLAG   = 1 << 8;
 
+  /** The offset from the start of the header that the flags field is at. */
+  private static final int FLAGS_OFFSET = 16;
+
   /** The offset from the start of the header that the stylesStart field is at. */
   private static final int STYLE_START_OFFSET = 24;
 
+  /** The largest character or byte count that a UTF-8 string's length prefix can hold. */
+  private static final int MAX_UTF8_LENGTH = 0x7FFF;
+
   /** Flags. */
-  private final int flags;
+  private int flags;
 
   /** Index from header of the string data. */
   private final int stringsStart;
@@ -79,6 +86,12 @@ public final class StringPoolChunk extends Chunk {
    */
   private boolean isOriginalDeduped = false;
 
+  /**
+   * True if {@code strings} can be binary searched: the pool is flagged as sorted, and the strings
+   * really are in order. Tampered pools can carry the flag without being sorted.
+   */
+  private boolean isSearchable = false;
+
   protected StringPoolChunk(ByteBuffer buffer, @Nullable Chunk parent) {
     super(buffer, parent);
     int stringCountEncoded = buffer.getInt();
@@ -104,17 +117,61 @@ public final class StringPoolChunk extends Chunk {
     super.init(buffer);
     strings.addAll(readStrings(buffer, offset + stringsStart, stringCount));
     styles.addAll(readStyles(buffer, offset + stylesStart, styleCount));
+    isSearchable = isSorted() && isOrdered(strings);
+  }
+
+  /** Returns true if {@code strings} are in the order of a sorted pool. */
+  private static boolean isOrdered(List<String> strings) {
+    for (int i = 1; i < strings.size(); ++i) {
+      if (strings.get(i - 1).compareTo(strings.get(i)) > 0) {
+        return false;
+      }
+    }
+    return true;
   }
 
   /**
    * Returns the 0-based index of the first occurrence of the given string, or -1 if the string is
-   * not in the pool. This runs in O(n) time.
+   * not in the pool. This runs in O(log n) time if the pool is sorted, else in O(n) time.
    *
    * @param string The string to check the pool for.
    * @return Index of the string, or -1 if not found.
    */
   public int indexOf(String string) {
-    return strings.indexOf(string);
+    if (!isSearchable) {
+      return strings.indexOf(string);
+    }
+    int index = Collections.binarySearch(strings, string);
+    while (index > 0 && strings.get(index - 1).equals(string)) {
+      --index;
+    }
+    return Math.max(index, -1);
+  }
+
+  /**
+   * Sorts the strings of this pool and sets its sorted flag, merging duplicate strings. Like the
+   * framework, strings are ordered by their UTF-16 characters whatever the encoding of the pool.
+   *
+   * @return The new index of each string, indexed by its old index.
+   * @throws IllegalStateException If this pool has styles, which are tied to string indices.
+   */
+  int[] sortStrings() {
+    Preconditions.checkState(styles.isEmpty(), "Pools with styles can't be sorted.");
+    List<String> sorted = new ArrayList<>(new TreeSet<>(strings));
+    int[] indices = new int[strings.size()];
+    for (int i = 0; i < indices.length; ++i) {
+      indices[i] = Collections.binarySearch(sorted, strings.get(i));
+    }
+    strings.clear();
+    strings.addAll(sorted);
+    flags |= SORTED_FLAG;
+    isSearchable = true;
+    return indices;
+  }
+
+  /** Returns true if this pool is sorted and {@link #indexOf} uses binary search. */
+  boolean isSearchable() {
+    return isSearchable;
   }
 
   /**
@@ -209,8 +266,53 @@ public final class StringPoolChunk extends Chunk {
     return result;
   }
 
-  private int writeStrings(DataOutput payload, ByteBuffer offsets, boolean shrink)
-      throws IOException {
+  /**
+   * Returns the type that strings are written as. When shrinking, a UTF-16 pool is transcoded to
+   * UTF-8 if that is smaller and every string can be encoded in UTF-8. Style spans index UTF-16
+   * characters in either encoding, so they're written unchanged.
+   */
+  private BinaryResourceString.Type getWrittenStringType(boolean shrink) {
+    if (!shrink || isUTF8()) {
+      return getStringType();
+    }
+    long utf8Size = 0;
+    long utf16Size = 0;
+    for (String string : strings) {
+      int utf8Length = getUtf8Length(string);
+      if (utf8Length < 0 || utf8Length > MAX_UTF8_LENGTH || string.length() > MAX_UTF8_LENGTH) {
+        return BinaryResourceString.Type.UTF16;
+      }
+      // Each string has its lengths before it and a null terminator after it.
+      utf8Size += (string.length() > 0x7F ? 2 : 1) + (utf8Length > 0x7F ? 2 : 1) + utf8Length + 1;
+      utf16Size += 2 + string.length() * 2L + 2;
+    }
+    return utf8Size < utf16Size ? BinaryResourceString.Type.UTF8 : BinaryResourceString.Type.UTF16;
+  }
+
+  /** Returns the number of bytes in the UTF-8 encoding of {@code string}, or -1 if it's invalid. */
+  private static int getUtf8Length(String string) {
+    int length = 0;
+    for (int i = 0; i < string.length(); ++i) {
+      char c = string.charAt(i);
+      if (c < 0x80) {
+        length += 1;
+      } else if (c < 0x800) {
+        length += 2;
+      } else if (!Character.isSurrogate(c)) {
+        length += 3;
+      } else if (Character.isHighSurrogate(c) && i + 1 < string.length()
+          && Character.isLowSurrogate(string.charAt(i + 1))) {
+        length += 4;
+        ++i;
+      } else {
+        return -1;  // An unpaired surrogate can't be encoded, and would be lost.
+      }
+    }
+    return length;
+  }
+
+  private int writeStrings(DataOutput payload, ByteBuffer offsets, boolean shrink,
+      BinaryResourceString.Type stringType) throws IOException {
     int stringOffset = 0;
     Map<String, Integer> used = new HashMap<>();  // Keeps track of strings already written
     for (String string : strings) {
@@ -219,7 +321,7 @@ public final class StringPoolChunk extends Chunk {
         Integer offset = used.get(string);
         offsets.putInt(offset == null ? 0 : offset);
       } else {
-        byte[] encodedString = BinaryResourceString.encodeString(string, getStringType());
+        byte[] encodedString = BinaryResourceString.encodeString(string, stringType);
         payload.write(encodedString);
         used.put(string, stringOffset);
         offsets.putInt(stringOffset);
@@ -279,9 +381,14 @@ public final class StringPoolChunk extends Chunk {
     ByteBuffer offsets = ByteBuffer.allocate(getOffsetSize());
     offsets.order(ByteOrder.LITTLE_ENDIAN);
 
+    BinaryResourceString.Type stringType = getWrittenStringType(shrink);
+    if (stringType != getStringType()) {
+      header.putInt(FLAGS_OFFSET, flags | UTF8_FLAG);
+    }
+
     // Write to a temporary payload so we can rearrange this and put the offsets first
     try (LittleEndianDataOutputStream payload = new LittleEndianDataOutputStream(baos)) {
-      stringOffset = writeStrings(payload, offsets, shrink);
+      stringOffset = writeStrings(payload, offsets, shrink, stringType);
       writeStyles(payload, offsets, shrink);
     }
 
@@ -317,6 +424,11 @@ public final class StringPoolChunk extends Chunk {
       this.spans = spans;
     }
 
+    /** Returns the number of spans in this style. */
+    int getSpanCount() {
+      return spans.size();
+    }
+
     @Override
     public byte[] toByteArray() throws IOException {
       return toByteArray(false);
@@ -47,12 +47,25 @@ public final class TypeChunk extends Chunk {
   /** The offset (from {@code offset}) in the original buffer where {@code entries} start. */
   private final int entriesStart;
 
+  /**
+   * The offset (from {@code offset}) in the original buffer where the entry offsets start. This is
+   * directly after the configuration, which tampered chunks do not always reflect in their header
+   * size.
+   */
+  private final int entryOffsetsStart;
+
   /** The resource configuration that these resource entries correspond to. */
   private BinaryResourceConfiguration configuration;
 
   /** A sparse list of resource entries defined by this chunk. */
   private final Map<Integer, Entry> entries = new TreeMap<>();
 
+  /**
+   * False while {@code entries} has not yet been decoded from the original buffer. Once true, the
+   * decoded {@code entries} are visible to every thread that reads it.
+   */
+  private volatile boolean entriesDecoded = true;
+
   protected TypeChunk(ByteBuffer buffer, @Nullable Chunk parent) {
     super(buffer, parent);
     id = UnsignedBytes.toInt(buffer.get());
@@ -60,19 +73,65 @@ public final class TypeChunk extends Chunk {
     entryCount = buffer.getInt();
     entriesStart = buffer.getInt();
     configuration = BinaryResourceConfiguration.create(buffer);
+    entryOffsetsStart = buffer.position() - offset;
   }
 
   @Override
   protected void init(ByteBuffer buffer) {
-    int offset = this.offset + entriesStart;
+    if (getParseOptions().isLazyEntries() && hasEntryOffsets(buffer)) {
+      entriesDecoded = false;
+      return;
+    }
+    readEntries(buffer);
+  }
+
+  /** Returns true if the entry offsets lie entirely within {@code buffer}. */
+  private boolean hasEntryOffsets(ByteBuffer buffer) {
+    long end = (long) offset + entryOffsetsStart + 4L * entryCount;
+    return entryCount >= 0 && end <= buffer.limit();
+  }
+
+  /** Decodes every entry from {@code buffer} using absolute reads. */
+  private void readEntries(ByteBuffer buffer) {
+    int offsets = offset + entryOffsetsStart;
+    int base = offset + entriesStart;
     for (int i = 0; i < entryCount; ++i) {
-      Entry entry = Entry.create(buffer, offset, this);
+      Entry entry = Entry.read(buffer, offsets + i * 4, base, this);
       if (entry != null) {
         entries.put(i, entry);
       }
     }
   }
 
+  /**
+   * Decodes the entries of a lazily parsed chunk, if they haven't been already. Readers on other
+   * threads wait for the entries to be decoded rather than decoding them again.
+   */
+  private synchronized void decodeEntries() {
+    if (!entriesDecoded) {
+      readEntries(getSource());
+      entriesDecoded = true;
+    }
+  }
+
+  /** Returns the entries decoded so far, without decoding the rest of a lazily parsed chunk. */
+  Map<Integer, Entry> getDecodedEntries() {
+    if (!entriesDecoded) {
+      return Collections.emptyMap();
+    }
+    return Collections.unmodifiableMap(entries);
+  }
+
+  /** Returns the offset (from the start of this chunk) of the entry offsets in the original buffer. */
+  int getEntryOffsetsStart() {
+    return entryOffsetsStart;
+  }
+
+  /** Returns the offset (from the start of this chunk) of the entries in the original buffer. */
+  int getEntriesStart() {
+    return entriesStart;
+  }
+
   /** Returns the (1-based) type id of the resource types that this {@link TypeChunk} is holding. */
   public int getId() {
     return id;
@@ -106,11 +165,36 @@ public final class TypeChunk extends Chunk {
     return entryCount;
   }
 
-  /** Returns a sparse list of 0-based indices to resource entries defined by this chunk. */
+  /**
+   * Returns a sparse list of 0-based indices to resource entries defined by this chunk. If this
+   * chunk was parsed with {@link ParseOptions#isLazyEntries()}, every entry is decoded first, once,
+   * even when several threads read the chunk at the same time.
+   */
   public Map<Integer, Entry> getEntries() {
+    decodeEntries();
     return Collections.unmodifiableMap(entries);
   }
 
+  /**
+   * Returns the entry at {@code index}. If this chunk was parsed with
+   * {@link ParseOptions#isLazyEntries()} and its entries have not all been decoded, only the
+   * requested entry is decoded, using the entry offsets in the original buffer. Entries decoded
+   * this way are not retained, so repeated calls return equal but distinct instances.
+   *
+   * @param index The 0-based index of the entry.
+   * @return The entry, or null if there is no entry at {@code index}.
+   */
+  @Nullable
+  public Entry getEntry(int index) {
+    if (entriesDecoded) {
+      return entries.get(index);
+    } else if (index < 0 || index >= entryCount) {
+      return null;
+    }
+    return Entry.read(getSource(), offset + entryOffsetsStart + index * 4, offset + entriesStart,
+        this);
+  }
+
   /** Returns true if this chunk contains an entry for {@code resourceId}. */
   public boolean containsResource(BinaryResourceIdentifier resourceId) {
     PackageChunk packageChunk = Preconditions.checkNotNull(getPackageChunk());
@@ -118,7 +202,7 @@ public final class TypeChunk extends Chunk {
     int typeId = getId();
     return resourceId.packageId() == packageId
         && resourceId.typeId() == typeId
-        && entries.containsKey(resourceId.entryId());
+        && getEntry(resourceId.entryId()) != null;
   }
 
   /**
@@ -146,6 +230,7 @@ public final class TypeChunk extends Chunk {
    */
   public void overrideEntry(int index, @Nullable Entry entry) {
     if (index >= 0 && index < entryCount) {
+      decodeEntries();
       if (entry != null) {
         entries.put(index, entry);
       } else {
@@ -154,6 +239,23 @@ public final class TypeChunk extends Chunk {
     }
   }
 
+  /**
+   * Renumbers the keys of this chunk's entries, such as after the key pool has been sorted.
+   *
+   * @param keyIndices The new index of each key, indexed by its old index.
+   */
+  void remapKeys(int[] keyIndices) {
+    decodeEntries();
+    for (Map.Entry<Integer, Entry> mapping : entries.entrySet()) {
+      Entry entry = mapping.getValue();
+      int keyIndex = entry.keyIndex();
+      if (keyIndex >= 0 && keyIndex < keyIndices.length) {
+        mapping.setValue(new Entry(entry.headerSize(), entry.flags(), keyIndices[keyIndex],
+            entry.value(), entry.values(), entry.parentEntry(), this));
+      }
+    }
+  }
+
   protected String getString(int index) {
     ResourceTableChunk resourceTable = getResourceTableChunk();
     Preconditions.checkNotNull(resourceTable, "%s has no resource table.", getClass());
@@ -199,14 +301,25 @@ public final class TypeChunk extends Chunk {
 
   private int writeEntries(DataOutput payload, ByteBuffer offsets, boolean shrink)
       throws IOException {
+    decodeEntries();
     int entryOffset = 0;
+    // When shrinking, identical entries share one payload. Keys are the encoded entries.
+    Map<ByteBuffer, Integer> used = new HashMap<>();
     for (int i = 0; i < entryCount; ++i) {
       Entry entry = entries.get(i);
       if (entry == null) {
         offsets.putInt(Entry.NO_ENTRY);
+        continue;
+      }
+      byte[] encodedEntry = entry.toByteArray(shrink);
+      Integer usedOffset = shrink ? used.get(ByteBuffer.wrap(encodedEntry)) : null;
+      if (usedOffset != null) {
+        offsets.putInt(usedOffset);
       } else {
-        byte[] encodedEntry = entry.toByteArray(shrink);
         payload.write(encodedEntry);
+        if (shrink) {
+          used.put(ByteBuffer.wrap(encodedEntry), entryOffset);
+        }
         offsets.putInt(entryOffset);
         entryOffset += encodedEntry.length;
       }
@@ -243,10 +356,10 @@ public final class TypeChunk extends Chunk {
     public static final int NO_ENTRY = 0xFFFFFFFF;
 
     /** Set if this is a complex resource. Otherwise, it's a simple resource. */
-    private static final int FLAG_COMPLEX = 0x0001;
+    static final int FLAG_COMPLEX = 0x0001;
 
     /** Size of a single resource id + value mapping entry. */
-    private static final int MAPPING_SIZE = 4 + BinaryResourceValue.SIZE;
+    static final int MAPPING_SIZE = 4 + BinaryResourceValue.SIZE;
 
     private final int headerSize;
     private final int flags;
@@ -332,42 +445,65 @@ public final class TypeChunk extends Chunk {
      */
     @Nullable
     public static Entry create(ByteBuffer buffer, int baseOffset, TypeChunk parent) {
-      int offset = buffer.getInt();
-      if (offset == NO_ENTRY || offset > buffer.limit()) {
+      Entry entry = read(buffer, buffer.position(), baseOffset, parent);
+      buffer.position(buffer.position() + 4);
+      return entry;
+    }
+
+    /**
+     * Like {@link #create(ByteBuffer, int, TypeChunk)}, but reads the entry's offset from
+     * {@code offsetIndex} and uses only absolute reads, so {@code buffer} is left unchanged.
+     */
+    @Nullable
+    static Entry read(ByteBuffer buffer, int offsetIndex, int baseOffset, TypeChunk parent) {
+      int offset = buffer.getInt(offsetIndex);
+      if (offset == NO_ENTRY) {
         return null;
       }
 
-      int position = buffer.position();
-      try {
-        buffer.position(baseOffset + offset);  // Set buffer position to resource entry start
-        Entry result = newInstance(buffer, parent);
-        return result;
-      } catch (Throwable t) {
-        // Will occur when the target position is outside the buffer capacity.
-        // Some obfuscated inputs seem to have nonsensical values, so we'll skip these.
+      // Some obfuscated inputs seem to have nonsensical values, so we'll skip these.
+      int start = baseOffset + offset;
+      if (offset < 0 || start < 0 || !fits(buffer, start)) {
+        if (parent != null) {
+          parent.report(ParseIssue.INVALID_ENTRY);
+        }
         return null;
-      } finally {
-        // Restore buffer position
-        buffer.position(position);
       }
+      return newInstance(buffer, start, parent);
+    }
+
+    /** Returns true if the entry starting at {@code start} lies within {@code buffer}. */
+    private static boolean fits(ByteBuffer buffer, int start) {
+      int remaining = buffer.limit() - start;
+      if (remaining < 8) {
+        return false;
+      } else if ((buffer.getShort(start + 2) & FLAG_COMPLEX) == 0) {
+        return remaining >= 8 + BinaryResourceValue.SIZE;
+      } else if (remaining < 16) {
+        return false;
+      }
+      int valueCount = buffer.getInt(start + 12);
+      return valueCount <= (remaining - 16) / MAPPING_SIZE;
     }
 
     @Nonnull
-    private static Entry newInstance(ByteBuffer buffer, TypeChunk parent) {
-      int headerSize = buffer.getShort() & 0xFFFF;
-      int flags = buffer.getShort() & 0xFFFF;
-      int keyIndex = buffer.getInt();
+    private static Entry newInstance(ByteBuffer buffer, int start, TypeChunk parent) {
+      int headerSize = buffer.getShort(start) & 0xFFFF;
+      int flags = buffer.getShort(start + 2) & 0xFFFF;
+      int keyIndex = buffer.getInt(start + 4);
       BinaryResourceValue value = null;
       Map<Integer, BinaryResourceValue> values = new LinkedHashMap<>();
       int parentEntry = 0;
       if ((flags & FLAG_COMPLEX) != 0) {
-        parentEntry = buffer.getInt();
-        int valueCount = buffer.getInt();
+        parentEntry = buffer.getInt(start + 8);
+        int valueCount = buffer.getInt(start + 12);
+        int cursor = start + 16;
         for (int i = 0; i < valueCount; ++i) {
-          values.put(buffer.getInt(), BinaryResourceValue.create(buffer));
+          values.put(buffer.getInt(cursor), BinaryResourceValue.create(buffer, cursor + 4));
+          cursor += MAPPING_SIZE;
         }
       } else {
-        value = BinaryResourceValue.create(buffer);
+        value = BinaryResourceValue.create(buffer, start + 8);
       }
       return new Entry(headerSize, flags, keyIndex, value, values, parentEntry, parent);
     }
@@ -44,19 +44,28 @@ public final class UnknownChunk extends Chunk {
     int headerSize = this.headerSize - Chunk.METADATA_SIZE;
 
     type = Type.fromCode(buffer.getShort(offset));
-    header = new byte[headerSize];
-    payload = new byte[payloadSize];
 
-    // Sanity check the size of the header/payload
-    if (buffer.remaining() >= headerSize)
+    // Sanity check the size of the header/payload before allocating, since they can be bogus
+    if (headerSize >= 0 && buffer.remaining() >= headerSize) {
+      header = new byte[headerSize];
       buffer.get(header);
-    else
+    } else {
+      header = new byte[0];
       isBogus = true;
+    }
 
-    if (buffer.remaining() >= payloadSize)
+    if (payloadSize >= 0 && buffer.remaining() >= payloadSize) {
+      payload = new byte[payloadSize];
       buffer.get(payload);
-    else
+    } else {
+      payload = new byte[0];
       isBogus = true;
+    }
+  }
+
+  /** Returns the number of header and payload bytes copied out of the buffer. */
+  int getCopiedSize() {
+    return header.length + payload.length;
   }
 
   public void setPatchedSize(int patchedSize) {
@@ -73,7 +82,7 @@ public final class UnknownChunk extends Chunk {
   @Override
   protected void init(ByteBuffer buffer) {
     if (isBogus)
-      throw new BogusUnknownChunkException(this, buffer);
+      fail(ParseIssue.BOGUS_UNKNOWN_CHUNK);
   }
 
   @Override
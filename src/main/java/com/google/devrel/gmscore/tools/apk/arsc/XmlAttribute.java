@@ -22,7 +22,7 @@ import java.util.Objects;
 
 /** Represents an XML attribute and value. */
 public class XmlAttribute implements SerializableResource {
-  private static final int LOCAL_SIZE = 4 * 3;
+  static final int LOCAL_SIZE = 4 * 3;
 
   /** The serialized size in bytes of an {@link XmlAttribute}. */
   public static final int SIZE = LOCAL_SIZE + BinaryResourceValue.SIZE;
@@ -40,10 +40,24 @@ public class XmlAttribute implements SerializableResource {
    * @param parent The parent chunk that contains this attribute; used for string lookups.
    */
   public static XmlAttribute create(ByteBuffer buffer, XmlNodeChunk parent) {
-    int namespace = buffer.getInt();
-    int name = buffer.getInt();
-    int rawValue = buffer.getInt();
-    BinaryResourceValue typedValue = BinaryResourceValue.create(buffer);
+    XmlAttribute attribute = create(buffer, buffer.position(), parent);
+    buffer.position(buffer.position() + LOCAL_SIZE + BinaryResourceValue.SIZE);
+    return attribute;
+  }
+
+  /**
+   * Creates a new {@link XmlAttribute} based on the bytes at {@code offset}, using absolute reads
+   * so {@code buffer} is left unchanged.
+   *
+   * @param buffer A buffer containing a {@link XmlAttribute}.
+   * @param offset The offset of the attribute in {@code buffer}.
+   * @param parent The parent chunk that contains this attribute; used for string lookups.
+   */
+  public static XmlAttribute create(ByteBuffer buffer, int offset, XmlNodeChunk parent) {
+    int namespace = buffer.getInt(offset);
+    int name = buffer.getInt(offset + 4);
+    int rawValue = buffer.getInt(offset + 8);
+    BinaryResourceValue typedValue = BinaryResourceValue.create(buffer, offset + LOCAL_SIZE);
     return new XmlAttribute(namespace, name, rawValue, typedValue, parent);
   }
 
@@ -57,11 +71,11 @@ public class XmlAttribute implements SerializableResource {
     return LOCAL_SIZE + typedValue().size();
   }
 
-  private XmlAttribute(int namespaceIndex,
-                      int nameIndex,
-                      int rawValueIndex,
-                      BinaryResourceValue typedValue,
-                      XmlNodeChunk parent) {
+  XmlAttribute(int namespaceIndex,
+               int nameIndex,
+               int rawValueIndex,
+               BinaryResourceValue typedValue,
+               XmlNodeChunk parent) {
     this.namespaceIndex = namespaceIndex;
     this.nameIndex = nameIndex;
     this.rawValueIndex = rawValueIndex;
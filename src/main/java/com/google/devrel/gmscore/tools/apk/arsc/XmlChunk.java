@@ -46,4 +46,15 @@ public final class XmlChunk extends ChunkWithChunks {
     }
     throw new IllegalStateException("XmlChunk did not contain a string pool.");
   }
+
+  /** Returns the map of attribute name indices to resource ids, or null if there is none. */
+  @Nullable
+  public XmlResourceMapChunk getResourceMap() {
+    for (Chunk chunk : getChunkList()) {
+      if (chunk instanceof XmlResourceMapChunk) {
+        return (XmlResourceMapChunk) chunk;
+      }
+    }
+    return null;
+  }
 }
@@ -50,6 +50,16 @@ public abstract class XmlNodeChunk extends Chunk {
     return getString(comment);
   }
 
+  /** Returns the first {@link XmlChunk} ancestor of this node, or null if there is none. */
+  @Nullable
+  protected XmlChunk getXmlChunk() {
+    Chunk parent = getParent();
+    while (parent != null && !(parent instanceof XmlChunk)) {
+      parent = parent.getParent();
+    }
+    return (XmlChunk) parent;
+  }
+
   /**
    * An {@link XmlNodeChunk} does not know by itself what strings its indices reference. In order
    * to get the actual string, the first {@link XmlChunk} ancestor is found. The
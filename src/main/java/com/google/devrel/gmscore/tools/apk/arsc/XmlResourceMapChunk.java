@@ -21,8 +21,6 @@ import javax.annotation.Nullable;
 import java.io.DataOutput;
 import java.io.IOException;
 import java.nio.ByteBuffer;
-import java.util.ArrayList;
-import java.util.List;
 
 /**
  * Represents an XML resource map chunk.
@@ -37,9 +35,9 @@ public class XmlResourceMapChunk extends Chunk {
 
   /**
    * Contains a mapping of attributeID to resourceID. For example, the attributeID 2 refers to the
-   * resourceID returned by {@code resources.get(2)}.
+   * resourceID {@code resources[2]}.
    */
-  private final List<Integer> resources = new ArrayList<>();
+  private int[] resources = new int[0];
 
   protected XmlResourceMapChunk(ByteBuffer buffer, @Nullable Chunk parent) {
     super(buffer, parent);
@@ -48,33 +46,44 @@ public class XmlResourceMapChunk extends Chunk {
   @Override
   protected void init(ByteBuffer buffer) {
     super.init(buffer);
-    resources.addAll(enumerateResources(buffer));
+    resources = enumerateResources(buffer);
   }
 
-  private List<Integer> enumerateResources(ByteBuffer buffer) {
+  private int[] enumerateResources(ByteBuffer buffer) {
     int resourceCount = (getOriginalChunkSize() - getHeaderSize()) / RESOURCE_SIZE;
-    List<Integer> result = new ArrayList<>(resourceCount);
+    int[] result = new int[Math.max(0, resourceCount)];
     int offset = this.offset + getHeaderSize();
-    buffer.mark();
-    buffer.position(offset);
-
-    for (int i = 0; i < resourceCount; ++i) {
-      result.add(buffer.getInt());
+    for (int i = 0; i < result.length; ++i) {
+      result[i] = buffer.getInt(offset + i * RESOURCE_SIZE);
     }
-
-    buffer.reset();
     return result;
   }
 
   /** Returns the resource ID that this {@code attributeId} maps to or null. */
   @Nullable
   public BinaryResourceIdentifier getResourceId(int attributeId) {
-    if (attributeId >= 0 && resources.size() > attributeId) {
-      return BinaryResourceIdentifier.create(resources.get(attributeId));
+    if (attributeId >= 0 && resources.length > attributeId) {
+      return BinaryResourceIdentifier.create(resources[attributeId]);
     }
     return null;
   }
 
+  /**
+   * Returns the raw resource ID that this {@code attributeId} maps to, or 0 if it isn't mapped.
+   * Unlike {@link #getResourceId(int)}, this doesn't allocate.
+   */
+  public int getRawResourceId(int attributeId) {
+    if (attributeId >= 0 && resources.length > attributeId) {
+      return resources[attributeId];
+    }
+    return 0;
+  }
+
+  /** Returns the number of attribute ids which are mapped to resource IDs. */
+  public int getResourceCount() {
+    return resources.length;
+  }
+
   @Override
   protected Type getType() {
     return Type.XML_RESOURCE_MAP;
@@ -84,7 +93,7 @@ public class XmlResourceMapChunk extends Chunk {
   protected void writePayload(DataOutput output, ByteBuffer header, boolean shrink)
       throws IOException {
     super.writePayload(output, header, shrink);
-    for (Integer resource : resources) {
+    for (int resource : resources) {
       output.writeInt(resource);
     }
   }
@@ -22,8 +22,7 @@ import com.google.common.base.Preconditions;
 import java.io.DataOutput;
 import java.io.IOException;
 import java.nio.ByteBuffer;
-import java.util.ArrayList;
-import java.util.Collections;
+import java.util.AbstractList;
 import java.util.List;
 
 /** Represents the beginning of an XML node. */
@@ -50,8 +49,39 @@ public final class XmlStartElementChunk extends XmlNodeChunk {
   /** The (0-based) index of the style attribute, or -1 if not present. */
   private final int styleIndex;
 
-  /** The XML attributes associated with this element.  */
-  private final List<XmlAttribute> attributes = new ArrayList<>();
+  /** The number of ints describing each attribute in {@code attributes}. */
+  private static final int ATTRIBUTE_FIELDS = 5;
+
+  private static final int NAMESPACE_FIELD = 0;
+  private static final int NAME_FIELD = 1;
+  private static final int RAW_VALUE_FIELD = 2;
+  /** The declared size of the typed value in the upper 16 bits, and its type code in the lowest 8. */
+  private static final int VALUE_SIZE_AND_TYPE_FIELD = 3;
+  private static final int VALUE_DATA_FIELD = 4;
+
+  /**
+   * The XML attributes associated with this element, packed as {@link #ATTRIBUTE_FIELDS} ints per
+   * attribute.
+   */
+  private int[] attributes = new int[0];
+
+  private final List<XmlAttribute> attributeList = new AttributeList();
+
+  /** Returned by {@link #indexOfAttribute(int)} when there is no matching attribute. */
+  public static final int NO_ATTRIBUTE = -1;
+
+  /** The value of {@code sortedAttributeCount} before the attributes' order has been checked. */
+  private static final int UNCHECKED = -1;
+
+  /** The value of {@code sortedAttributeCount} if the attributes aren't sorted by resource id. */
+  private static final int UNSORTED = -2;
+
+  /**
+   * The number of leading attributes whose names map to resource ids in ascending order, when every
+   * later attribute has no resource id. This is how aapt orders attributes, and allows a binary
+   * search by resource id. Otherwise {@link #UNSORTED}, or {@link #UNCHECKED} until first needed.
+   */
+  private int sortedAttributeCount = UNCHECKED;
 
   protected XmlStartElementChunk(ByteBuffer buffer, @Nullable Chunk parent) {
     super(buffer, parent);
@@ -72,28 +102,26 @@ public final class XmlStartElementChunk extends XmlNodeChunk {
   @Override
   protected void init(ByteBuffer buffer) {
     super.init(buffer);
-    attributes.addAll(enumerateAttributes(buffer));
+    attributes = enumerateAttributes(buffer);
   }
 
-  private List<XmlAttribute> enumerateAttributes(ByteBuffer buffer) {
-    List<XmlAttribute> result = new ArrayList<>(attributeCount);
+  private int[] enumerateAttributes(ByteBuffer buffer) {
+    int[] result = new int[attributeCount * ATTRIBUTE_FIELDS];
     int offset = this.offset + getHeaderSize() + attributeStart;
-    int endOffset = offset + XmlAttribute.SIZE * attributeCount;
-    buffer.mark();
-    buffer.position(offset);
 
     // The original logic was 'offset < endOffset' however we have changed the += on offset to be a variable size
-    // and adjusted the buffer to match the offset. So instead we now do a count check.
-    while (result.size() < attributeCount) {
-      XmlAttribute attribute = XmlAttribute.create(buffer, this);
-      result.add(attribute);
-      offset += attribute.size();
-
-      // The buffer should be positioned to be just after the current offset plus the attribute's reported size.
-      buffer.position(offset);
+    // to match the attribute's reported size. So instead we now do a count check.
+    for (int i = 0; i < result.length; i += ATTRIBUTE_FIELDS) {
+      int valueOffset = offset + XmlAttribute.LOCAL_SIZE;
+      int valueSize = buffer.getShort(valueOffset) & 0xFFFF;
+      BinaryResourceValue.Type valueType = BinaryResourceValue.Type.fromCode(buffer.get(valueOffset + 3));
+      result[i + NAMESPACE_FIELD] = buffer.getInt(offset);
+      result[i + NAME_FIELD] = buffer.getInt(offset + 4);
+      result[i + RAW_VALUE_FIELD] = buffer.getInt(offset + 8);
+      result[i + VALUE_SIZE_AND_TYPE_FIELD] = valueSize << 16 | (valueType.code() & 0xFF);
+      result[i + VALUE_DATA_FIELD] = buffer.getInt(valueOffset + 4);
+      offset = valueOffset + valueSize;
     }
-
-    buffer.reset();
     return result;
   }
 
@@ -107,9 +135,143 @@ public final class XmlStartElementChunk extends XmlNodeChunk {
     return getString(name);
   }
 
-  /** Returns an unmodifiable list of this XML element's attributes. */
+  /**
+   * Returns an unmodifiable list of this XML element's attributes. The list is a view over this
+   * element's packed attributes, so each {@link XmlAttribute} is created when it's retrieved.
+   */
   public List<XmlAttribute> getAttributes() {
-    return Collections.unmodifiableList(attributes);
+    return attributeList;
+  }
+
+  /** Returns the number of attributes of this XML element. */
+  public int getAttributeCount() {
+    return attributes.length / ATTRIBUTE_FIELDS;
+  }
+
+  /**
+   * Returns the attribute at {@code index}. Unlike the other attribute accessors, this allocates.
+   *
+   * @param index The (0-based) index of the attribute.
+   */
+  public XmlAttribute getAttribute(int index) {
+    BinaryResourceValue value = BinaryResourceValue.create(
+        getAttributeField(index, VALUE_SIZE_AND_TYPE_FIELD) >>> 16,
+        getAttributeValueType(index),
+        getAttributeValueData(index));
+    return new XmlAttribute(getAttributeNamespaceIndex(index), getAttributeNameIndex(index),
+        getAttributeRawValueIndex(index), value, this);
+  }
+
+  /** Returns a string reference to the namespace URI of attribute {@code index}, or -1. */
+  public int getAttributeNamespaceIndex(int index) {
+    return getAttributeField(index, NAMESPACE_FIELD);
+  }
+
+  /** Returns a string reference to the name of attribute {@code index}. */
+  public int getAttributeNameIndex(int index) {
+    return getAttributeField(index, NAME_FIELD);
+  }
+
+  /** Returns a string reference to the raw character value of attribute {@code index}, or -1. */
+  public int getAttributeRawValueIndex(int index) {
+    return getAttributeField(index, RAW_VALUE_FIELD);
+  }
+
+  /** Returns the type of the typed value of attribute {@code index}. */
+  public BinaryResourceValue.Type getAttributeValueType(int index) {
+    return BinaryResourceValue.Type.fromCode((byte) getAttributeField(index, VALUE_SIZE_AND_TYPE_FIELD));
+  }
+
+  /** Returns the data of the typed value of attribute {@code index}. */
+  public int getAttributeValueData(int index) {
+    return getAttributeField(index, VALUE_DATA_FIELD);
+  }
+
+  /** Returns the name of attribute {@code index}, or the empty string if not present. */
+  public String getAttributeName(int index) {
+    return getString(getAttributeNameIndex(index));
+  }
+
+  /**
+   * Returns the index of the attribute whose name maps to {@code resourceId} through the document's
+   * {@link XmlResourceMapChunk}, such as {@code 0x01010003} for {@code android:name}. Attribute
+   * names are not resolved to strings. When the attributes are sorted by resource id, as written by
+   * aapt, this is a binary search. Otherwise every attribute is checked.
+   *
+   * @param resourceId The resource id of the attribute.
+   * @return The (0-based) index of the attribute, or {@link #NO_ATTRIBUTE}.
+   */
+  public int indexOfAttribute(int resourceId) {
+    XmlChunk xmlChunk = getXmlChunk();
+    XmlResourceMapChunk resourceMap = xmlChunk == null ? null : xmlChunk.getResourceMap();
+    if (resourceMap == null || resourceId == 0) {
+      return NO_ATTRIBUTE;
+    }
+    int sortedCount = sortedAttributeCount;
+    if (sortedCount == UNCHECKED) {
+      sortedCount = countSortedAttributes(resourceMap);
+      sortedAttributeCount = sortedCount;
+    }
+    if (sortedCount != UNSORTED) {
+      int low = 0;
+      int high = sortedCount - 1;
+      while (low <= high) {
+        int mid = (low + high) >>> 1;
+        int compare = Integer.compareUnsigned(getAttributeResourceId(resourceMap, mid), resourceId);
+        if (compare < 0) {
+          low = mid + 1;
+        } else if (compare > 0) {
+          high = mid - 1;
+        } else {
+          return mid;
+        }
+      }
+      return NO_ATTRIBUTE;
+    }
+    for (int i = 0; i < getAttributeCount(); ++i) {
+      if (getAttributeResourceId(resourceMap, i) == resourceId) {
+        return i;
+      }
+    }
+    return NO_ATTRIBUTE;
+  }
+
+  /**
+   * Returns the attribute whose name maps to {@code resourceId}, or null if there is none.
+   *
+   * @see #indexOfAttribute(int)
+   */
+  @Nullable
+  public XmlAttribute getAttributeById(int resourceId) {
+    int index = indexOfAttribute(resourceId);
+    return index == NO_ATTRIBUTE ? null : getAttribute(index);
+  }
+
+  private int getAttributeResourceId(XmlResourceMapChunk resourceMap, int index) {
+    return resourceMap.getRawResourceId(attributes[index * ATTRIBUTE_FIELDS + NAME_FIELD]);
+  }
+
+  private int countSortedAttributes(XmlResourceMapChunk resourceMap) {
+    int count = getAttributeCount();
+    int sorted = 0;
+    while (sorted < count && getAttributeResourceId(resourceMap, sorted) != 0) {
+      if (sorted > 0 && Integer.compareUnsigned(getAttributeResourceId(resourceMap, sorted - 1),
+          getAttributeResourceId(resourceMap, sorted)) >= 0) {
+        return UNSORTED;
+      }
+      sorted++;
+    }
+    for (int i = sorted; i < count; ++i) {
+      if (getAttributeResourceId(resourceMap, i) != 0) {
+        return UNSORTED;
+      }
+    }
+    return sorted;
+  }
+
+  private int getAttributeField(int index, int field) {
+    Preconditions.checkElementIndex(index, getAttributeCount());
+    return attributes[index * ATTRIBUTE_FIELDS + field];
   }
 
   @Override
@@ -125,12 +287,19 @@ public final class XmlStartElementChunk extends XmlNodeChunk {
     output.writeInt(name);
     output.writeShort((short) XmlAttribute.SIZE);  // attribute start
     output.writeShort((short) XmlAttribute.SIZE);
-    output.writeShort((short) attributes.size());
+    output.writeShort((short) getAttributeCount());
     output.writeShort((short) (idIndex + 1));
     output.writeShort((short) (classIndex + 1));
     output.writeShort((short) (styleIndex + 1));
-    for (XmlAttribute attribute : attributes) {
-      output.write(attribute.toByteArray(shrink));
+    for (int i = 0; i < attributes.length; i += ATTRIBUTE_FIELDS) {
+      int valueSizeAndType = attributes[i + VALUE_SIZE_AND_TYPE_FIELD];
+      output.writeInt(attributes[i + NAMESPACE_FIELD]);
+      output.writeInt(attributes[i + NAME_FIELD]);
+      output.writeInt(attributes[i + RAW_VALUE_FIELD]);
+      output.writeShort(valueSizeAndType >>> 16);
+      output.writeByte(0);  // Unused
+      output.writeByte(valueSizeAndType);
+      output.writeInt(attributes[i + VALUE_DATA_FIELD]);
     }
   }
 
@@ -146,6 +315,19 @@ public final class XmlStartElementChunk extends XmlNodeChunk {
   public String toString() {
     return String.format(
         "XmlStartElementChunk{line=%d, comment=%s, namespace=%s, name=%s, attributes=%s}",
-        getLineNumber(), getComment(), getNamespace(), getName(), attributes.toString());
+        getLineNumber(), getComment(), getNamespace(), getName(), attributeList.toString());
+  }
+
+  /** A view of the packed attributes as {@link XmlAttribute} objects. */
+  private final class AttributeList extends AbstractList<XmlAttribute> {
+    @Override
+    public XmlAttribute get(int index) {
+      return getAttribute(index);
+    }
+
+    @Override
+    public int size() {
+      return getAttributeCount();
+    }
   }
 }
@@ -0,0 +1,434 @@
+package software.coley.android.xml;
+
+import com.google.devrel.gmscore.tools.apk.arsc.BinaryResourceValue;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * The commonly queried contents of a binary {@code AndroidManifest.xml}: package name, version, SDK levels,
+ * requested permissions, and declared components with their exported flags and intent filters.
+ * <br>
+ * Summaries are read in a single pass with {@link XmlPullReader}, without decoding the document to text.
+ * Framework attributes are matched by their resource ids rather than their names, so manifests whose attribute
+ * names were stripped or renamed by obfuscators are still understood.
+ */
+public class ManifestSummary {
+	private static final int ATTR_NAME = 0x01010003;
+	private static final int ATTR_EXPORTED = 0x01010010;
+	private static final int ATTR_MIN_SDK_VERSION = 0x0101020c;
+	private static final int ATTR_VERSION_CODE = 0x0101021b;
+	private static final int ATTR_VERSION_NAME = 0x0101021c;
+	private static final int ATTR_TARGET_SDK_VERSION = 0x01010270;
+	private static final int UNSET = -1;
+	// Depths at which the platform reads elements, see XmlPullReader.getDepth()
+	private static final int MANIFEST_DEPTH = 1;
+	private static final int MANIFEST_CHILD_DEPTH = 2;
+	private static final int COMPONENT_DEPTH = 3;
+	private static final int INTENT_FILTER_DEPTH = 4;
+	private static final int INTENT_FILTER_CHILD_DEPTH = 5;
+
+	private final List<String> permissions = new ArrayList<>();
+	private final List<Component> components = new ArrayList<>();
+	private String packageName;
+	private int versionCode = UNSET;
+	private String versionName;
+	private int minSdkVersion = UNSET;
+	private int targetSdkVersion = UNSET;
+
+	private ManifestSummary() {
+	}
+
+	/**
+	 * @param bytes
+	 * 		Binary XML of an {@code AndroidManifest.xml}.
+	 *
+	 * @return Summary of the manifest.
+	 */
+	@Nonnull
+	public static ManifestSummary read(@Nonnull byte[] bytes) {
+		return read(new XmlPullReader(bytes));
+	}
+
+	/**
+	 * @param buffer
+	 * 		Buffer positioned at the start of the binary XML of an {@code AndroidManifest.xml}.
+	 * 		The buffer's position is not modified.
+	 *
+	 * @return Summary of the manifest.
+	 */
+	@Nonnull
+	public static ManifestSummary read(@Nonnull ByteBuffer buffer) {
+		return read(new XmlPullReader(buffer));
+	}
+
+	/**
+	 * @param reader
+	 * 		Reader positioned before the {@code manifest} element. The reader is consumed to the end of the document.
+	 *
+	 * @return Summary of the manifest.
+	 */
+	@Nonnull
+	public static ManifestSummary read(@Nonnull XmlPullReader reader) {
+		ManifestSummary summary = new ManifestSummary();
+		Component component = null;
+		IntentFilter filter = null;
+		boolean inManifest = false;
+		boolean inApplication = false;
+		int event;
+		while ((event = reader.next()) != XmlPullReader.END_DOCUMENT) {
+			int depth = reader.getDepth();
+			if (event == XmlPullReader.END_TAG) {
+				// Elements are only read at the depth the platform reads them, so they end at that same depth.
+				if (depth == MANIFEST_CHILD_DEPTH)
+					inApplication = false;
+				else if (depth == COMPONENT_DEPTH)
+					component = null;
+				else if (depth == INTENT_FILTER_DEPTH)
+					filter = null;
+				continue;
+			} else if (event != XmlPullReader.START_TAG) {
+				continue;
+			}
+
+			String name = reader.getName();
+			if (name == null)
+				continue;
+			if (depth == MANIFEST_DEPTH) {
+				if ("manifest".equals(name)) {
+					inManifest = true;
+					summary.readManifest(reader);
+				}
+			} else if (!inManifest) {
+				continue;
+			} else if (depth == MANIFEST_CHILD_DEPTH) {
+				// Direct children of the manifest
+				switch (name) {
+					case "application":
+						inApplication = true;
+						break;
+					case "uses-sdk":
+						summary.minSdkVersion = getInt(reader, ATTR_MIN_SDK_VERSION, summary.minSdkVersion);
+						summary.targetSdkVersion = getInt(reader, ATTR_TARGET_SDK_VERSION, summary.targetSdkVersion);
+						break;
+					case "uses-permission":
+					case "uses-permission-sdk-23": {
+						String permission = getString(reader, ATTR_NAME);
+						if (permission != null)
+							summary.permissions.add(permission);
+						break;
+					}
+					default:
+						break;
+				}
+			} else if (depth == COMPONENT_DEPTH) {
+				// Components are only declared by the application, not by elements such as <queries>
+				ComponentKind kind = ComponentKind.fromElementName(name);
+				if (inApplication && kind != null) {
+					component = new Component(kind, getString(reader, ATTR_NAME), getExported(reader));
+					summary.components.add(component);
+				}
+			} else if (depth == INTENT_FILTER_DEPTH) {
+				if (component != null && "intent-filter".equals(name)) {
+					filter = new IntentFilter();
+					component.intentFilters.add(filter);
+				}
+			} else if (depth == INTENT_FILTER_CHILD_DEPTH && filter != null) {
+				String value = getString(reader, ATTR_NAME);
+				if (value == null)
+					continue;
+				if ("action".equals(name))
+					filter.actions.add(value);
+				else if ("category".equals(name))
+					filter.categories.add(value);
+			}
+		}
+		return summary;
+	}
+
+	private void readManifest(@Nonnull XmlPullReader reader) {
+		versionCode = getInt(reader, ATTR_VERSION_CODE, versionCode);
+		String version = getString(reader, ATTR_VERSION_NAME);
+		if (version != null)
+			versionName = version;
+		// The package is a plain attribute without a resource id, so it can only be found by name.
+		for (int i = 0; i < reader.getAttributeCount(); i++) {
+			if ("package".equals(reader.getAttributeName(i))) {
+				packageName = reader.getAttributeValue(i);
+				break;
+			}
+		}
+	}
+
+	@Nullable
+	private static String getString(@Nonnull XmlPullReader reader, int resourceId) {
+		int index = reader.indexOfAttribute(resourceId);
+		return index < 0 ? null : reader.getAttributeValue(index);
+	}
+
+	private static int getInt(@Nonnull XmlPullReader reader, int resourceId, int defaultValue) {
+		int index = reader.indexOfAttribute(resourceId);
+		if (index < 0)
+			return defaultValue;
+		int value = reader.getAttributeIntValue(index, UNSET);
+		if (value == UNSET && reader.getAttributeValueType(index) == BinaryResourceValue.Type.STRING) {
+			// Some tools write numbers as strings, which the platform accepts.
+			try {
+				value = Integer.parseInt(reader.getAttributeValue(index));
+			} catch (NumberFormatException ignored) {
+				// Such as a preview SDK codename.
+			}
+		}
+		return value == UNSET ? defaultValue : value;
+	}
+
+	@Nullable
+	private static Boolean getExported(@Nonnull XmlPullReader reader) {
+		int index = reader.indexOfAttribute(ATTR_EXPORTED);
+		if (index < 0 || reader.getAttributeValueType(index) != BinaryResourceValue.Type.INT_BOOLEAN)
+			return null;
+		return reader.getAttributeBooleanValue(index, false);
+	}
+
+	/**
+	 * @return Package name, or {@code null} if not declared.
+	 */
+	@Nullable
+	public String getPackageName() {
+		return packageName;
+	}
+
+	/**
+	 * @return Version code, or {@code -1} if not declared.
+	 */
+	public int getVersionCode() {
+		return versionCode;
+	}
+
+	/**
+	 * @return Version name, or {@code null} if not declared.
+	 * Names given as resource references are formatted as {@code @<id>}.
+	 */
+	@Nullable
+	public String getVersionName() {
+		return versionName;
+	}
+
+	/**
+	 * @return Minimum SDK version, or {@code -1} if not declared.
+	 */
+	public int getMinSdkVersion() {
+		return minSdkVersion;
+	}
+
+	/**
+	 * @return Target SDK version, or {@code -1} if not declared.
+	 */
+	public int getTargetSdkVersion() {
+		return targetSdkVersion;
+	}
+
+	/**
+	 * @return Names of requested permissions, in declaration order.
+	 */
+	@Nonnull
+	public List<String> getPermissions() {
+		return Collections.unmodifiableList(permissions);
+	}
+
+	/**
+	 * @return Declared activities, activity aliases, services, receivers and providers, in declaration order.
+	 */
+	@Nonnull
+	public List<Component> getComponents() {
+		return Collections.unmodifiableList(components);
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) return true;
+		if (o == null || getClass() != o.getClass()) return false;
+		ManifestSummary other = (ManifestSummary) o;
+		return versionCode == other.versionCode
+				&& minSdkVersion == other.minSdkVersion
+				&& targetSdkVersion == other.targetSdkVersion
+				&& Objects.equals(packageName, other.packageName)
+				&& Objects.equals(versionName, other.versionName)
+				&& permissions.equals(other.permissions)
+				&& components.equals(other.components);
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(packageName, versionCode, versionName, minSdkVersion, targetSdkVersion,
+				permissions, components);
+	}
+
+	@Override
+	public String toString() {
+		return "ManifestSummary{" +
+				"package=" + packageName +
+				", versionCode=" + versionCode +
+				", versionName=" + versionName +
+				", minSdk=" + minSdkVersion +
+				", targetSdk=" + targetSdkVersion +
+				", permissions=" + permissions +
+				", components=" + components +
+				'}';
+	}
+
+	/**
+	 * Kinds of application components.
+	 */
+	public enum ComponentKind {
+		ACTIVITY("activity"),
+		ACTIVITY_ALIAS("activity-alias"),
+		SERVICE("service"),
+		RECEIVER("receiver"),
+		PROVIDER("provider");
+
+		private final String elementName;
+
+		ComponentKind(@Nonnull String elementName) {
+			this.elementName = elementName;
+		}
+
+		/**
+		 * @return Name of the manifest element declaring components of this kind.
+		 */
+		@Nonnull
+		public String getElementName() {
+			return elementName;
+		}
+
+		@Nullable
+		private static ComponentKind fromElementName(@Nonnull String elementName) {
+			for (ComponentKind kind : values())
+				if (kind.elementName.equals(elementName))
+					return kind;
+			return null;
+		}
+	}
+
+	/**
+	 * An application component declared in the manifest.
+	 */
+	public static class Component {
+		private final ComponentKind kind;
+		private final String name;
+		private final Boolean exported;
+		private final List<IntentFilter> intentFilters = new ArrayList<>();
+
+		private Component(@Nonnull ComponentKind kind, @Nullable String name, @Nullable Boolean exported) {
+			this.kind = kind;
+			this.name = name;
+			this.exported = exported;
+		}
+
+		/**
+		 * @return Kind of component.
+		 */
+		@Nonnull
+		public ComponentKind getKind() {
+			return kind;
+		}
+
+		/**
+		 * @return Class name of the component as written, which may be relative to the package.
+		 * {@code null} if not declared.
+		 */
+		@Nullable
+		public String getName() {
+			return name;
+		}
+
+		/**
+		 * @return Value of {@code android:exported}, or {@code null} if not declared, in which case the platform
+		 * default depends on the target SDK and whether the component has intent filters.
+		 */
+		@Nullable
+		public Boolean getExported() {
+			return exported;
+		}
+
+		/**
+		 * @return Intent filters of the component, in declaration order.
+		 */
+		@Nonnull
+		public List<IntentFilter> getIntentFilters() {
+			return Collections.unmodifiableList(intentFilters);
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) return true;
+			if (o == null || getClass() != o.getClass()) return false;
+			Component other = (Component) o;
+			return kind == other.kind
+					&& Objects.equals(name, other.name)
+					&& Objects.equals(exported, other.exported)
+					&& intentFilters.equals(other.intentFilters);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(kind, name, exported, intentFilters);
+		}
+
+		@Override
+		public String toString() {
+			return kind.elementName + "{name=" + name + ", exported=" + exported +
+					", intentFilters=" + intentFilters + '}';
+		}
+	}
+
+	/**
+	 * An intent filter of a component.
+	 */
+	public static class IntentFilter {
+		private final List<String> actions = new ArrayList<>();
+		private final List<String> categories = new ArrayList<>();
+
+		private IntentFilter() {
+		}
+
+		/**
+		 * @return Names of the filter's actions, in declaration order.
+		 */
+		@Nonnull
+		public List<String> getActions() {
+			return Collections.unmodifiableList(actions);
+		}
+
+		/**
+		 * @return Names of the filter's categories, in declaration order.
+		 */
+		@Nonnull
+		public List<String> getCategories() {
+			return Collections.unmodifiableList(categories);
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) return true;
+			if (o == null || getClass() != o.getClass()) return false;
+			IntentFilter other = (IntentFilter) o;
+			return actions.equals(other.actions) && categories.equals(other.categories);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(actions, categories);
+		}
+
+		@Override
+		public String toString() {
+			return "IntentFilter{actions=" + actions + ", categories=" + categories + '}';
+		}
+	}
+}
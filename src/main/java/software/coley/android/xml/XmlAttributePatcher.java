@@ -0,0 +1,245 @@
+package software.coley.android.xml;
+
+import com.google.devrel.gmscore.tools.apk.arsc.BinaryResourceString;
+import com.google.devrel.gmscore.tools.apk.arsc.BinaryResourceValue;
+import com.google.devrel.gmscore.tools.apk.arsc.StringPoolChunk;
+
+import javax.annotation.Nonnull;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Patches the values of existing attributes in a binary XML document without re-encoding it.
+ * <br>
+ * Attributes are located by the path of their element, see {@link XmlQuery}, and the resource id of their name,
+ * such as {@code 0x0101000f} for {@code android:debuggable}. Typed values are overwritten in place in the
+ * document's array. New strings are queued, and appended to the end of the document's string pool by
+ * {@link #toByteArray()}, which only shifts the bytes after the pool and adjusts the sizes of the pool and
+ * the enclosing XML chunk. Strings already in the pool are reused. Since appended strings are not in sorted
+ * order, a pool flagged as sorted loses the flag, so that lookups do not binary search it.
+ * <br>
+ * Attributes which an element does not have are not added.
+ */
+public class XmlAttributePatcher {
+	private static final int BOOLEAN_TRUE = 0xFFFFFFFF;
+	private static final int NO_STRING = -1;
+	// Offsets of attribute fields from the start of the attribute.
+	private static final int RAW_VALUE_OFFSET = 8;
+	private static final int VALUE_TYPE_OFFSET = 15;
+	private static final int VALUE_DATA_OFFSET = 16;
+	// Offsets of string pool header fields from the start of the pool.
+	private static final int CHUNK_SIZE_OFFSET = 4;
+	private static final int STRING_COUNT_OFFSET = 8;
+	private static final int STYLE_COUNT_OFFSET = 12;
+	private static final int FLAGS_OFFSET = 16;
+	private static final int STRINGS_START_OFFSET = 20;
+	private static final int STYLES_START_OFFSET = 24;
+	private static final int SORTED_FLAG = 1;
+
+	private final List<String> pendingStrings = new ArrayList<>();
+	private byte[] bytes;
+	private ByteBuffer buffer;
+	private StringPoolChunk stringPool;
+	private int stringPoolOffset = -1;
+
+	/**
+	 * @param bytes
+	 * 		Binary XML document. Typed values are patched directly into this array.
+	 */
+	public XmlAttributePatcher(@Nonnull byte[] bytes) {
+		setBytes(bytes);
+	}
+
+	private void setBytes(@Nonnull byte[] bytes) {
+		this.bytes = bytes;
+		buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+		stringPool = null;
+		stringPoolOffset = -1;
+	}
+
+	/**
+	 * @param elementPath
+	 * 		Path of the elements to patch, such as {@code /manifest/application}.
+	 * @param attributeId
+	 * 		Resource id of the attribute name, such as {@code 0x0101000f} for {@code android:debuggable}.
+	 * @param value
+	 * 		New value.
+	 *
+	 * @return Number of attributes patched.
+	 */
+	public int setBoolean(@Nonnull String elementPath, int attributeId, boolean value) {
+		return setValue(elementPath, attributeId, BinaryResourceValue.Type.INT_BOOLEAN, value ? BOOLEAN_TRUE : 0);
+	}
+
+	/**
+	 * @param elementPath
+	 * 		Path of the elements to patch, such as {@code /manifest}.
+	 * @param attributeId
+	 * 		Resource id of the attribute name, such as {@code 0x0101021b} for {@code android:versionCode}.
+	 * @param value
+	 * 		New value.
+	 *
+	 * @return Number of attributes patched.
+	 */
+	public int setInt(@Nonnull String elementPath, int attributeId, int value) {
+		return setValue(elementPath, attributeId, BinaryResourceValue.Type.INT_DEC, value);
+	}
+
+	/**
+	 * @param elementPath
+	 * 		Path of the elements to patch.
+	 * @param attributeId
+	 * 		Resource id of the attribute name.
+	 * @param type
+	 * 		New type of the typed value. Must not be {@link BinaryResourceValue.Type#STRING},
+	 * 		see {@link #setString(String, int, String)}.
+	 * @param data
+	 * 		New data of the typed value.
+	 *
+	 * @return Number of attributes patched.
+	 */
+	public int setValue(@Nonnull String elementPath, int attributeId, @Nonnull BinaryResourceValue.Type type, int data) {
+		if (type == BinaryResourceValue.Type.STRING || type == BinaryResourceValue.Type.UNKNOWN)
+			throw new IllegalArgumentException("Cannot patch a value of type " + type);
+		return patch(elementPath, attributeId, type, data, NO_STRING);
+	}
+
+	/**
+	 * @param elementPath
+	 * 		Path of the elements to patch, such as {@code /manifest}.
+	 * @param attributeId
+	 * 		Resource id of the attribute name, such as {@code 0x0101021c} for {@code android:versionName}.
+	 * @param value
+	 * 		New value. If it is not already in the string pool, it is added by {@link #toByteArray()}.
+	 *
+	 * @return Number of attributes patched.
+	 */
+	public int setString(@Nonnull String elementPath, int attributeId, @Nonnull String value) {
+		int index = findString(value);
+		if (index < 0) {
+			// Only queue the string once something refers to it.
+			int patched = patch(elementPath, attributeId, BinaryResourceValue.Type.STRING,
+					getStringCount() + pendingStrings.size(), getStringCount() + pendingStrings.size());
+			if (patched > 0)
+				pendingStrings.add(value);
+			return patched;
+		}
+		return patch(elementPath, attributeId, BinaryResourceValue.Type.STRING, index, index);
+	}
+
+	private int patch(@Nonnull String elementPath, int attributeId, @Nonnull BinaryResourceValue.Type type,
+					  int data, int rawValue) {
+		XmlQuery query = XmlQuery.compile(elementPath);
+		if (query.isAttributeQuery())
+			throw new IllegalArgumentException("Path must select elements: " + elementPath);
+		XmlPullReader reader = newReader();
+		int[] patched = new int[1];
+		query.evaluate(reader, (r, ignored) -> {
+			int index = r.indexOfAttribute(attributeId);
+			if (index >= 0) {
+				// The size of the typed value is left alone, since it determines where the next attribute starts.
+				int offset = r.getAttributeOffset(index);
+				buffer.putInt(offset + RAW_VALUE_OFFSET, rawValue);
+				buffer.put(offset + VALUE_TYPE_OFFSET, type.code());
+				buffer.putInt(offset + VALUE_DATA_OFFSET, data);
+				patched[0]++;
+			}
+			return true;
+		});
+		return patched[0];
+	}
+
+	@Nonnull
+	private XmlPullReader newReader() {
+		XmlPullReader reader = new XmlPullReader(buffer, stringPool);
+		if (stringPool == null) {
+			stringPool = reader.getStringPool();
+			stringPoolOffset = reader.getStringPoolOffset();
+		}
+		return reader;
+	}
+
+	private int findString(@Nonnull String value) {
+		if (stringPool == null)
+			newReader();
+		int index = stringPool == null ? -1 : stringPool.indexOf(value);
+		if (index >= 0 && index < getStringCount())
+			return index;
+		index = pendingStrings.indexOf(value);
+		return index < 0 ? -1 : getStringCount() + index;
+	}
+
+	/**
+	 * @return Number of strings in the pool, counted the same way as {@link StringPoolChunk}.
+	 */
+	private int getStringCount() {
+		if (stringPool == null)
+			throw new IllegalStateException("Document has no string pool");
+		if (buffer.getInt(stringPoolOffset + STYLE_COUNT_OFFSET) == 0) {
+			int headerSize = buffer.getShort(stringPoolOffset + 2) & 0xFFFF;
+			return (buffer.getInt(stringPoolOffset + STRINGS_START_OFFSET) - headerSize) / 4;
+		}
+		return buffer.getInt(stringPoolOffset + STRING_COUNT_OFFSET);
+	}
+
+	/**
+	 * Appends any queued strings to the string pool.
+	 *
+	 * @return The patched document. When no strings were queued, this is the array being patched in place,
+	 * which is the array given to the constructor until strings are first added.
+	 */
+	@Nonnull
+	public byte[] toByteArray() {
+		if (pendingStrings.isEmpty())
+			return bytes;
+
+		BinaryResourceString.Type stringType = stringPool.getStringType();
+		int headerSize = buffer.getShort(stringPoolOffset + 2) & 0xFFFF;
+		int poolSize = buffer.getInt(stringPoolOffset + CHUNK_SIZE_OFFSET);
+		int stringCount = getStringCount();
+		int styleCount = buffer.getInt(stringPoolOffset + STYLE_COUNT_OFFSET);
+		int stringsStart = buffer.getInt(stringPoolOffset + STRINGS_START_OFFSET);
+		int stylesStart = buffer.getInt(stringPoolOffset + STYLES_START_OFFSET);
+
+		// New offsets go after the existing string offsets. New string data goes after the existing string data,
+		// which ends where the styles begin, or at the end of the pool if there are none.
+		int offsetsEnd = stringPoolOffset + headerSize + stringCount * 4;
+		int dataEnd = stringPoolOffset + (styleCount > 0 ? stylesStart : poolSize);
+		ByteArrayOutputStream data = new ByteArrayOutputStream();
+		ByteBuffer offsets = ByteBuffer.allocate(pendingStrings.size() * 4).order(ByteOrder.LITTLE_ENDIAN);
+		int relativeEnd = dataEnd - (stringPoolOffset + stringsStart);
+		for (String string : pendingStrings) {
+			offsets.putInt(relativeEnd + data.size());
+			byte[] encoded = BinaryResourceString.encodeString(string, stringType);
+			data.write(encoded, 0, encoded.length);
+		}
+		while (data.size() % 4 != 0)
+			data.write(0);
+
+		int offsetsGrowth = offsets.capacity();
+		int growth = offsetsGrowth + data.size();
+		byte[] result = new byte[bytes.length + growth];
+		System.arraycopy(bytes, 0, result, 0, offsetsEnd);
+		System.arraycopy(offsets.array(), 0, result, offsetsEnd, offsetsGrowth);
+		System.arraycopy(bytes, offsetsEnd, result, offsetsEnd + offsetsGrowth, dataEnd - offsetsEnd);
+		System.arraycopy(data.toByteArray(), 0, result, dataEnd + offsetsGrowth, data.size());
+		System.arraycopy(bytes, dataEnd, result, dataEnd + growth, bytes.length - dataEnd);
+
+		ByteBuffer out = ByteBuffer.wrap(result).order(ByteOrder.LITTLE_ENDIAN);
+		out.putInt(stringPoolOffset + CHUNK_SIZE_OFFSET, poolSize + growth);
+		out.putInt(stringPoolOffset + STRING_COUNT_OFFSET, stringCount + pendingStrings.size());
+		out.putInt(stringPoolOffset + STRINGS_START_OFFSET, stringsStart + offsetsGrowth);
+		if (styleCount > 0)
+			out.putInt(stringPoolOffset + STYLES_START_OFFSET, stylesStart + growth);
+		int flags = buffer.getInt(stringPoolOffset + FLAGS_OFFSET);
+		out.putInt(stringPoolOffset + FLAGS_OFFSET, flags & ~SORTED_FLAG);
+		out.putInt(CHUNK_SIZE_OFFSET, out.getInt(CHUNK_SIZE_OFFSET) + growth);
+
+		pendingStrings.clear();
+		setBytes(result);
+		return result;
+	}
+}
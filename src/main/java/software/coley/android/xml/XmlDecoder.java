@@ -3,13 +3,22 @@ package software.coley.android.xml;
 import com.android.xml.XmlBuilder;
 import com.google.devrel.gmscore.tools.apk.arsc.*;
 
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
+
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.TreeMap;
 
 /**
  * A utility for decoding XML contents from a {@link BinaryResourceFile} utilizing resources
@@ -18,7 +27,8 @@ import java.util.stream.Collectors;
  * @author Matt Coley
  */
 public class XmlDecoder {
-	private final XmlBuilder builder = new XmlBuilder();
+	private final Output output;
+	private final AttributesImpl attributes = new AttributesImpl();
 	private final Map<String, String> namespaces = new HashMap<>();
 	private final SplitAndroidResourceProvider resourceProvider;
 	private boolean namespacesAdded;
@@ -34,7 +44,49 @@ public class XmlDecoder {
 	 */
 	public XmlDecoder(@Nonnull AndroidResourceProvider androidResources,
 					  @Nullable AndroidResourceProvider arscResources) {
+		this(androidResources, arscResources, new TextOutput());
+	}
+
+	/**
+	 * @param androidResources
+	 * 		Core android resource model to provide information for decoding.
+	 * @param arscResources
+	 * 		Optional ARSC file model to provide additional information for decoding.
+	 * 		Can be {@code null} to skip info, but output will be missing some details.
+	 * @param handler
+	 * 		SAX handler to send elements to, in place of building XML text.
+	 * 		Document events are left to the caller, who should call {@link #endDocument()} after visiting chunks.
+	 * 		Or see
+	 * 		{@link #decode(BinaryResourceFile, AndroidResourceProvider, AndroidResourceProvider, ContentHandler)}.
+	 */
+	public XmlDecoder(@Nonnull AndroidResourceProvider androidResources,
+					  @Nullable AndroidResourceProvider arscResources,
+					  @Nonnull ContentHandler handler) {
+		this(androidResources, arscResources, new SaxOutput(handler));
+	}
+
+	/**
+	 * @param androidResources
+	 * 		Core android resource model to provide information for decoding.
+	 * @param arscResources
+	 * 		Optional ARSC file model to provide additional information for decoding.
+	 * 		Can be {@code null} to skip info, but output will be missing some details.
+	 * @param writer
+	 * 		StAX writer to write elements to, in place of building XML text.
+	 * 		Document events are left to the caller, or see
+	 * 		{@link #decode(BinaryResourceFile, AndroidResourceProvider, AndroidResourceProvider, XMLStreamWriter)}.
+	 */
+	public XmlDecoder(@Nonnull AndroidResourceProvider androidResources,
+					  @Nullable AndroidResourceProvider arscResources,
+					  @Nonnull XMLStreamWriter writer) {
+		this(androidResources, arscResources, new StaxOutput(writer));
+	}
+
+	private XmlDecoder(@Nonnull AndroidResourceProvider androidResources,
+					   @Nullable AndroidResourceProvider arscResources,
+					   @Nonnull Output output) {
 		resourceProvider = new SplitAndroidResourceProvider(new DelegatingAndroidResourceProvider(arscResources), androidResources);
+		this.output = output;
 	}
 
 	/**
@@ -56,13 +108,91 @@ public class XmlDecoder {
 		binaryResource.getChunks().stream()
 				.filter(c -> c instanceof XmlChunk)
 				.map(c -> (XmlChunk) c).forEach(xmlChunk -> {
+					Object event = FlightRecorderEvents.beginDecode();
 					XmlDecoder printer = new XmlDecoder(androidResources, arscResources);
-					visitChunks(xmlChunk.getChunks(), printer);
-					out.append(printer.getReconstructedXml());
+					visitChunks(xmlChunk.getChunkList(), printer);
+					String xml = printer.getReconstructedXml();
+					out.append(xml);
+					FlightRecorderEvents.commitDecode(event, xmlChunk.getOriginalChunkSize(), xml.length());
 				});
 		return out.toString();
 	}
 
+	/**
+	 * Sends the contents of a binary XML resource to a SAX handler, with the same resolved names and formatted values
+	 * as {@link #decode(BinaryResourceFile, AndroidResourceProvider, AndroidResourceProvider)} but without building
+	 * XML text in between. Namespace declarations are sent as prefix mappings, not as attributes.
+	 *
+	 * @param binaryResource
+	 * 		Binary XML resource to decode.
+	 * @param androidResources
+	 * 		Core android resource model to provide information for decoding.
+	 * @param arscResources
+	 * 		Optional ARSC file model to provide additional information for decoding.
+	 * 		Can be {@code null} to skip info, but output will be missing some details.
+	 * @param handler
+	 * 		SAX handler to send the document to.
+	 *
+	 * @throws SAXException
+	 * 		When thrown by the handler.
+	 */
+	public static void decode(@Nonnull BinaryResourceFile binaryResource,
+							  @Nonnull AndroidResourceProvider androidResources,
+							  @Nullable AndroidResourceProvider arscResources,
+							  @Nonnull ContentHandler handler) throws SAXException {
+		try {
+			handler.startDocument();
+			for (Chunk chunk : binaryResource.getChunks()) {
+				if (chunk instanceof XmlChunk) {
+					XmlDecoder decoder = new XmlDecoder(androidResources, arscResources, handler);
+					visitChunks(((XmlChunk) chunk).getChunkList(), decoder);
+					decoder.endDocument();
+				}
+			}
+			handler.endDocument();
+		} catch (OutputException ex) {
+			throw (SAXException) ex.getCause();
+		}
+	}
+
+	/**
+	 * Writes the contents of a binary XML resource to a StAX writer, with the same resolved names and formatted values
+	 * as {@link #decode(BinaryResourceFile, AndroidResourceProvider, AndroidResourceProvider)} but without building
+	 * XML text in between. The writer is flushed, but not closed.
+	 *
+	 * @param binaryResource
+	 * 		Binary XML resource to decode.
+	 * @param androidResources
+	 * 		Core android resource model to provide information for decoding.
+	 * @param arscResources
+	 * 		Optional ARSC file model to provide additional information for decoding.
+	 * 		Can be {@code null} to skip info, but output will be missing some details.
+	 * @param writer
+	 * 		StAX writer to write the document to.
+	 *
+	 * @throws XMLStreamException
+	 * 		When thrown by the writer.
+	 */
+	public static void decode(@Nonnull BinaryResourceFile binaryResource,
+							  @Nonnull AndroidResourceProvider androidResources,
+							  @Nullable AndroidResourceProvider arscResources,
+							  @Nonnull XMLStreamWriter writer) throws XMLStreamException {
+		try {
+			writer.writeStartDocument("utf-8", "1.0");
+			for (Chunk chunk : binaryResource.getChunks()) {
+				if (chunk instanceof XmlChunk) {
+					XmlDecoder decoder = new XmlDecoder(androidResources, arscResources, writer);
+					visitChunks(((XmlChunk) chunk).getChunkList(), decoder);
+					decoder.endDocument();
+				}
+			}
+			writer.writeEndDocument();
+			writer.flush();
+		} catch (OutputException ex) {
+			throw (XMLStreamException) ex.getCause();
+		}
+	}
+
 	/**
 	 * @param chunks
 	 * 		Chunks to visit.
@@ -71,8 +201,18 @@ public class XmlDecoder {
 	 * 		Use {@link XmlDecoder#getReconstructedXml()} to see get the XML output.
 	 */
 	public static void visitChunks(@Nonnull Map<Integer, Chunk> chunks, @Nonnull XmlDecoder handler) {
-		List<Chunk> contentChunks = sortByOffset(chunks);
-		for (Chunk chunk : contentChunks) {
+		visitChunks(new ArrayList<>(new TreeMap<>(chunks).values()), handler);
+	}
+
+	/**
+	 * @param chunks
+	 * 		Chunks to visit, in offset order, such as from {@link ChunkWithChunks#getChunkList()}.
+	 * @param handler
+	 * 		XML printer implementation.
+	 * 		Use {@link XmlDecoder#getReconstructedXml()} to see get the XML output.
+	 */
+	public static void visitChunks(@Nonnull List<Chunk> chunks, @Nonnull XmlDecoder handler) {
+		for (Chunk chunk : chunks) {
 			if (chunk instanceof StringPoolChunk) {
 				handler.stringPool((StringPoolChunk) chunk);
 			} else if (chunk instanceof XmlResourceMapChunk) {
@@ -91,14 +231,6 @@ public class XmlDecoder {
 		}
 	}
 
-	@Nonnull
-	private static List<Chunk> sortByOffset(@Nonnull Map<Integer, Chunk> contentChunks) {
-		return contentChunks.entrySet().stream()
-				.sorted(Map.Entry.comparingByKey())
-				.map(Map.Entry::getValue)
-				.collect(Collectors.toList());
-	}
-
 	/**
 	 * Sets the current string pool.
 	 *
@@ -128,21 +260,26 @@ public class XmlDecoder {
 	 * 		XML element chunk to visit.
 	 */
 	public void startElement(@Nonnull XmlStartElementChunk chunk) {
-		builder.startTag(chunk.getName());
-
 		// If this is the first tag, also print out the namespaces
+		Map<String, String> declaredNamespaces = Collections.emptyMap();
 		if (!namespacesAdded && !namespaces.isEmpty()) {
 			namespacesAdded = true;
-			for (Map.Entry<String, String> entry : namespaces.entrySet()) {
-				builder.attribute("xmlns", entry.getValue(), entry.getKey());
-			}
+			declaredNamespaces = namespaces;
 		}
 
+		attributes.clear();
 		for (XmlAttribute xmlAttribute : chunk.getAttributes()) {
-			String prefix = namespaces.get(xmlAttribute.namespace());
-			if (prefix == null) prefix = "";
-			builder.attribute(prefix, getAttributeName(xmlAttribute), getValue(xmlAttribute));
+			String namespace = xmlAttribute.namespace();
+			String prefix = namespaces.get(namespace);
+			String name = getAttributeName(xmlAttribute);
+			String qualifiedName = prefix == null || prefix.isEmpty() ? name : prefix + ':' + name;
+			String localName = name.substring(name.lastIndexOf(':') + 1);
+			attributes.addAttribute(namespace, localName, qualifiedName, "CDATA", getValue(xmlAttribute));
 		}
+
+		String namespace = chunk.getNamespace();
+		output.startElement(namespace, getQualifiedName(namespace, chunk.getName()), chunk.getName(),
+				declaredNamespaces, attributes);
 	}
 
 	/**
@@ -172,15 +309,31 @@ public class XmlDecoder {
 	 * 		Element end chunk to visit.
 	 */
 	public void endElement(@Nonnull XmlEndElementChunk chunk) {
-		builder.endTag(chunk.getName());
+		String namespace = chunk.getNamespace();
+		output.endElement(namespace, getQualifiedName(namespace, chunk.getName()), chunk.getName());
 	}
 
 	/**
-	 * @return XML output.
+	 * Ends the scope of the namespaces declared on the first element.
+	 * Only SAX handlers receive an event for this.
+	 */
+	public void endDocument() {
+		if (namespacesAdded)
+			output.endNamespaces(namespaces);
+	}
+
+	/**
+	 * @return XML output. Empty when decoding to a SAX handler or StAX writer.
 	 */
 	@Nonnull
 	public String getReconstructedXml() {
-		return builder.toString();
+		return output.toString();
+	}
+
+	@Nonnull
+	private String getQualifiedName(@Nonnull String namespace, @Nonnull String name) {
+		String prefix = namespace.isEmpty() ? null : namespaces.get(namespace);
+		return prefix == null || prefix.isEmpty() ? name : prefix + ':' + name;
 	}
 
 	/**
@@ -303,4 +456,180 @@ public class XmlDecoder {
 
 		return String.format("@res/0x%x", data);
 	}
-}
\ No newline at end of file
+
+	/**
+	 * Destination of decoded elements.
+	 */
+	private interface Output {
+		/**
+		 * @param namespace
+		 * 		Namespace URI of the element, or empty.
+		 * @param qualifiedName
+		 * 		Prefixed name of the element.
+		 * @param localName
+		 * 		Name of the element.
+		 * @param declaredNamespaces
+		 * 		Map of namespace URIs to prefixes declared on this element.
+		 * @param attributes
+		 * 		Attributes of the element, with resolved names and formatted values.
+		 */
+		void startElement(@Nonnull String namespace, @Nonnull String qualifiedName, @Nonnull String localName,
+						  @Nonnull Map<String, String> declaredNamespaces, @Nonnull Attributes attributes);
+
+		/**
+		 * @param namespace
+		 * 		Namespace URI of the element, or empty.
+		 * @param qualifiedName
+		 * 		Prefixed name of the element.
+		 * @param localName
+		 * 		Name of the element.
+		 */
+		void endElement(@Nonnull String namespace, @Nonnull String qualifiedName, @Nonnull String localName);
+
+		/**
+		 * @param declaredNamespaces
+		 * 		Map of namespace URIs to prefixes going out of scope.
+		 */
+		default void endNamespaces(@Nonnull Map<String, String> declaredNamespaces) {
+		}
+	}
+
+	/**
+	 * Output building XML text. Element names are written without prefixes, as they always have been.
+	 */
+	private static class TextOutput implements Output {
+		private final XmlBuilder builder = new XmlBuilder();
+
+		@Override
+		public void startElement(@Nonnull String namespace, @Nonnull String qualifiedName, @Nonnull String localName,
+								 @Nonnull Map<String, String> declaredNamespaces, @Nonnull Attributes attributes) {
+			builder.startTag(localName);
+			for (Map.Entry<String, String> entry : declaredNamespaces.entrySet())
+				builder.attribute("xmlns", entry.getValue(), entry.getKey());
+			for (int i = 0; i < attributes.getLength(); i++)
+				builder.attribute(attributes.getQName(i), attributes.getValue(i));
+		}
+
+		@Override
+		public void endElement(@Nonnull String namespace, @Nonnull String qualifiedName, @Nonnull String localName) {
+			builder.endTag(localName);
+		}
+
+		@Override
+		public String toString() {
+			return builder.toString();
+		}
+	}
+
+	/**
+	 * Output sending events to a SAX handler.
+	 */
+	private static class SaxOutput implements Output {
+		private final ContentHandler handler;
+
+		private SaxOutput(@Nonnull ContentHandler handler) {
+			this.handler = handler;
+		}
+
+		@Override
+		public void startElement(@Nonnull String namespace, @Nonnull String qualifiedName, @Nonnull String localName,
+								 @Nonnull Map<String, String> declaredNamespaces, @Nonnull Attributes attributes) {
+			try {
+				for (Map.Entry<String, String> entry : declaredNamespaces.entrySet())
+					handler.startPrefixMapping(entry.getValue(), entry.getKey());
+				handler.startElement(namespace, localName, qualifiedName, attributes);
+			} catch (SAXException ex) {
+				throw new OutputException(ex);
+			}
+		}
+
+		@Override
+		public void endElement(@Nonnull String namespace, @Nonnull String qualifiedName, @Nonnull String localName) {
+			try {
+				handler.endElement(namespace, localName, qualifiedName);
+			} catch (SAXException ex) {
+				throw new OutputException(ex);
+			}
+		}
+
+		@Override
+		public void endNamespaces(@Nonnull Map<String, String> declaredNamespaces) {
+			try {
+				for (String prefix : declaredNamespaces.values())
+					handler.endPrefixMapping(prefix);
+			} catch (SAXException ex) {
+				throw new OutputException(ex);
+			}
+		}
+
+		@Override
+		public String toString() {
+			return "";
+		}
+	}
+
+	/**
+	 * Output writing to a StAX writer.
+	 */
+	private static class StaxOutput implements Output {
+		private final XMLStreamWriter writer;
+
+		private StaxOutput(@Nonnull XMLStreamWriter writer) {
+			this.writer = writer;
+		}
+
+		@Override
+		public void startElement(@Nonnull String namespace, @Nonnull String qualifiedName, @Nonnull String localName,
+								 @Nonnull Map<String, String> declaredNamespaces, @Nonnull Attributes attributes) {
+			try {
+				if (qualifiedName.equals(localName))
+					writer.writeStartElement(localName);
+				else
+					writer.writeStartElement(getPrefix(qualifiedName), localName, namespace);
+				for (Map.Entry<String, String> entry : declaredNamespaces.entrySet())
+					writer.writeNamespace(entry.getValue(), entry.getKey());
+				for (int i = 0; i < attributes.getLength(); i++) {
+					String attributeName = attributes.getQName(i);
+					String attributeNamespace = attributes.getURI(i);
+					if (attributeName.equals(attributes.getLocalName(i)) || attributeNamespace.isEmpty())
+						writer.writeAttribute(attributeName, attributes.getValue(i));
+					else
+						writer.writeAttribute(getPrefix(attributeName), attributeNamespace,
+								attributes.getLocalName(i), attributes.getValue(i));
+				}
+			} catch (XMLStreamException ex) {
+				throw new OutputException(ex);
+			}
+		}
+
+		@Override
+		public void endElement(@Nonnull String namespace, @Nonnull String qualifiedName, @Nonnull String localName) {
+			try {
+				writer.writeEndElement();
+			} catch (XMLStreamException ex) {
+				throw new OutputException(ex);
+			}
+		}
+
+		@Nonnull
+		private static String getPrefix(@Nonnull String qualifiedName) {
+			return qualifiedName.substring(0, qualifiedName.lastIndexOf(':'));
+		}
+
+		@Override
+		public String toString() {
+			return "";
+		}
+	}
+
+	/**
+	 * Carries checked exceptions from an {@link Output} through the visitor methods, which cannot throw them.
+	 */
+	private static class OutputException extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+
+		private OutputException(@Nonnull Exception cause) {
+			super(cause);
+		}
+	}
+}
@@ -0,0 +1,327 @@
+package software.coley.android.xml;
+
+import com.google.devrel.gmscore.tools.apk.arsc.BinaryResourceString;
+import com.google.devrel.gmscore.tools.apk.arsc.BinaryResourceValue;
+import com.google.devrel.gmscore.tools.apk.arsc.Chunk;
+import com.google.devrel.gmscore.tools.apk.arsc.StringPoolChunk;
+
+import javax.annotation.Nonnull;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Strips data which is only useful for debugging from a binary XML document, the same way aapt2 does for release
+ * builds:
+ * <ul>
+ *     <li>Line numbers of nodes are zeroed, and their comments are removed.</li>
+ *     <li>Raw values of attributes are removed, unless the attribute's typed value is a string.</li>
+ *     <li>The string pool is rebuilt with only the strings which are still referenced, each stored once.</li>
+ *     <li>The resource map is rebuilt to match the attribute names at the start of the new pool.</li>
+ * </ul>
+ * Nodes are copied with their string references renumbered, so tampered attribute sizes and unknown chunks
+ * are kept as they are. Additional string pools and resource maps, which are never read, are dropped.
+ */
+public class XmlMinifier {
+	private static final int NO_STRING = -1;
+	// Markers for used strings, before they are assigned indices in the new pool.
+	private static final int USED = -2;
+	private static final int USED_AS_UNMAPPED_NAME = -3;
+	private static final int UTF8_FLAG = 1 << 8;
+	private static final int STRING_POOL_HEADER_SIZE = 28;
+	// Offsets of node fields from the start of their chunk, matching the XmlNodeChunk model.
+	private static final int LINE_NUMBER_OFFSET = Chunk.METADATA_SIZE;
+	private static final int COMMENT_OFFSET = LINE_NUMBER_OFFSET + 4;
+	private static final int NAMESPACE_OFFSET = COMMENT_OFFSET + 4;
+	private static final int NAME_OFFSET = NAMESPACE_OFFSET + 4;
+	private static final int ATTRIBUTE_START_OFFSET = NAME_OFFSET + 4;
+	private static final int ATTRIBUTE_COUNT_OFFSET = ATTRIBUTE_START_OFFSET + 4;
+	private static final int CDATA_VALUE_OFFSET = NAMESPACE_OFFSET + 4;
+	// Offsets of attribute fields from the start of the attribute.
+	private static final int ATTRIBUTE_NAME_OFFSET = 4;
+	private static final int ATTRIBUTE_RAW_VALUE_OFFSET = 8;
+	private static final int ATTRIBUTE_VALUE_OFFSET = 12;
+	// Offsets of typed value fields from the start of the value.
+	private static final int VALUE_TYPE_OFFSET = 3;
+	private static final int VALUE_DATA_OFFSET = 4;
+
+	private final ByteBuffer buffer;
+	private final StringPoolChunk stringPool;
+	private final int[] resourceMap;
+	private final int[] nodeOffsets;
+	private final int nodeCount;
+	private final int headerSize;
+	// Usage of each string of the original pool, and then its index in the new pool.
+	private final int[] nameIndices;
+	private final int[] plainIndices;
+	private final List<String> newStrings = new ArrayList<>();
+	private final List<Integer> newResourceIds = new ArrayList<>();
+
+	private XmlMinifier(@Nonnull ByteBuffer buffer) {
+		this.buffer = buffer;
+		if (buffer.limit() < Chunk.METADATA_SIZE)
+			throw new IllegalArgumentException("Buffer is too small to hold an XML chunk");
+		XmlPullReader reader = new XmlPullReader(buffer);
+		stringPool = reader.getStringPool();
+		if (stringPool == null)
+			throw new IllegalArgumentException("Document has no string pool");
+		if (stringPool.getStyleCount() > 0)
+			throw new IllegalArgumentException("Documents with styled strings are not supported");
+
+		headerSize = buffer.getShort(2) & 0xFFFF;
+		int end = (int) Math.min(buffer.limit(), buffer.getInt(4) & 0xFFFFFFFFL);
+		int[] map = null;
+		int[] offsets = new int[64];
+		int count = 0;
+		for (int offset = headerSize; offset + Chunk.METADATA_SIZE <= end; ) {
+			int size = buffer.getInt(offset + 4);
+			if (size < Chunk.METADATA_SIZE || size > end - offset)
+				break;
+			short typeCode = buffer.getShort(offset);
+			if (typeCode == Chunk.Type.XML_RESOURCE_MAP.code()) {
+				if (map == null) {
+					int mapHeaderSize = buffer.getShort(offset + 2) & 0xFFFF;
+					map = new int[Math.max(0, size - mapHeaderSize) / 4];
+					for (int i = 0; i < map.length; i++)
+						map[i] = buffer.getInt(offset + mapHeaderSize + i * 4);
+				}
+			} else if (typeCode != Chunk.Type.STRING_POOL.code()) {
+				if (count == offsets.length)
+					offsets = Arrays.copyOf(offsets, count * 2);
+				offsets[count++] = offset;
+			}
+			offset += size;
+		}
+		resourceMap = map == null ? new int[0] : map;
+		nodeOffsets = offsets;
+		nodeCount = count;
+		nameIndices = new int[stringPool.getStringCount()];
+		plainIndices = new int[stringPool.getStringCount()];
+		Arrays.fill(nameIndices, NO_STRING);
+		Arrays.fill(plainIndices, NO_STRING);
+	}
+
+	/**
+	 * @param bytes
+	 * 		Binary XML document.
+	 *
+	 * @return Minified copy of the document.
+	 *
+	 * @throws IllegalArgumentException
+	 * 		When the document has no string pool, or its strings have styles.
+	 */
+	@Nonnull
+	public static byte[] minify(@Nonnull byte[] bytes) {
+		return new XmlMinifier(ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN)).minify();
+	}
+
+	@Nonnull
+	private byte[] minify() {
+		// The first pass marks which strings are used, so the new pool keeps the original order of strings.
+		for (int i = 0; i < nodeCount; i++)
+			visitNode(nodeOffsets[i], null);
+		assignIndices();
+
+		ByteArrayOutputStream nodes = new ByteArrayOutputStream();
+		for (int i = 0; i < nodeCount; i++) {
+			int offset = nodeOffsets[i];
+			ByteBuffer node = ByteBuffer.allocate(buffer.getInt(offset + 4)).order(ByteOrder.LITTLE_ENDIAN);
+			node.put(buffer.array(), buffer.arrayOffset() + offset, node.capacity());
+			visitNode(0, node);
+			nodes.write(node.array(), 0, node.capacity());
+		}
+		byte[] pool = writeStringPool();
+		byte[] map = writeResourceMap();
+
+		ByteBuffer result = ByteBuffer.allocate(headerSize + pool.length + map.length + nodes.size())
+				.order(ByteOrder.LITTLE_ENDIAN);
+		result.put(buffer.array(), buffer.arrayOffset(), headerSize);
+		result.putInt(4, result.capacity());
+		result.put(pool);
+		result.put(map);
+		result.put(nodes.toByteArray());
+		return result.array();
+	}
+
+	/**
+	 * @param offset
+	 * 		Offset of the node in the buffer being visited.
+	 * @param out
+	 * 		Copy of the node to rewrite with new string indices, or {@code null} to only mark the strings it uses.
+	 */
+	private void visitNode(int offset, ByteBuffer out) {
+		ByteBuffer node = out == null ? buffer : out;
+		int size = node.getInt(offset + 4);
+		short typeCode = node.getShort(offset);
+		if (typeCode < Chunk.Type.XML_START_NAMESPACE.code() || typeCode > Chunk.Type.XML_CDATA.code()
+				|| size < ATTRIBUTE_START_OFFSET)
+			return;
+		if (out != null) {
+			out.putInt(LINE_NUMBER_OFFSET, 0);
+			out.putInt(COMMENT_OFFSET, NO_STRING);
+		}
+		if (typeCode == Chunk.Type.XML_CDATA.code()) {
+			plain(node, offset + NAMESPACE_OFFSET, out);
+			if (size >= CDATA_VALUE_OFFSET + BinaryResourceValue.SIZE)
+				stringValue(node, offset + CDATA_VALUE_OFFSET, out);
+			return;
+		}
+		// Namespace nodes hold a prefix and a URI in the same fields as the namespace and name of elements.
+		plain(node, offset + NAMESPACE_OFFSET, out);
+		plain(node, offset + NAME_OFFSET, out);
+		if (typeCode != Chunk.Type.XML_START_ELEMENT.code() || size < ATTRIBUTE_COUNT_OFFSET + 2)
+			return;
+
+		int nodeHeaderSize = node.getShort(offset + 2) & 0xFFFF;
+		int attributeStart = node.getShort(offset + ATTRIBUTE_START_OFFSET) & 0xFFFF;
+		int count = node.getShort(offset + ATTRIBUTE_COUNT_OFFSET) & 0xFFFF;
+		int attribute = offset + nodeHeaderSize + attributeStart;
+		int end = offset + size;
+		for (int i = 0; i < count; i++) {
+			int value = attribute + ATTRIBUTE_VALUE_OFFSET;
+			if (value + BinaryResourceValue.SIZE > end)
+				break;
+			plain(node, attribute, out);
+			name(node, attribute + ATTRIBUTE_NAME_OFFSET, out);
+			if (stringValue(node, value, out)) {
+				if (out != null)
+					out.putInt(attribute + ATTRIBUTE_RAW_VALUE_OFFSET, out.getInt(value + VALUE_DATA_OFFSET));
+			} else if (out != null) {
+				out.putInt(attribute + ATTRIBUTE_RAW_VALUE_OFFSET, NO_STRING);
+			}
+			// Attributes are stepped over by the size of their values, as in XmlStartElementChunk.
+			attribute = value + (node.getShort(value) & 0xFFFF);
+		}
+	}
+
+	/**
+	 * @return {@code true} when the typed value at the given offset is a string.
+	 */
+	private boolean stringValue(@Nonnull ByteBuffer node, int offset, ByteBuffer out) {
+		if (node.get(offset + VALUE_TYPE_OFFSET) != BinaryResourceValue.Type.STRING.code())
+			return false;
+		plain(node, offset + VALUE_DATA_OFFSET, out);
+		return true;
+	}
+
+	private void plain(@Nonnull ByteBuffer node, int offset, ByteBuffer out) {
+		plain(node, offset, out, USED);
+	}
+
+	private void plain(@Nonnull ByteBuffer node, int offset, ByteBuffer out, int marker) {
+		int index = node.getInt(offset);
+		if (!isValid(index))
+			return;
+		if (out == null)
+			plainIndices[index] = Math.min(plainIndices[index], marker);
+		else
+			out.putInt(offset, plainIndices[index]);
+	}
+
+	private void name(@Nonnull ByteBuffer node, int offset, ByteBuffer out) {
+		int index = node.getInt(offset);
+		if (!isValid(index)) {
+			return;
+		} else if (index >= resourceMap.length || resourceMap[index] == 0) {
+			plain(node, offset, out, USED_AS_UNMAPPED_NAME);
+		} else {
+			if (out == null)
+				nameIndices[index] = USED;
+			else
+				out.putInt(offset, nameIndices[index]);
+		}
+	}
+
+	private boolean isValid(int index) {
+		return index >= 0 && index < nameIndices.length;
+	}
+
+	/**
+	 * Assigns indices in the new pool to the used strings. Attribute names with resource ids come first, as the
+	 * resource map must match them up with the start of the pool. Each of them is kept once per resource id.
+	 * Every other string is kept once, and shares the index of an attribute name with the same value unless it
+	 * is itself an attribute name, which would then pick up that name's resource id.
+	 */
+	private void assignIndices() {
+		Map<String, Integer> names = new HashMap<>();
+		Map<String, Integer> mappedStrings = new HashMap<>();
+		for (int i = 0; i < nameIndices.length; i++) {
+			if (nameIndices[i] == USED) {
+				String string = stringPool.getString(i);
+				String key = Integer.toHexString(resourceMap[i]) + ':' + string;
+				Integer index = names.get(key);
+				if (index == null) {
+					index = newStrings.size();
+					names.put(key, index);
+					newStrings.add(string);
+					newResourceIds.add(resourceMap[i]);
+					mappedStrings.putIfAbsent(string, index);
+				}
+				nameIndices[i] = index;
+			}
+		}
+		Map<String, Integer> strings = new HashMap<>();
+		for (int i = 0; i < plainIndices.length; i++) {
+			if (plainIndices[i] == USED || plainIndices[i] == USED_AS_UNMAPPED_NAME) {
+				String string = stringPool.getString(i);
+				Integer index = plainIndices[i] == USED ? mappedStrings.get(string) : null;
+				if (index == null)
+					index = strings.get(string);
+				if (index == null) {
+					index = newStrings.size();
+					strings.put(string, index);
+					newStrings.add(string);
+				}
+				plainIndices[i] = index;
+			}
+		}
+	}
+
+	@Nonnull
+	private byte[] writeStringPool() {
+		BinaryResourceString.Type stringType = stringPool.getStringType();
+		int count = newStrings.size();
+		ByteArrayOutputStream data = new ByteArrayOutputStream();
+		ByteBuffer offsets = ByteBuffer.allocate(count * 4).order(ByteOrder.LITTLE_ENDIAN);
+		for (String string : newStrings) {
+			offsets.putInt(data.size());
+			byte[] encoded = BinaryResourceString.encodeString(string, stringType);
+			data.write(encoded, 0, encoded.length);
+		}
+		while (data.size() % 4 != 0)
+			data.write(0);
+
+		int stringsStart = STRING_POOL_HEADER_SIZE + offsets.capacity();
+		ByteBuffer pool = ByteBuffer.allocate(stringsStart + data.size()).order(ByteOrder.LITTLE_ENDIAN);
+		pool.putShort(Chunk.Type.STRING_POOL.code());
+		pool.putShort((short) STRING_POOL_HEADER_SIZE);
+		pool.putInt(pool.capacity());
+		pool.putInt(count);
+		pool.putInt(0); // Style count
+		pool.putInt(stringType == BinaryResourceString.Type.UTF8 ? UTF8_FLAG : 0);
+		pool.putInt(count == 0 ? 0 : stringsStart);
+		pool.putInt(0); // Styles start
+		pool.put(offsets.array());
+		pool.put(data.toByteArray());
+		return pool.array();
+	}
+
+	@Nonnull
+	private byte[] writeResourceMap() {
+		if (newResourceIds.isEmpty())
+			return new byte[0];
+		int size = Chunk.METADATA_SIZE + newResourceIds.size() * 4;
+		ByteBuffer map = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+		map.putShort(Chunk.Type.XML_RESOURCE_MAP.code());
+		map.putShort((short) Chunk.METADATA_SIZE);
+		map.putInt(size);
+		for (int id : newResourceIds)
+			map.putInt(id);
+		return map.array();
+	}
+}
@@ -0,0 +1,498 @@
+package software.coley.android.xml;
+
+import com.google.devrel.gmscore.tools.apk.arsc.BinaryResourceValue;
+import com.google.devrel.gmscore.tools.apk.arsc.Chunk;
+import com.google.devrel.gmscore.tools.apk.arsc.StringPoolChunk;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * A forward-only cursor over a binary XML document, in the style of {@code org.xmlpull.v1.XmlPullParser}.
+ * <br>
+ * Unlike {@link XmlDecoder}, the document is not parsed into a {@link com.google.devrel.gmscore.tools.apk.arsc.XmlChunk}.
+ * Only the string pool is decoded up front, and each node is read from the buffer as the cursor reaches it.
+ * Names and raw values are returned directly from the {@link StringPoolChunk}, so reading a handful of
+ * values from a manifest allocates next to nothing. The cursor is not thread safe.
+ * <br>
+ * Malformed documents are handled like {@link com.google.devrel.gmscore.tools.apk.arsc.BinaryResourceFile}:
+ * the document ends at the first node which cannot be read.
+ */
+public class XmlPullReader {
+	/** Event before the first call to {@link #next()}. */
+	public static final int START_DOCUMENT = 0;
+	/** Event after the last node of the document. */
+	public static final int END_DOCUMENT = 1;
+	/** Event for the start of an element. */
+	public static final int START_TAG = 2;
+	/** Event for the end of an element. */
+	public static final int END_TAG = 3;
+	/** Event for character data. */
+	public static final int TEXT = 4;
+
+	// Offsets of node fields from the start of their chunk, matching the XmlNodeChunk model.
+	private static final int LINE_NUMBER_OFFSET = Chunk.METADATA_SIZE;
+	private static final int NAMESPACE_OFFSET = Chunk.METADATA_SIZE + 8;
+	private static final int NAME_OFFSET = NAMESPACE_OFFSET + 4;
+	private static final int ATTRIBUTE_START_OFFSET = NAME_OFFSET + 4;
+	private static final int ATTRIBUTE_COUNT_OFFSET = ATTRIBUTE_START_OFFSET + 4;
+	private static final int CDATA_VALUE_OFFSET = NAMESPACE_OFFSET + 4;
+	/** The size of an attribute's namespace, name and raw value, which precede its typed value. */
+	private static final int ATTRIBUTE_LOCAL_SIZE = 12;
+	private static final int NO_STRING = -1;
+
+	private final ByteBuffer buffer;
+	private final int end;
+	private StringPoolChunk stringPool;
+	private int stringPoolOffset = -1;
+	private int resourceMapOffset;
+	private int resourceMapCount;
+	private int[] attributeOffsets = new int[8];
+	private int attributeCount;
+	private int eventType = START_DOCUMENT;
+	private int depth;
+	private int nodeOffset;
+	private int nextOffset;
+
+	/**
+	 * @param bytes
+	 * 		Binary XML document.
+	 */
+	public XmlPullReader(@Nonnull byte[] bytes) {
+		this(ByteBuffer.wrap(bytes));
+	}
+
+	/**
+	 * @param buffer
+	 * 		Buffer positioned at the start of a binary XML document. The buffer's position is not modified.
+	 *
+	 * @throws IllegalArgumentException
+	 * 		When the buffer does not start with an XML chunk.
+	 */
+	public XmlPullReader(@Nonnull ByteBuffer buffer) {
+		this(buffer, null);
+	}
+
+	/**
+	 * @param buffer
+	 * 		Buffer positioned at the start of a binary XML document. The buffer's position is not modified.
+	 * @param stringPool
+	 * 		Previously decoded string pool of the same document, or {@code null} to decode it.
+	 *
+	 * @throws IllegalArgumentException
+	 * 		When the buffer does not start with an XML chunk.
+	 */
+	XmlPullReader(@Nonnull ByteBuffer buffer, @Nullable StringPoolChunk stringPool) {
+		this.stringPool = stringPool;
+		this.buffer = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+		int start = buffer.position();
+		int limit = buffer.limit();
+		if (limit - start < Chunk.METADATA_SIZE)
+			throw new IllegalArgumentException("Buffer is too small to hold an XML chunk");
+		short typeCode = this.buffer.getShort(start);
+		// Obfuscators rewrite the type code of XML chunks to the null type, which the model reads as XML.
+		if (typeCode != Chunk.Type.XML.code() && typeCode != Chunk.Type.NULL.code())
+			throw new IllegalArgumentException("Buffer does not start with an XML chunk");
+		int headerSize = this.buffer.getShort(start + 2) & 0xFFFF;
+		end = (int) Math.min(limit, (long) start + this.buffer.getInt(start + 4));
+		nextOffset = start + headerSize;
+		findStringPoolAndResourceMap();
+	}
+
+	/**
+	 * Locates the first string pool and resource map of the document. aapt writes both ahead of any node,
+	 * so this normally reads just two chunk headers.
+	 */
+	private void findStringPoolAndResourceMap() {
+		int offset = nextOffset;
+		while (offset < end && (stringPoolOffset < 0 || resourceMapCount == 0)) {
+			int size = getChunkSize(offset);
+			if (size <= 0)
+				break;
+			short typeCode = buffer.getShort(offset);
+			int headerSize = buffer.getShort(offset + 2) & 0xFFFF;
+			if (typeCode == Chunk.Type.STRING_POOL.code() && stringPoolOffset < 0) {
+				stringPoolOffset = offset;
+				if (stringPool == null)
+					stringPool = readStringPool(offset);
+				if (stringPool == null)
+					break;
+			} else if (typeCode == Chunk.Type.XML_RESOURCE_MAP.code() && resourceMapCount == 0) {
+				resourceMapOffset = offset + headerSize;
+				resourceMapCount = Math.max(0, Math.min(size, end - offset) - headerSize) / 4;
+			}
+			offset += size;
+		}
+	}
+
+	@Nullable
+	private StringPoolChunk readStringPool(int offset) {
+		ByteBuffer view = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+		view.position(offset);
+		try {
+			Chunk chunk = Chunk.newInstance(view);
+			return chunk instanceof StringPoolChunk ? (StringPoolChunk) chunk : null;
+		} catch (RuntimeException ex) {
+			return null;
+		}
+	}
+
+	/**
+	 * @return Size of the chunk at the given offset, or {@code -1} if its header cannot be read
+	 * or it does not fit in the document.
+	 */
+	private int getChunkSize(int offset) {
+		if (end - offset < Chunk.METADATA_SIZE)
+			return -1;
+		int size = buffer.getInt(offset + 4);
+		return size > 0 && size <= end - offset ? size : -1;
+	}
+
+	/**
+	 * Advances to the next start tag, end tag, or text node.
+	 * Namespace declarations and chunks of other types are skipped.
+	 *
+	 * @return The new event type.
+	 */
+	public int next() {
+		if (eventType == END_DOCUMENT)
+			return END_DOCUMENT;
+		if (eventType == END_TAG)
+			depth--;
+		attributeCount = 0;
+		while (true) {
+			int offset = nextOffset;
+			int size = getChunkSize(offset);
+			if (size < 0)
+				return eventType = END_DOCUMENT;
+			nodeOffset = offset;
+			nextOffset = offset + size;
+			short typeCode = buffer.getShort(offset);
+			if (typeCode == Chunk.Type.XML_START_ELEMENT.code()) {
+				if (!readAttributeOffsets())
+					return eventType = END_DOCUMENT;
+				depth++;
+				return eventType = START_TAG;
+			} else if (typeCode == Chunk.Type.XML_END_ELEMENT.code()) {
+				if (!isReadable(offset, NAME_OFFSET + 4))
+					return eventType = END_DOCUMENT;
+				return eventType = END_TAG;
+			} else if (typeCode == Chunk.Type.XML_CDATA.code()) {
+				if (!isReadable(offset, CDATA_VALUE_OFFSET + 4))
+					return eventType = END_DOCUMENT;
+				return eventType = TEXT;
+			}
+		}
+	}
+
+	/**
+	 * Records where each attribute of the current start tag begins. Attributes are stepped over by the size
+	 * of their typed values, as the model does, so they cannot be indexed directly.
+	 *
+	 * @return {@code false} when the attributes run past the end of the buffer.
+	 */
+	private boolean readAttributeOffsets() {
+		if (!isReadable(nodeOffset, ATTRIBUTE_COUNT_OFFSET + 2))
+			return false;
+		int headerSize = buffer.getShort(nodeOffset + 2) & 0xFFFF;
+		int attributeStart = buffer.getShort(nodeOffset + ATTRIBUTE_START_OFFSET) & 0xFFFF;
+		int count = buffer.getShort(nodeOffset + ATTRIBUTE_COUNT_OFFSET) & 0xFFFF;
+		if (attributeOffsets.length < count)
+			attributeOffsets = Arrays.copyOf(attributeOffsets, Math.max(count, attributeOffsets.length * 2));
+		int offset = nodeOffset + headerSize + attributeStart;
+		for (int i = 0; i < count; i++) {
+			int valueOffset = offset + ATTRIBUTE_LOCAL_SIZE;
+			if (!isReadable(offset, ATTRIBUTE_LOCAL_SIZE + 8))
+				return false;
+			attributeOffsets[i] = offset;
+			offset = valueOffset + (buffer.getShort(valueOffset) & 0xFFFF);
+		}
+		attributeCount = count;
+		return true;
+	}
+
+	/**
+	 * @return {@code true} when the given number of bytes at the offset are within the buffer.
+	 */
+	private boolean isReadable(int offset, int length) {
+		return offset >= 0 && length <= buffer.limit() - offset;
+	}
+
+	/**
+	 * @return Current event type.
+	 */
+	public int getEventType() {
+		return eventType;
+	}
+
+	/**
+	 * @return Depth of the current element, where the root element is {@code 1}.
+	 * Outside any element, this is {@code 0}.
+	 */
+	public int getDepth() {
+		return depth;
+	}
+
+	/**
+	 * @return Line number in the original source of the current node, or {@code -1} if there is no current node.
+	 */
+	public int getLineNumber() {
+		return isNode() ? buffer.getInt(nodeOffset + LINE_NUMBER_OFFSET) : -1;
+	}
+
+	/**
+	 * @return Name of the current element, or {@code null} if the event is not a start or end tag.
+	 */
+	@Nullable
+	public String getName() {
+		return isTag() ? getString(buffer.getInt(nodeOffset + NAME_OFFSET)) : null;
+	}
+
+	/**
+	 * @return Namespace URI of the current element, or the empty string if it has none.
+	 * {@code null} if the event is not a start or end tag.
+	 */
+	@Nullable
+	public String getNamespace() {
+		return isTag() ? getString(buffer.getInt(nodeOffset + NAMESPACE_OFFSET)) : null;
+	}
+
+	/**
+	 * @return Raw character data of the current text node, or {@code null} if the event is not text.
+	 */
+	@Nullable
+	public String getText() {
+		return eventType == TEXT ? getString(buffer.getInt(nodeOffset + CDATA_VALUE_OFFSET)) : null;
+	}
+
+	/**
+	 * @return Number of attributes of the current start tag, or {@code -1} if the event is not a start tag.
+	 */
+	public int getAttributeCount() {
+		return eventType == START_TAG ? attributeCount : -1;
+	}
+
+	/**
+	 * @param index
+	 * 		Attribute index.
+	 *
+	 * @return Name of the attribute, which may be empty in obfuscated documents that only name
+	 * attributes through their resource ids.
+	 */
+	@Nonnull
+	public String getAttributeName(int index) {
+		return getString(getAttributeNameIndex(index));
+	}
+
+	/**
+	 * @param index
+	 * 		Attribute index.
+	 *
+	 * @return Namespace URI of the attribute, or the empty string if it has none.
+	 */
+	@Nonnull
+	public String getAttributeNamespace(int index) {
+		return getString(buffer.getInt(getAttributeOffset(index)));
+	}
+
+	/**
+	 * @param index
+	 * 		Attribute index.
+	 *
+	 * @return Resource id that the attribute's name maps to, such as {@code 0x01010003} for {@code android:name},
+	 * or {@code 0} if it is not mapped.
+	 */
+	public int getAttributeNameResource(int index) {
+		int nameIndex = getAttributeNameIndex(index);
+		if (nameIndex < 0 || nameIndex >= resourceMapCount)
+			return 0;
+		return buffer.getInt(resourceMapOffset + nameIndex * 4);
+	}
+
+	/**
+	 * @param resourceId
+	 * 		Resource id of an attribute name, such as {@code 0x01010003} for {@code android:name}.
+	 *
+	 * @return Index of the first attribute of the current start tag whose name maps to the resource id,
+	 * or {@code -1} if there is none.
+	 */
+	public int indexOfAttribute(int resourceId) {
+		if (resourceId == 0)
+			return -1;
+		for (int i = 0; i < attributeCount; i++)
+			if (getAttributeNameResource(i) == resourceId)
+				return i;
+		return -1;
+	}
+
+	/**
+	 * @param index
+	 * 		Attribute index.
+	 *
+	 * @return Raw value of the attribute if the document retains it. Otherwise, the typed value coerced to a
+	 * string as {@code android.util.TypedValue#coerceToString} does. May be {@code null} for null typed values.
+	 */
+	@Nullable
+	public String getAttributeValue(int index) {
+		int rawValue = buffer.getInt(getAttributeOffset(index) + 8);
+		if (rawValue != NO_STRING)
+			return getString(rawValue);
+		return coerceToString(getAttributeValueType(index), getAttributeValueData(index));
+	}
+
+	/**
+	 * @param index
+	 * 		Attribute index.
+	 *
+	 * @return Type of the attribute's typed value.
+	 */
+	@Nonnull
+	public BinaryResourceValue.Type getAttributeValueType(int index) {
+		return BinaryResourceValue.Type.fromCode(buffer.get(getAttributeOffset(index) + ATTRIBUTE_LOCAL_SIZE + 3));
+	}
+
+	/**
+	 * @param index
+	 * 		Attribute index.
+	 *
+	 * @return Data of the attribute's typed value.
+	 */
+	public int getAttributeValueData(int index) {
+		return buffer.getInt(getAttributeOffset(index) + ATTRIBUTE_LOCAL_SIZE + 4);
+	}
+
+	/**
+	 * @param index
+	 * 		Attribute index.
+	 * @param defaultValue
+	 * 		Value to return if the attribute is not a resource reference.
+	 *
+	 * @return Resource id that the attribute references.
+	 */
+	public int getAttributeResourceValue(int index, int defaultValue) {
+		BinaryResourceValue.Type type = getAttributeValueType(index);
+		if (type == BinaryResourceValue.Type.REFERENCE || type == BinaryResourceValue.Type.DYNAMIC_REFERENCE)
+			return getAttributeValueData(index);
+		return defaultValue;
+	}
+
+	/**
+	 * @param index
+	 * 		Attribute index.
+	 * @param defaultValue
+	 * 		Value to return if the attribute is not an integer.
+	 *
+	 * @return Integer value of the attribute. Colors and booleans are also treated as integers.
+	 */
+	public int getAttributeIntValue(int index, int defaultValue) {
+		int typeCode = getAttributeValueType(index).code() & 0xFF;
+		if (typeCode >= (BinaryResourceValue.Type.INT_DEC.code() & 0xFF)
+				&& typeCode <= (BinaryResourceValue.Type.INT_COLOR_RGB4.code() & 0xFF))
+			return getAttributeValueData(index);
+		return defaultValue;
+	}
+
+	/**
+	 * @param index
+	 * 		Attribute index.
+	 * @param defaultValue
+	 * 		Value to return if the attribute is not an integer.
+	 *
+	 * @return Boolean value of the attribute, where any non-zero integer is {@code true}.
+	 */
+	public boolean getAttributeBooleanValue(int index, boolean defaultValue) {
+		int typeCode = getAttributeValueType(index).code() & 0xFF;
+		if (typeCode >= (BinaryResourceValue.Type.INT_DEC.code() & 0xFF)
+				&& typeCode <= (BinaryResourceValue.Type.INT_COLOR_RGB4.code() & 0xFF))
+			return getAttributeValueData(index) != 0;
+		return defaultValue;
+	}
+
+	/**
+	 * @return String pool of the document, or {@code null} if it has none.
+	 */
+	@Nullable
+	public StringPoolChunk getStringPool() {
+		return stringPool;
+	}
+
+	/**
+	 * @return Offset in the buffer of the document's string pool, or {@code -1} if it has none.
+	 */
+	int getStringPoolOffset() {
+		return stringPool == null ? -1 : stringPoolOffset;
+	}
+
+	private int getAttributeNameIndex(int index) {
+		return buffer.getInt(getAttributeOffset(index) + 4);
+	}
+
+	/**
+	 * @param index
+	 * 		Attribute index.
+	 *
+	 * @return Offset in the buffer of the attribute's namespace, which is followed by its name, raw value
+	 * and typed value.
+	 */
+	int getAttributeOffset(int index) {
+		if (eventType != START_TAG)
+			throw new IllegalStateException("Attributes are only available on start tags");
+		if (index < 0 || index >= attributeCount)
+			throw new IndexOutOfBoundsException("Attribute index " + index + " out of bounds for " + attributeCount);
+		return attributeOffsets[index];
+	}
+
+	private boolean isTag() {
+		return eventType == START_TAG || eventType == END_TAG;
+	}
+
+	private boolean isNode() {
+		return isTag() || eventType == TEXT;
+	}
+
+	@Nonnull
+	private String getString(int index) {
+		// Matches XmlNodeChunk, where -1 is used for "no string entry".
+		if (index == NO_STRING)
+			return "";
+		if (stringPool == null)
+			return "?";
+		return stringPool.getString(index);
+	}
+
+	@Nullable
+	private String coerceToString(@Nonnull BinaryResourceValue.Type type, int data) {
+		switch (type) {
+			case STRING:
+				return getString(data);
+			case REFERENCE:
+			case DYNAMIC_REFERENCE:
+				return "@" + data;
+			case ATTRIBUTE:
+			case DYNAMIC_ATTRIBUTE:
+				return "?" + data;
+			case FLOAT:
+				return Float.toString(Float.intBitsToFloat(data));
+			case DIMENSION:
+				return AndroidFormatting.toDimensionString(data);
+			case FRACTION:
+				return AndroidFormatting.toFractionString(data);
+			case INT_DEC:
+				return Integer.toString(data);
+			case INT_HEX:
+				return "0x" + Integer.toHexString(data);
+			case INT_BOOLEAN:
+				return Boolean.toString(data != 0);
+			case INT_COLOR_ARGB8:
+			case INT_COLOR_RGB8:
+			case INT_COLOR_ARGB4:
+			case INT_COLOR_RGB4:
+				return "#" + Integer.toHexString(data);
+			default:
+				return null;
+		}
+	}
+}
@@ -0,0 +1,382 @@
+package software.coley.android.xml;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A compiled path query over binary XML, supporting a subset of XPath:
+ * <ul>
+ *     <li>Child {@code /} and descendant {@code //} steps, such as {@code /manifest/application//activity}</li>
+ *     <li>Element names or {@code *}, compared without namespaces</li>
+ *     <li>Attribute predicates, either {@code [@android:name]} or {@code [@android:name='value']}</li>
+ *     <li>A trailing attribute step selecting attribute values, such as {@code //Button/@android:onClick}</li>
+ * </ul>
+ * Attributes are named as {@code prefix:name}, {@code name} for attributes without a namespace, {@code *},
+ * or by the resource id of their name such as {@code @0x01010003}, which also matches attributes whose names
+ * were stripped by obfuscators. Values are compared against {@link XmlPullReader#getAttributeValue(int)}.
+ * <br>
+ * Queries are evaluated while streaming the document with {@link XmlPullReader}. Only a stack with one
+ * {@code long} per open element is kept, holding which steps of the path are matched at that depth.
+ * Evaluation stops as soon as the {@link MatchHandler} asks it to. Compiled queries are immutable and may be
+ * shared between threads.
+ */
+public class XmlQuery {
+	/** Namespace prefixes known to every query. */
+	public static final Map<String, String> DEFAULT_NAMESPACES;
+	private static final int MAX_STEPS = Long.SIZE - 1;
+	private final String path;
+	private final Step[] steps;
+	private final AttributeTest selectedAttribute;
+
+	static {
+		Map<String, String> namespaces = new HashMap<>();
+		namespaces.put("android", "http://schemas.android.com/apk/res/android");
+		namespaces.put("app", "http://schemas.android.com/apk/res-auto");
+		namespaces.put("tools", "http://schemas.android.com/tools");
+		DEFAULT_NAMESPACES = Collections.unmodifiableMap(namespaces);
+	}
+
+	private XmlQuery(@Nonnull String path, @Nonnull Step[] steps, @Nullable AttributeTest selectedAttribute) {
+		this.path = path;
+		this.steps = steps;
+		this.selectedAttribute = selectedAttribute;
+	}
+
+	/**
+	 * @param path
+	 * 		Query path, using the {@link #DEFAULT_NAMESPACES} prefixes.
+	 *
+	 * @return Compiled query.
+	 *
+	 * @throws IllegalArgumentException
+	 * 		When the path is not supported.
+	 */
+	@Nonnull
+	public static XmlQuery compile(@Nonnull String path) {
+		return compile(path, DEFAULT_NAMESPACES);
+	}
+
+	/**
+	 * @param path
+	 * 		Query path.
+	 * @param namespaces
+	 * 		Map of prefixes to namespace URIs, for naming attributes in the path.
+	 *
+	 * @return Compiled query.
+	 *
+	 * @throws IllegalArgumentException
+	 * 		When the path is not supported, or uses an unknown prefix.
+	 */
+	@Nonnull
+	public static XmlQuery compile(@Nonnull String path, @Nonnull Map<String, String> namespaces) {
+		return new Parser(path, namespaces).parse();
+	}
+
+	/**
+	 * @param bytes
+	 * 		Binary XML document.
+	 *
+	 * @return Value of the first match, or {@code null} if nothing matches.
+	 * For queries selecting an attribute, this is the attribute's value. Otherwise, it is the element's name.
+	 */
+	@Nullable
+	public String selectFirst(@Nonnull byte[] bytes) {
+		String[] result = new String[1];
+		evaluate(new XmlPullReader(bytes), (reader, attributeIndex) -> {
+			result[0] = getValue(reader, attributeIndex);
+			return false;
+		});
+		return result[0];
+	}
+
+	/**
+	 * @param bytes
+	 * 		Binary XML document.
+	 *
+	 * @return Values of all matches, in document order.
+	 * For queries selecting an attribute, these are the attributes' values. Otherwise, they are the elements' names.
+	 */
+	@Nonnull
+	public List<String> selectAll(@Nonnull byte[] bytes) {
+		List<String> results = new ArrayList<>();
+		evaluate(new XmlPullReader(bytes), (reader, attributeIndex) -> {
+			results.add(getValue(reader, attributeIndex));
+			return true;
+		});
+		return results;
+	}
+
+	@Nullable
+	private static String getValue(@Nonnull XmlPullReader reader, int attributeIndex) {
+		return attributeIndex < 0 ? reader.getName() : reader.getAttributeValue(attributeIndex);
+	}
+
+	/**
+	 * Streams the reader to the end of the document, or until the handler stops evaluation.
+	 *
+	 * @param reader
+	 * 		Reader to consume.
+	 * @param handler
+	 * 		Handler to pass matches to.
+	 *
+	 * @return {@code true} if the document was fully evaluated, {@code false} if the handler stopped evaluation.
+	 */
+	public boolean evaluate(@Nonnull XmlPullReader reader, @Nonnull MatchHandler handler) {
+		long acceptMask = 1L << steps.length;
+		long[] stack = new long[16];
+		stack[0] = 1L; // The document node, where the first step is next to be matched.
+		int depth = 0;
+		int event;
+		while ((event = reader.next()) != XmlPullReader.END_DOCUMENT) {
+			if (event == XmlPullReader.END_TAG) {
+				if (depth > 0)
+					depth--;
+				continue;
+			} else if (event != XmlPullReader.START_TAG) {
+				continue;
+			}
+
+			long parentMask = stack[depth];
+			long mask = 0;
+			for (long remaining = parentMask; remaining != 0; remaining &= remaining - 1) {
+				int state = Long.numberOfTrailingZeros(remaining);
+				Step step = steps[state];
+				if (step.descendant)
+					mask |= 1L << state;
+				if (step.matches(reader))
+					mask |= 1L << (state + 1);
+			}
+			if ((mask & acceptMask) != 0) {
+				mask &= ~acceptMask;
+				if (!onMatch(reader, handler))
+					return false;
+			}
+			if (++depth == stack.length)
+				stack = Arrays.copyOf(stack, stack.length * 2);
+			stack[depth] = mask;
+		}
+		return true;
+	}
+
+	private boolean onMatch(@Nonnull XmlPullReader reader, @Nonnull MatchHandler handler) {
+		if (selectedAttribute == null)
+			return handler.onMatch(reader, -1);
+		for (int i = 0; i < reader.getAttributeCount(); i++)
+			if (selectedAttribute.matches(reader, i) && !handler.onMatch(reader, i))
+				return false;
+		return true;
+	}
+
+	/**
+	 * @return {@code true} when the query ends with an attribute step, selecting attributes rather than elements.
+	 */
+	public boolean isAttributeQuery() {
+		return selectedAttribute != null;
+	}
+
+	@Override
+	public String toString() {
+		return path;
+	}
+
+	/**
+	 * Receives matches of a query.
+	 */
+	public interface MatchHandler {
+		/**
+		 * @param reader
+		 * 		Reader positioned on the start tag of the matched element.
+		 * @param attributeIndex
+		 * 		Index of the matched attribute for queries selecting an attribute, otherwise {@code -1}.
+		 *
+		 * @return {@code true} to continue evaluation, {@code false} to stop.
+		 */
+		boolean onMatch(@Nonnull XmlPullReader reader, int attributeIndex);
+	}
+
+	private static class Step {
+		private final boolean descendant;
+		private final String name;
+		private final Predicate[] predicates;
+
+		private Step(boolean descendant, @Nullable String name, @Nonnull Predicate[] predicates) {
+			this.descendant = descendant;
+			this.name = name;
+			this.predicates = predicates;
+		}
+
+		private boolean matches(@Nonnull XmlPullReader reader) {
+			if (name != null && !name.equals(reader.getName()))
+				return false;
+			for (Predicate predicate : predicates)
+				if (!predicate.matches(reader))
+					return false;
+			return true;
+		}
+	}
+
+	private static class Predicate {
+		private final AttributeTest attribute;
+		private final String value;
+
+		private Predicate(@Nonnull AttributeTest attribute, @Nullable String value) {
+			this.attribute = attribute;
+			this.value = value;
+		}
+
+		private boolean matches(@Nonnull XmlPullReader reader) {
+			for (int i = 0; i < reader.getAttributeCount(); i++)
+				if (attribute.matches(reader, i) && (value == null || value.equals(reader.getAttributeValue(i))))
+					return true;
+			return false;
+		}
+	}
+
+	private static class AttributeTest {
+		private final String namespace;
+		private final String name;
+		private final int resourceId;
+
+		private AttributeTest(@Nullable String namespace, @Nullable String name, int resourceId) {
+			this.namespace = namespace;
+			this.name = name;
+			this.resourceId = resourceId;
+		}
+
+		private boolean matches(@Nonnull XmlPullReader reader, int index) {
+			if (resourceId != 0)
+				return reader.getAttributeNameResource(index) == resourceId;
+			if (name == null)
+				return true;
+			return name.equals(reader.getAttributeName(index)) && namespace.equals(reader.getAttributeNamespace(index));
+		}
+	}
+
+	/**
+	 * Recursive descent parser of query paths.
+	 */
+	private static class Parser {
+		private final String path;
+		private final Map<String, String> namespaces;
+		private int position;
+
+		private Parser(@Nonnull String path, @Nonnull Map<String, String> namespaces) {
+			this.path = path;
+			this.namespaces = namespaces;
+		}
+
+		@Nonnull
+		private XmlQuery parse() {
+			List<Step> steps = new ArrayList<>();
+			AttributeTest selectedAttribute = null;
+			if (!path.startsWith("/"))
+				throw error("Path must start with '/' or '//'");
+			while (position < path.length()) {
+				expect('/');
+				boolean descendant = accept('/');
+				if (accept('@')) {
+					if (descendant)
+						steps.add(new Step(true, null, new Predicate[0]));
+					selectedAttribute = parseAttributeTest();
+					break;
+				}
+				String name = parseName();
+				List<Predicate> predicates = new ArrayList<>();
+				while (accept('['))
+					predicates.add(parsePredicate());
+				steps.add(new Step(descendant, "*".equals(name) ? null : name, predicates.toArray(new Predicate[0])));
+			}
+			if (position < path.length())
+				throw error("Unexpected trailing characters");
+			if (steps.isEmpty())
+				throw error("Path has no element steps");
+			if (steps.size() > MAX_STEPS)
+				throw error("Path has more than " + MAX_STEPS + " steps");
+			return new XmlQuery(path, steps.toArray(new Step[0]), selectedAttribute);
+		}
+
+		@Nonnull
+		private Predicate parsePredicate() {
+			expect('@');
+			AttributeTest attribute = parseAttributeTest();
+			String value = null;
+			if (accept('=')) {
+				if (position >= path.length())
+					throw error("Expected quoted value");
+				char quote = path.charAt(position);
+				if (quote != '\'' && quote != '"')
+					throw error("Expected quoted value");
+				int end = path.indexOf(quote, position + 1);
+				if (end < 0)
+					throw error("Unterminated value");
+				value = path.substring(position + 1, end);
+				position = end + 1;
+			}
+			expect(']');
+			return new Predicate(attribute, value);
+		}
+
+		@Nonnull
+		private AttributeTest parseAttributeTest() {
+			String qualifiedName = parseName();
+			if (qualifiedName.equals("*"))
+				return new AttributeTest(null, null, 0);
+			if (qualifiedName.startsWith("0x")) {
+				try {
+					int resourceId = Integer.parseUnsignedInt(qualifiedName.substring(2), 16);
+					if (resourceId != 0)
+						return new AttributeTest(null, null, resourceId);
+				} catch (NumberFormatException ignored) {
+					// Handled below
+				}
+				throw error("Invalid resource id '" + qualifiedName + "'");
+			}
+			int separator = qualifiedName.indexOf(':');
+			if (separator < 0)
+				return new AttributeTest("", qualifiedName, 0);
+			String prefix = qualifiedName.substring(0, separator);
+			String namespace = namespaces.get(prefix);
+			if (namespace == null)
+				throw error("Unknown namespace prefix '" + prefix + "'");
+			return new AttributeTest(namespace, qualifiedName.substring(separator + 1), 0);
+		}
+
+		@Nonnull
+		private String parseName() {
+			int start = position;
+			while (position < path.length() && isNameChar(path.charAt(position)))
+				position++;
+			if (start == position)
+				throw error("Expected a name");
+			return path.substring(start, position);
+		}
+
+		private static boolean isNameChar(char c) {
+			return Character.isLetterOrDigit(c) || c == '_' || c == '-' || c == '.' || c == ':' || c == '*';
+		}
+
+		private boolean accept(char c) {
+			if (position < path.length() && path.charAt(position) == c) {
+				position++;
+				return true;
+			}
+			return false;
+		}
+
+		private void expect(char c) {
+			if (!accept(c))
+				throw error("Expected '" + c + "'");
+		}
+
+		@Nonnull
+		private IllegalArgumentException error(@Nonnull String message) {
+			return new IllegalArgumentException(message + " at index " + position + " of query: " + path);
+		}
+	}
+}
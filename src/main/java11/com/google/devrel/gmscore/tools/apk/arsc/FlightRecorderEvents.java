@@ -0,0 +1,152 @@
+package com.google.devrel.gmscore.tools.apk.arsc;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+import javax.annotation.Nullable;
+
+/**
+ * Emits Java Flight Recorder events for parsing, XML decoding, serialization and blaming.
+ *
+ * <p>This is the Java 11 version, packaged under {@code META-INF/versions/11} of the multi-release
+ * jar. Events are only allocated while a recording enables them.
+ */
+public final class FlightRecorderEvents {
+
+  private static final EventType PARSE = EventType.getEventType(ParseEvent.class);
+  private static final EventType DECODE = EventType.getEventType(DecodeEvent.class);
+  private static final EventType SERIALIZE = EventType.getEventType(SerializeEvent.class);
+  private static final EventType BLAME = EventType.getEventType(BlameEvent.class);
+
+  private FlightRecorderEvents() {}  // Prevent instantiation
+
+  @Nullable
+  public static Object beginParse() {
+    return PARSE.isEnabled() ? begin(new ParseEvent()) : null;
+  }
+
+  public static void commitParse(@Nullable Object token, int size, int chunkCount) {
+    if (token != null) {
+      ParseEvent event = (ParseEvent) token;
+      event.end();
+      if (event.shouldCommit()) {
+        event.size = size;
+        event.chunkCount = chunkCount;
+        event.commit();
+      }
+    }
+  }
+
+  @Nullable
+  public static Object beginDecode() {
+    return DECODE.isEnabled() ? begin(new DecodeEvent()) : null;
+  }
+
+  public static void commitDecode(@Nullable Object token, int size, int length) {
+    if (token != null) {
+      DecodeEvent event = (DecodeEvent) token;
+      event.end();
+      if (event.shouldCommit()) {
+        event.size = size;
+        event.length = length;
+        event.commit();
+      }
+    }
+  }
+
+  @Nullable
+  public static Object beginSerialize() {
+    return SERIALIZE.isEnabled() ? begin(new SerializeEvent()) : null;
+  }
+
+  public static void commitSerialize(@Nullable Object token, Chunk.Type type, int size,
+                                     boolean shrink) {
+    if (token != null) {
+      SerializeEvent event = (SerializeEvent) token;
+      event.end();
+      if (event.shouldCommit()) {
+        event.chunkType = type.name();
+        event.size = size;
+        event.shrink = shrink;
+        event.commit();
+      }
+    }
+  }
+
+  @Nullable
+  public static Object beginBlame() {
+    return BLAME.isEnabled() ? begin(new BlameEvent()) : null;
+  }
+
+  public static void commitBlame(@Nullable Object token, int resourceCount) {
+    if (token != null) {
+      BlameEvent event = (BlameEvent) token;
+      event.end();
+      if (event.shouldCommit()) {
+        event.resourceCount = resourceCount;
+        event.commit();
+      }
+    }
+  }
+
+  private static Event begin(Event event) {
+    event.begin();
+    return event;
+  }
+
+  @Name("binaryresources.Parse")
+  @Label("Resource File Parse")
+  @Category("Binary Resources")
+  @Description("Parsing of a binary resource file")
+  static final class ParseEvent extends Event {
+    @Label("Size")
+    @DataAmount
+    int size;
+
+    @Label("Chunk Count")
+    int chunkCount;
+  }
+
+  @Name("binaryresources.XmlDecode")
+  @Label("XML Decode")
+  @Category("Binary Resources")
+  @Description("Decoding of a binary XML document to text")
+  static final class DecodeEvent extends Event {
+    @Label("Size")
+    @DataAmount
+    int size;
+
+    @Label("Decoded Length")
+    int length;
+  }
+
+  @Name("binaryresources.Serialize")
+  @Label("Chunk Serialize")
+  @Category("Binary Resources")
+  @Description("Serialization of a top-level chunk")
+  static final class SerializeEvent extends Event {
+    @Label("Chunk Type")
+    String chunkType;
+
+    @Label("Size")
+    @DataAmount
+    int size;
+
+    @Label("Shrink")
+    boolean shrink;
+  }
+
+  @Name("binaryresources.Blame")
+  @Label("Resource Table Blame")
+  @Category("Binary Resources")
+  @Description("Generation of blame mappings for a resource table")
+  static final class BlameEvent extends Event {
+    @Label("Resource Count")
+    int resourceCount;
+  }
+}
@@ -0,0 +1,62 @@
+package software.coley.androidres;
+
+import com.google.common.hash.Hashing;
+import com.google.devrel.gmscore.tools.apk.arsc.BinaryResourceFile;
+import com.google.devrel.gmscore.tools.apk.arsc.BinaryResourceFileCache;
+import com.google.devrel.gmscore.tools.apk.arsc.Chunk;
+import com.google.devrel.gmscore.tools.apk.arsc.RetainedSizeEstimator;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for {@link BinaryResourceFileCache}.
+ */
+public class BinaryResourceFileCacheTests {
+	@ParameterizedTest
+	@MethodSource({"software.coley.androidres.ResourceTableDiffTests#getTableSamples",
+			"software.coley.androidres.ResourceTableDiffTests#getJankyTableSamples"})
+	void testCachedFileIsShared(Path path) throws IOException {
+		byte[] bytes = Files.readAllBytes(path);
+		BinaryResourceFileCache cache = new BinaryResourceFileCache(Long.MAX_VALUE);
+		BinaryResourceFile file = cache.get(bytes);
+		assertSame(file, cache.get(bytes.clone()), "Equal content should map to the same parsed file");
+		assertEquals(RetainedSizeEstimator.estimate(file), cache.getRetainedSize());
+		assertTrue(cache.getRetainedSize() > bytes.length, "Parsed model should retain more than its input");
+	}
+
+	@ParameterizedTest
+	@MethodSource({"software.coley.androidres.ResourceTableDiffTests#getTableSamples",
+			"software.coley.androidres.ResourceTableDiffTests#getJankyTableSamples"})
+	void testCallerMayReuseBytes(Path path) throws IOException {
+		byte[] bytes = Files.readAllBytes(path);
+		byte[] original = bytes.clone();
+		BinaryResourceFileCache cache = new BinaryResourceFileCache(Long.MAX_VALUE);
+		BinaryResourceFile file = cache.get(bytes);
+		Chunk root = file.getChunks().get(0);
+		byte[] rootBytes = root.getOriginalBytes();
+
+		// Overwriting the caller's array leaves the cached file and its key intact
+		Arrays.fill(bytes, (byte) 0);
+		assertArrayEquals(rootBytes, root.getOriginalBytes());
+		assertEquals(Hashing.sha256().hashBytes(rootBytes), root.getContentHash());
+		assertSame(file, cache.getIfPresent(Hashing.sha256().hashBytes(original)));
+		assertSame(file, cache.get(original));
+	}
+
+	@ParameterizedTest
+	@MethodSource({"software.coley.androidres.ResourceTableDiffTests#getTableSamples",
+			"software.coley.androidres.ResourceTableDiffTests#getJankyTableSamples"})
+	void testOversizedFileIsNotRetained(Path path) throws IOException {
+		byte[] bytes = Files.readAllBytes(path);
+		BinaryResourceFileCache cache = new BinaryResourceFileCache(bytes.length);
+		assertNotNull(cache.get(bytes));
+		assertEquals(0, cache.size());
+	}
+}
@@ -0,0 +1,150 @@
+package software.coley.androidres;
+
+import com.google.devrel.gmscore.tools.apk.arsc.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for archiving resource files into a {@link DirectoryChunkStore} with {@link ChunkArchive}.
+ */
+public class ChunkArchiveTests {
+	private static final String TABLE = "src/test/resources/normal/" +
+			"37320455848ce4a2f35aef85085105b442e61fe2e889f32a7edee32aed2a2d3f-normal.arsc";
+	private static final String XML = "src/test/resources/normal/" +
+			"37320455848ce4a2f35aef85085105b442e61fe2e889f32a7edee32aed2a2d3f-normal.xml";
+
+	@ParameterizedTest
+	@MethodSource("getSamples")
+	void testRoundTrip(Path path, @TempDir Path storeDir) throws IOException {
+		byte[] bytes = Files.readAllBytes(path);
+		assertArrayEquals(bytes, roundTrip(bytes, storeDir));
+	}
+
+	@Test
+	void testBlobsSharedAcrossFiles(@TempDir Path storeDir) throws IOException {
+		byte[] bytes = Files.readAllBytes(Paths.get(TABLE));
+		ChunkArchive archive = new ChunkArchive(new DirectoryChunkStore(storeDir));
+		archive.archive(new BinaryResourceFile(bytes));
+		int blobCount = countBlobs(storeDir);
+
+		// Archiving the same file again stores nothing new
+		archive.archive(new BinaryResourceFile(bytes.clone()));
+		assertEquals(blobCount, countBlobs(storeDir));
+
+		// Changing a value in the last type chunk only stores that chunk again
+		byte[] changed = bytes.clone();
+		changed[changed.length - 1] ^= 1;
+		ChunkManifest manifest = archive.archive(new BinaryResourceFile(changed));
+		assertEquals(blobCount + 1, countBlobs(storeDir));
+		assertArrayEquals(changed, archive.restoreBytes(manifest));
+	}
+
+	@Test
+	void testMissingBlob(@TempDir Path storeDir) throws IOException {
+		DirectoryChunkStore store = new DirectoryChunkStore(storeDir);
+		ChunkArchive archive = new ChunkArchive(store);
+		ChunkManifest manifest = archive.archive(new BinaryResourceFile(Files.readAllBytes(Paths.get(XML))));
+		Files.delete(blobPath(store, manifest));
+		IOException ex = assertThrows(IOException.class, () -> archive.restoreBytes(manifest));
+		assertTrue(ex.getMessage().contains("missing"), ex.getMessage());
+	}
+
+	@Test
+	void testCorruptBlob(@TempDir Path storeDir) throws IOException {
+		DirectoryChunkStore store = new DirectoryChunkStore(storeDir);
+		ChunkArchive archive = new ChunkArchive(store);
+		ChunkManifest manifest = archive.archive(new BinaryResourceFile(Files.readAllBytes(Paths.get(XML))));
+		Path blob = blobPath(store, manifest);
+		byte[] blobBytes = Files.readAllBytes(blob);
+		blobBytes[0] ^= 1;
+		Files.write(blob, blobBytes);
+		IOException ex = assertThrows(IOException.class, () -> archive.restoreBytes(manifest));
+		assertTrue(ex.getMessage().contains("corrupt"), ex.getMessage());
+	}
+
+	@Test
+	void testNegativeChunkSize(@TempDir Path storeDir) throws IOException {
+		byte[] bytes = Files.readAllBytes(Paths.get(XML));
+		XmlChunk xml = (XmlChunk) new BinaryResourceFile(bytes).getChunks().get(0);
+		XmlResourceMapChunk resourceMap = xml.getResourceMap();
+		assertNotNull(resourceMap);
+		ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).putInt(resourceMap.getOffset() + 4, -16);
+		assertArrayEquals(bytes, roundTrip(bytes, storeDir));
+	}
+
+	@Test
+	void testHeaderLargerThanFile(@TempDir Path storeDir) throws IOException {
+		byte[] bytes = Files.readAllBytes(Paths.get(XML));
+		ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).putShort(2, (short) 0x7000);
+		assertArrayEquals(bytes, roundTrip(bytes, storeDir));
+	}
+
+	@Test
+	void testInvalidManifest(@TempDir Path storeDir) throws IOException {
+		ChunkArchive archive = new ChunkArchive(new DirectoryChunkStore(storeDir));
+		byte[] bytes = archive.archive(new BinaryResourceFile(Files.readAllBytes(Paths.get(XML)))).toByteArray();
+		int segmentCount = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).getInt(8);
+		assertTrue(segmentCount > 1);
+
+		// Segment lengths follow the 12 byte header, each before a 32 byte hash
+		byte[] negative = bytes.clone();
+		ByteBuffer.wrap(negative).order(ByteOrder.LITTLE_ENDIAN).putInt(12, -1);
+		assertThrows(IllegalArgumentException.class, () -> ChunkManifest.fromByteArray(negative));
+
+		byte[] overflowing = bytes.clone();
+		ByteBuffer buffer = ByteBuffer.wrap(overflowing).order(ByteOrder.LITTLE_ENDIAN);
+		buffer.putInt(12, Integer.MAX_VALUE);
+		buffer.putInt(12 + 36, Integer.MAX_VALUE);
+		assertThrows(IllegalArgumentException.class, () -> ChunkManifest.fromByteArray(overflowing));
+
+		assertThrows(IllegalArgumentException.class,
+				() -> ChunkManifest.fromByteArray(Arrays.copyOf(bytes, bytes.length - 1)));
+	}
+
+	private static byte[] roundTrip(byte[] bytes, Path storeDir) throws IOException {
+		ChunkArchive archive = new ChunkArchive(new DirectoryChunkStore(storeDir));
+		ChunkManifest manifest = archive.archive(new BinaryResourceFile(bytes));
+		manifest = ChunkManifest.fromByteArray(manifest.toByteArray());
+		assertEquals(bytes.length, manifest.getSize());
+		return archive.restoreBytes(manifest);
+	}
+
+	private static Path blobPath(DirectoryChunkStore store, ChunkManifest manifest) {
+		String name = manifest.getSegments().get(0).hash().toString();
+		return store.getRoot().resolve(name.substring(0, 2)).resolve(name);
+	}
+
+	private static int countBlobs(Path storeDir) throws IOException {
+		try (Stream<Path> files = Files.walk(storeDir)) {
+			return (int) files.filter(Files::isRegularFile).count();
+		}
+	}
+
+	public static Stream<Arguments> getSamples() throws IOException {
+		return Stream.of("src/test/resources/normal", "src/test/resources/janky")
+				.flatMap(dir -> {
+					try {
+						return Files.walk(Paths.get(dir));
+					} catch (IOException ex) {
+						throw new IllegalStateException(ex);
+					}
+				})
+				.filter(Files::isRegularFile)
+				.filter(p -> p.toString().endsWith(".arsc") || p.toString().endsWith(".xml"))
+				.map(p -> () -> new Path[]{p});
+	}
+}
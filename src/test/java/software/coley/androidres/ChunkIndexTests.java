@@ -0,0 +1,94 @@
+package software.coley.androidres;
+
+import com.google.devrel.gmscore.tools.apk.arsc.*;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for {@link ChunkIndex} header-only scans.
+ */
+public class ChunkIndexTests {
+	@ParameterizedTest
+	@MethodSource("getSamples")
+	void testIndexMatchesModel(Path path) throws IOException {
+		byte[] bytes = Files.readAllBytes(path);
+		assertIndexMatches(new BinaryResourceFile(bytes), ChunkIndex.scan(bytes));
+	}
+
+	@ParameterizedTest
+	@MethodSource("getSamples")
+	void testPositionedBufferMatchesModel(Path path) throws IOException {
+		byte[] bytes = Files.readAllBytes(path);
+		byte[] padded = new byte[bytes.length + 24];
+		System.arraycopy(bytes, 0, padded, 16, bytes.length);
+		ByteBuffer buffer = ByteBuffer.wrap(padded, 16, bytes.length);
+		assertIndexMatches(new BinaryResourceFile(buffer, ParseOptions.DEFAULT), ChunkIndex.scan(buffer));
+		assertEquals(16, buffer.position());
+	}
+
+	private static void assertIndexMatches(BinaryResourceFile file, ChunkIndex index) {
+		List<Chunk> chunks = new ArrayList<>();
+		for (Chunk chunk : file.getChunks())
+			flatten(chunk, chunks);
+		assertEquals(chunks.size(), index.size());
+		for (int i = 0; i < chunks.size(); i++) {
+			Chunk chunk = chunks.get(i);
+			assertEquals(chunk.getOffset(), index.getOffset(i));
+			assertEquals(chunk.getHeaderSize(), index.getHeaderSize(i));
+			assertEquals(chunk.getOriginalChunkSize(), index.getChunkSize(i));
+			int parent = index.getParent(i);
+			if (chunk.getParent() == null)
+				assertEquals(ChunkIndex.NO_PARENT, parent);
+			else
+				assertSame(chunk.getParent(), chunks.get(parent));
+
+			if (chunk instanceof PackageChunk) {
+				PackageChunk packageChunk = (PackageChunk) chunk;
+				assertEquals(packageChunk.getId(), index.getPackageId(i));
+				assertEquals(packageChunk.getPackageName(), index.getPackageName(i));
+			} else if (chunk instanceof TypeChunk) {
+				TypeChunk typeChunk = (TypeChunk) chunk;
+				assertEquals(Chunk.Type.TABLE_TYPE, index.getType(i));
+				assertEquals(typeChunk.getId(), index.getTypeId(i));
+				assertEquals(typeChunk.getTotalEntryCount(), index.getEntryCount(i));
+				assertEquals(typeChunk.getConfiguration(), index.getConfiguration(i));
+			} else if (chunk instanceof TypeSpecChunk) {
+				assertEquals(((TypeSpecChunk) chunk).getId(), index.getTypeId(i));
+			} else if (chunk instanceof XmlChunk) {
+				assertEquals(Chunk.Type.XML, index.getType(i));
+			}
+		}
+	}
+
+	private static void flatten(Chunk chunk, List<Chunk> chunks) {
+		chunks.add(chunk);
+		if (chunk instanceof ChunkWithChunks)
+			for (Chunk child : ((ChunkWithChunks) chunk).getChunks().values())
+				flatten(child, chunks);
+	}
+
+	public static Stream<Arguments> getSamples() throws IOException {
+		return Stream.of("src/test/resources/normal", "src/test/resources/janky")
+				.flatMap(dir -> {
+					try {
+						return Files.walk(Paths.get(dir));
+					} catch (IOException ex) {
+						throw new IllegalStateException(ex);
+					}
+				})
+				.filter(Files::isRegularFile)
+				.map(Arguments::of);
+	}
+}
@@ -0,0 +1,100 @@
+package software.coley.androidres;
+
+import com.google.devrel.gmscore.tools.apk.arsc.*;
+import org.junit.jupiter.api.Test;
+import software.coley.android.xml.XmlDecoder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for looking up the children of a {@link ChunkWithChunks}.
+ */
+public class ChunkWithChunksTests {
+	private static final String SAMPLE = "src/test/resources/normal/" +
+			"37320455848ce4a2f35aef85085105b442e61fe2e889f32a7edee32aed2a2d3f-normal";
+	private static final AndroidResourceProviderImpl ANDROID_BASE = AndroidResourceProviderImpl.getAndroidBase();
+
+	@Test
+	void testViewsAgree() throws IOException {
+		XmlChunk xml = readXml();
+		Map<Integer, Chunk> chunks = xml.getChunks();
+		List<Chunk> list = xml.getChunkList();
+		assertTrue(xml.getChunkCount() > 2);
+		assertEquals(xml.getChunkCount(), chunks.size());
+		assertEquals(xml.getChunkCount(), list.size());
+
+		int index = 0;
+		int previousOffset = -1;
+		for (Map.Entry<Integer, Chunk> entry : chunks.entrySet()) {
+			int offset = entry.getKey();
+			assertTrue(offset > previousOffset, "Chunks should be in offset order");
+			assertEquals(offset, entry.getValue().getOffset());
+			assertSame(entry.getValue(), list.get(index++));
+			assertSame(entry.getValue(), xml.getChunkAt(offset));
+			assertSame(entry.getValue(), chunks.get(offset));
+			assertNull(xml.getChunkAt(offset + 1));
+			previousOffset = offset;
+		}
+		assertNull(chunks.get("0"));
+		assertThrows(IndexOutOfBoundsException.class, () -> list.get(-1));
+		assertThrows(IndexOutOfBoundsException.class, () -> list.get(xml.getChunkCount()));
+	}
+
+	@Test
+	void testViewsAreReadOnly() throws IOException {
+		XmlChunk xml = readXml();
+		Chunk first = xml.getChunkList().get(0);
+		assertThrows(UnsupportedOperationException.class, () -> xml.getChunks().put(0, first));
+		assertThrows(UnsupportedOperationException.class, () -> xml.getChunks().remove(first.getOffset()));
+		assertThrows(UnsupportedOperationException.class, () -> xml.getChunkList().add(first));
+		assertThrows(UnsupportedOperationException.class, () -> xml.getChunkList().remove(0));
+	}
+
+	@Test
+	void testVisitListMatchesMap() throws IOException {
+		XmlChunk xml = readXml();
+		XmlDecoder fromList = new XmlDecoder(ANDROID_BASE, null);
+		XmlDecoder.visitChunks(xml.getChunkList(), fromList);
+		XmlDecoder fromMap = new XmlDecoder(ANDROID_BASE, null);
+		XmlDecoder.visitChunks(xml.getChunks(), fromMap);
+		assertFalse(fromList.getReconstructedXml().isEmpty());
+		assertEquals(fromMap.getReconstructedXml(), fromList.getReconstructedXml());
+	}
+
+	@Test
+	void testLookupAfterRemoval() throws IOException {
+		BinaryResourceFile file = new BinaryResourceFile(Files.readAllBytes(Paths.get(SAMPLE + ".arsc")));
+		PackageChunk packageChunk = ((ResourceTableChunk) file.getChunks().get(0)).getPackages().iterator().next();
+		List<Chunk> before = new ArrayList<>(packageChunk.getChunkList());
+		int removedIndex = before.size() / 2;
+		while (!(before.get(removedIndex) instanceof TypeChunk))
+			removedIndex++;
+		TypeChunk removed = (TypeChunk) before.get(removedIndex);
+
+		assertTrue(packageChunk.removeTypeChunk(removed));
+		assertFalse(packageChunk.removeTypeChunk(removed));
+		assertEquals(before.size() - 1, packageChunk.getChunkCount());
+		assertNull(packageChunk.getChunkAt(removed.getOffset()));
+		assertFalse(packageChunk.getChunks().containsKey(removed.getOffset()));
+		assertFalse(packageChunk.getChunkList().contains(removed));
+		for (Chunk chunk : before) {
+			if (chunk != removed)
+				assertSame(chunk, packageChunk.getChunkAt(chunk.getOffset()));
+		}
+
+		before.remove(removedIndex);
+		assertEquals(before, packageChunk.getChunkList());
+		assertEquals(before, new ArrayList<>(packageChunk.getChunks().values()));
+	}
+
+	private static XmlChunk readXml() throws IOException {
+		return (XmlChunk) new BinaryResourceFile(Files.readAllBytes(Paths.get(SAMPLE + ".xml"))).getChunks().get(0);
+	}
+}
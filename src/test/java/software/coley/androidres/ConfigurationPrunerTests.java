@@ -0,0 +1,140 @@
+package software.coley.androidres;
+
+import com.google.devrel.gmscore.tools.apk.arsc.*;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for {@link ConfigurationPruner}.
+ */
+public class ConfigurationPrunerTests {
+	private static final String TABLE = "src/test/resources/normal/" +
+			"37320455848ce4a2f35aef85085105b442e61fe2e889f32a7edee32aed2a2d3f-normal.arsc";
+
+	@Test
+	void testDistinctEntriesKept() throws IOException {
+		ResourceTableChunk table = readTable();
+		byte[] original = table.toByteArray();
+		assertEquals(0, ConfigurationPruner.prune(table));
+		assertArrayEquals(original, table.toByteArray());
+	}
+
+	@Test
+	void testRedundantEntriesPruned() throws IOException {
+		ResourceTableChunk table = readTable();
+		PackageChunk packageChunk = table.getPackages().iterator().next();
+		TypeChunk redundant = null;
+		int overridden = 0;
+		for (TypeChunk type : packageChunk.getTypeChunks()) {
+			if (type.getConfiguration().isDefault() || type.getEntries().isEmpty())
+				continue;
+			TypeChunk defaultType = getDefaultType(packageChunk, type.getId());
+			if (defaultType == null || !defaultType.getEntries().keySet().containsAll(type.getEntries().keySet()))
+				continue;
+			// Give every configuration the same value as the default configuration for each entry of this one.
+			redundant = type;
+			for (int index : new ArrayList<>(type.getEntries().keySet())) {
+				for (TypeChunk other : packageChunk.getTypeChunks(type.getId())) {
+					if (other != defaultType && other.getEntry(index) != null) {
+						other.overrideEntry(index, defaultType.getEntry(index));
+						overridden++;
+					}
+				}
+			}
+			break;
+		}
+		assertNotNull(redundant, "No non-default configuration to make redundant");
+		List<TypeChunk> emptied = new ArrayList<>();
+		for (TypeChunk type : packageChunk.getTypeChunks(redundant.getId()))
+			if (!type.getConfiguration().isDefault()
+					&& redundant.getEntries().keySet().containsAll(type.getEntries().keySet()))
+				emptied.add(type);
+		int typeCount = packageChunk.getTypeChunks().size();
+
+		assertEquals(overridden, ConfigurationPruner.prune(table));
+		assertEquals(typeCount - emptied.size(), packageChunk.getTypeChunks().size());
+		assertFalse(packageChunk.getTypeChunks(redundant.getId()).contains(redundant));
+		for (TypeChunk type : packageChunk.getTypeChunks(redundant.getId()))
+			if (!type.getConfiguration().isDefault())
+				for (int index : redundant.getEntries().keySet())
+					assertNull(type.getEntry(index));
+
+		// The pruned table still parses, and the default configuration keeps every entry.
+		ResourceTableChunk pruned = (ResourceTableChunk) new BinaryResourceFile(table.toByteArray()).getChunks().get(0);
+		PackageChunk prunedPackage = pruned.getPackages().iterator().next();
+		assertEquals(packageChunk.getTypeChunks().size(), prunedPackage.getTypeChunks().size());
+		TypeChunk defaultType = getDefaultType(packageChunk, redundant.getId());
+		TypeChunk prunedDefaultType = getDefaultType(prunedPackage, redundant.getId());
+		assertNotNull(prunedDefaultType);
+		for (Map.Entry<Integer, TypeChunk.Entry> entry : defaultType.getEntries().entrySet())
+			assertArrayEquals(entry.getValue().toByteArray(), prunedDefaultType.getEntry(entry.getKey()).toByteArray());
+	}
+
+	@Test
+	void testFilteredTypesKept() throws IOException {
+		// Pick a type with several non-default configurations and filter out one of them
+		PackageChunk unfiltered = readTable().getPackages().iterator().next();
+		BinaryResourceConfiguration hidden = null;
+		int typeId = -1;
+		for (TypeChunk type : unfiltered.getTypeChunks()) {
+			if (type.getConfiguration().isDefault() || getDefaultType(unfiltered, type.getId()) == null
+					|| unfiltered.getTypeChunks(type.getId()).size() < 3)
+				continue;
+			hidden = type.getConfiguration();
+			typeId = type.getId();
+			break;
+		}
+		assertNotNull(hidden, "No type with several non-default configurations");
+		BinaryResourceConfiguration rejected = hidden;
+		ParseFilter filter = new ParseFilter() {
+			@Override
+			public boolean acceptConfiguration(BinaryResourceConfiguration configuration) {
+				return !configuration.equals(rejected);
+			}
+		};
+		byte[] bytes = Files.readAllBytes(Paths.get(TABLE));
+		ResourceTableChunk table = (ResourceTableChunk) new BinaryResourceFile(bytes,
+				ParseOptions.DEFAULT.withFilter(filter)).getChunks().get(0);
+		PackageChunk packageChunk = table.getPackages().iterator().next();
+
+		// The remaining configurations all match the default one, but the filtered one might not
+		TypeChunk defaultType = getDefaultType(packageChunk, typeId);
+		int redundant = 0;
+		for (TypeChunk type : packageChunk.getTypeChunks(typeId)) {
+			if (type == defaultType)
+				continue;
+			for (int index : new ArrayList<>(type.getEntries().keySet())) {
+				if (defaultType.getEntry(index) != null) {
+					type.overrideEntry(index, defaultType.getEntry(index));
+					redundant++;
+				}
+			}
+		}
+		assertTrue(redundant > 0);
+		int typeCount = packageChunk.getTypeChunks().size();
+		byte[] original = table.toByteArray();
+
+		assertEquals(0, ConfigurationPruner.prune(table));
+		assertEquals(typeCount, packageChunk.getTypeChunks().size());
+		assertArrayEquals(original, table.toByteArray());
+	}
+
+	private static TypeChunk getDefaultType(PackageChunk packageChunk, int id) {
+		for (TypeChunk type : packageChunk.getTypeChunks(id))
+			if (type.getConfiguration().isDefault())
+				return type;
+		return null;
+	}
+
+	private static ResourceTableChunk readTable() throws IOException {
+		return (ResourceTableChunk) new BinaryResourceFile(Files.readAllBytes(Paths.get(TABLE))).getChunks().get(0);
+	}
+}
@@ -0,0 +1,72 @@
+package software.coley.androidres;
+
+import com.google.devrel.gmscore.tools.apk.arsc.*;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for sharing the payloads of identical {@link TypeChunk.Entry entries} when shrinking.
+ */
+public class EntryDeduplicationTests {
+	@Test
+	void testDuplicateEntriesShared() throws IOException {
+		byte[] bytes = Files.readAllBytes(Paths.get("src/test/resources/normal/" +
+				"37320455848ce4a2f35aef85085105b442e61fe2e889f32a7edee32aed2a2d3f-normal.arsc"));
+		collapseKeys(bytes);
+		ResourceTableChunk table = (ResourceTableChunk) new BinaryResourceFile(bytes).getChunks().get(0);
+		byte[] shrunk = table.toByteArray(true);
+		assertTrue(shrunk.length < table.toByteArray(false).length);
+
+		ResourceTableChunk shrunkTable = (ResourceTableChunk) new BinaryResourceFile(shrunk).getChunks().get(0);
+		List<TypeChunk> types = getTypeChunks(table);
+		List<TypeChunk> shrunkTypes = getTypeChunks(shrunkTable);
+		assertEquals(types.size(), shrunkTypes.size());
+		for (int i = 0; i < types.size(); i++) {
+			Map<Integer, TypeChunk.Entry> entries = types.get(i).getEntries();
+			Map<Integer, TypeChunk.Entry> shrunkEntries = shrunkTypes.get(i).getEntries();
+			assertEquals(entries.keySet(), shrunkEntries.keySet());
+			for (Map.Entry<Integer, TypeChunk.Entry> entry : entries.entrySet())
+				assertArrayEquals(entry.getValue().toByteArray(), shrunkEntries.get(entry.getKey()).toByteArray());
+		}
+	}
+
+	/**
+	 * Points the key of every entry at the first key, like tables whose resource names were collapsed.
+	 * Entries of a type which have the same value are then identical.
+	 */
+	private static void collapseKeys(byte[] bytes) throws IOException {
+		ResourceTableIndex index = new ResourceTableIndex(
+				ByteBuffer.wrap(ResourceTableIndex.build(new BinaryResourceFile(bytes))), bytes);
+		ByteBuffer buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+		ResourceTableChunk table = (ResourceTableChunk) new BinaryResourceFile(bytes).getChunks().get(0);
+		for (PackageChunk packageChunk : table.getPackages()) {
+			for (TypeChunk type : packageChunk.getTypeChunks()) {
+				for (int entry : type.getEntries().keySet()) {
+					int id = packageChunk.getId() << 24 | type.getId() << 16 | entry;
+					for (int slot = 0; slot < index.getSlotCount(id); slot++) {
+						int offset = index.getEntryOffset(id, slot);
+						if (offset != ResourceTableIndex.NO_ENTRY)
+							buffer.putInt(offset + 4, 0);
+					}
+				}
+			}
+		}
+	}
+
+	private static List<TypeChunk> getTypeChunks(ResourceTableChunk table) {
+		List<TypeChunk> types = new ArrayList<>();
+		for (PackageChunk packageChunk : table.getPackages())
+			types.addAll(packageChunk.getTypeChunks());
+		return types;
+	}
+}
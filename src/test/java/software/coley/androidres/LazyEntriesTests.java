@@ -0,0 +1,84 @@
+package software.coley.androidres;
+
+import com.google.devrel.gmscore.tools.apk.arsc.*;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for decoding {@link TypeChunk} entries on demand with {@link ParseOptions#withLazyEntries(boolean)}.
+ */
+public class LazyEntriesTests {
+	@ParameterizedTest
+	@MethodSource({"software.coley.androidres.ResourceTableDiffTests#getTableSamples",
+			"software.coley.androidres.ResourceTableDiffTests#getJankyTableSamples"})
+	void testLazyEntriesMatchEager(Path path) throws IOException {
+		byte[] bytes = Files.readAllBytes(path);
+		List<TypeChunk> eager = getTypeChunks(new BinaryResourceFile(bytes));
+		List<TypeChunk> lazy = getTypeChunks(new BinaryResourceFile(bytes, ParseOptions.DEFAULT.withLazyEntries(true)));
+		assertEquals(eager.size(), lazy.size());
+		for (int i = 0; i < eager.size(); i++) {
+			TypeChunk eagerType = eager.get(i);
+			TypeChunk lazyType = lazy.get(i);
+			Map<Integer, TypeChunk.Entry> entries = eagerType.getEntries();
+			for (int j = -1; j <= eagerType.getTotalEntryCount(); j++) {
+				TypeChunk.Entry expected = entries.get(j);
+				TypeChunk.Entry actual = lazyType.getEntry(j);
+				if (expected == null) {
+					assertNull(actual);
+				} else {
+					assertNotNull(actual);
+					assertEquals(expected.keyIndex(), actual.keyIndex());
+					assertEquals(expected.value(), actual.value());
+					assertEquals(expected.values(), actual.values());
+				}
+			}
+			assertEquals(entries.keySet(), lazyType.getEntries().keySet());
+		}
+	}
+
+	@ParameterizedTest
+	@MethodSource({"software.coley.androidres.ResourceTableDiffTests#getTableSamples",
+			"software.coley.androidres.ResourceTableDiffTests#getJankyTableSamples"})
+	void testLazyEntriesReadConcurrently(Path path) throws Exception {
+		byte[] bytes = Files.readAllBytes(path);
+		List<TypeChunk> eager = getTypeChunks(new BinaryResourceFile(bytes));
+		List<TypeChunk> lazy = getTypeChunks(new BinaryResourceFile(bytes, ParseOptions.DEFAULT.withLazyEntries(true)));
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<List<Set<Integer>>>> results = new ArrayList<>();
+			for (int i = 0; i < 4; i++) {
+				results.add(executor.submit(() -> lazy.stream()
+						.map(type -> type.getEntries().keySet())
+						.collect(Collectors.toList())));
+			}
+			List<Set<Integer>> expected = eager.stream()
+					.map(type -> type.getEntries().keySet())
+					.collect(Collectors.toList());
+			for (Future<List<Set<Integer>>> result : results)
+				assertEquals(expected, result.get());
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	private static List<TypeChunk> getTypeChunks(BinaryResourceFile file) {
+		ResourceTableChunk table = (ResourceTableChunk) file.getChunks().get(0);
+		return table.getPackages().stream()
+				.flatMap(packageChunk -> packageChunk.getTypeChunks().stream())
+				.collect(Collectors.toList());
+	}
+}
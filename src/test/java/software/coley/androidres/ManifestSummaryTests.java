@@ -0,0 +1,242 @@
+package software.coley.androidres;
+
+import com.google.devrel.gmscore.tools.apk.arsc.BinaryResourceFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.xml.sax.InputSource;
+import software.coley.android.xml.ManifestSummary;
+import software.coley.android.xml.XmlDecoder;
+
+import javax.annotation.Nonnull;
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.ByteArrayOutputStream;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for {@link ManifestSummary}, compared against manifests decoded to text with {@link XmlDecoder}.
+ */
+public class ManifestSummaryTests {
+	private static final String ANDROID_NS = "http://schemas.android.com/apk/res/android";
+	private static final String SAMPLE = "37320455848ce4a2f35aef85085105b442e61fe2e889f32a7edee32aed2a2d3f";
+
+	@ParameterizedTest
+	@MethodSource("software.coley.androidres.XmlDecodingTests#getNormalSamples")
+	void testSummaryMatchesDecodedText(Path path) throws Exception {
+		byte[] bytes = Files.readAllBytes(path);
+		ManifestSummary summary = ManifestSummary.read(bytes);
+
+		String xml = XmlDecoder.decode(new BinaryResourceFile(bytes), AndroidResourceProviderImpl.getAndroidBase(), null);
+		DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+		factory.setNamespaceAware(true);
+		Document document = factory.newDocumentBuilder().parse(new InputSource(new StringReader(xml)));
+		Element manifest = document.getDocumentElement();
+		assertEquals(manifest.getAttribute("package"), summary.getPackageName());
+		assertEquals(manifest.getAttributeNS(ANDROID_NS, "versionName"), summary.getVersionName());
+
+		List<String> permissions = new ArrayList<>();
+		for (Element child : getChildElements(manifest)) {
+			if (child.getNodeName().startsWith("uses-permission"))
+				permissions.add(child.getAttributeNS(ANDROID_NS, "name"));
+		}
+		assertEquals(permissions, summary.getPermissions());
+
+		// Only /manifest/application/* declares components
+		List<Element> componentElements = new ArrayList<>();
+		for (Element child : getChildElements(manifest)) {
+			if (!child.getNodeName().equals("application"))
+				continue;
+			for (Element element : getChildElements(child)) {
+				for (ManifestSummary.ComponentKind kind : ManifestSummary.ComponentKind.values())
+					if (kind.getElementName().equals(element.getNodeName()))
+						componentElements.add(element);
+			}
+		}
+		List<ManifestSummary.Component> components = summary.getComponents();
+		assertEquals(componentElements.size(), components.size());
+		for (ManifestSummary.Component component : components) {
+			boolean found = false;
+			for (int i = 0; i < componentElements.size() && !found; i++) {
+				Element element = componentElements.get(i);
+				if (!element.getNodeName().equals(component.getKind().getElementName()))
+					continue;
+				String exported = element.getAttributeNS(ANDROID_NS, "exported");
+				found = element.getAttributeNS(ANDROID_NS, "name").equals(component.getName())
+						&& exported.equals(component.getExported() == null ? "" : component.getExported().toString())
+						&& element.getElementsByTagName("intent-filter").getLength() == component.getIntentFilters().size();
+			}
+			assertTrue(found, "Missing component: " + component);
+		}
+	}
+
+	@Test
+	void testTamperedManifestHasSameSummary() throws Exception {
+		ManifestSummary normal = ManifestSummary.read(Files.readAllBytes(Paths.get("src/test/resources/normal/" + SAMPLE + "-normal.xml")));
+		ManifestSummary janky = ManifestSummary.read(Files.readAllBytes(Paths.get("src/test/resources/janky/" + SAMPLE + ".xml")));
+		assertEquals(normal, janky);
+		assertEquals("dev.cubxity.apps.streamit", normal.getPackageName());
+		assertEquals(28, normal.getMinSdkVersion());
+		assertEquals(29, normal.getTargetSdkVersion());
+		assertTrue(normal.getPermissions().contains("android.permission.INTERNET"));
+	}
+
+	@Test
+	void testQueriesAreNotDeclarations() {
+		// <manifest package="com.example">
+		//   <uses-permission name="com.example.REAL"/>
+		//   <queries>
+		//     <provider name="com.other.Provider"/>
+		//     <intent><action name="android.intent.action.VIEW"/></intent>
+		//     <uses-permission name="com.example.FAKE"/>
+		//   </queries>
+		//   <application>
+		//     <activity name="com.example.Main">
+		//       <intent-filter><action name="android.intent.action.MAIN"/></intent-filter>
+		//     </activity>
+		//   </application>
+		// </manifest>
+		SyntheticXml xml = new SyntheticXml();
+		xml.start("manifest", "package", "com.example");
+		xml.start("uses-permission", "name", "com.example.REAL").end();
+		xml.start("queries");
+		xml.start("provider", "name", "com.other.Provider").end();
+		xml.start("intent").start("action", "name", "android.intent.action.VIEW").end().end();
+		xml.start("uses-permission", "name", "com.example.FAKE").end();
+		xml.end();
+		xml.start("application");
+		xml.start("activity", "name", "com.example.Main");
+		xml.start("intent-filter").start("action", "name", "android.intent.action.MAIN").end().end();
+		xml.end();
+		xml.end();
+		xml.end();
+
+		ManifestSummary summary = ManifestSummary.read(xml.toByteArray());
+		assertEquals("com.example", summary.getPackageName());
+		assertEquals(Collections.singletonList("com.example.REAL"), summary.getPermissions());
+		assertEquals(1, summary.getComponents().size());
+		ManifestSummary.Component activity = summary.getComponents().get(0);
+		assertEquals(ManifestSummary.ComponentKind.ACTIVITY, activity.getKind());
+		assertEquals("com.example.Main", activity.getName());
+		assertEquals(1, activity.getIntentFilters().size());
+		assertEquals(Collections.singletonList("android.intent.action.MAIN"), activity.getIntentFilters().get(0).getActions());
+	}
+
+	@Nonnull
+	private static List<Element> getChildElements(@Nonnull Element parent) {
+		List<Element> elements = new ArrayList<>();
+		NodeList children = parent.getChildNodes();
+		for (int i = 0; i < children.getLength(); i++) {
+			Node child = children.item(i);
+			if (child instanceof Element)
+				elements.add((Element) child);
+		}
+		return elements;
+	}
+
+	/**
+	 * Minimal binary XML writer, for manifests no sample covers.
+	 * Every attribute is an android attribute string, and {@code package} is written without a resource id.
+	 */
+	private static class SyntheticXml {
+		private static final Map<String, Integer> ATTRIBUTE_IDS = Collections.singletonMap("name", 0x01010003);
+		private final List<String> strings = new ArrayList<>();
+		private final Deque<String> open = new ArrayDeque<>();
+		private final ByteArrayOutputStream elements = new ByteArrayOutputStream();
+
+		private SyntheticXml() {
+			// Attributes with resource ids must be first in the pool, in resource map order
+			strings.addAll(ATTRIBUTE_IDS.keySet());
+		}
+
+		@Nonnull
+		private SyntheticXml start(@Nonnull String name, @Nonnull String... attributes) {
+			int count = attributes.length / 2;
+			ByteBuffer buffer = buffer(36 + 20 * count);
+			buffer.putShort((short) 0x0102).putShort((short) 16).putInt(buffer.capacity());
+			buffer.putInt(1).putInt(-1); // Line, comment
+			buffer.putInt(-1).putInt(string(name));
+			buffer.putShort((short) 20).putShort((short) 20).putShort((short) count);
+			buffer.putShort((short) 0).putShort((short) 0).putShort((short) 0); // Id, class, style
+			for (int i = 0; i < count; i++) {
+				int value = string(attributes[i * 2 + 1]);
+				buffer.putInt(-1).putInt(string(attributes[i * 2])).putInt(value);
+				buffer.putShort((short) 8).put((byte) 0).put((byte) 0x03).putInt(value);
+			}
+			elements.write(buffer.array(), 0, buffer.capacity());
+			open.push(name);
+			return this;
+		}
+
+		@Nonnull
+		private SyntheticXml end() {
+			ByteBuffer buffer = buffer(24);
+			buffer.putShort((short) 0x0103).putShort((short) 16).putInt(buffer.capacity());
+			buffer.putInt(1).putInt(-1); // Line, comment
+			buffer.putInt(-1).putInt(string(open.pop()));
+			elements.write(buffer.array(), 0, buffer.capacity());
+			return this;
+		}
+
+		@Nonnull
+		private byte[] toByteArray() {
+			assertTrue(open.isEmpty());
+			ByteArrayOutputStream data = new ByteArrayOutputStream();
+			for (String string : strings) {
+				byte[] utf8 = string.getBytes(StandardCharsets.UTF_8);
+				data.write(string.length());
+				data.write(utf8.length);
+				data.write(utf8, 0, utf8.length);
+				data.write(0);
+			}
+			while (data.size() % 4 != 0)
+				data.write(0);
+			int stringsStart = 28 + 4 * strings.size();
+			ByteBuffer pool = buffer(stringsStart + data.size());
+			pool.putShort((short) 0x0001).putShort((short) 28).putInt(pool.capacity());
+			pool.putInt(strings.size()).putInt(0).putInt(0x100).putInt(stringsStart).putInt(0);
+			int offset = 0;
+			for (String string : strings) {
+				pool.putInt(offset);
+				offset += string.getBytes(StandardCharsets.UTF_8).length + 3;
+			}
+			pool.put(data.toByteArray());
+
+			ByteBuffer resourceMap = buffer(8 + 4 * ATTRIBUTE_IDS.size());
+			resourceMap.putShort((short) 0x0180).putShort((short) 8).putInt(resourceMap.capacity());
+			for (int id : ATTRIBUTE_IDS.values())
+				resourceMap.putInt(id);
+
+			ByteBuffer xml = buffer(8 + pool.capacity() + resourceMap.capacity() + elements.size());
+			xml.putShort((short) 0x0003).putShort((short) 8).putInt(xml.capacity());
+			xml.put(pool.array()).put(resourceMap.array()).put(elements.toByteArray());
+			return xml.array();
+		}
+
+		private int string(@Nonnull String string) {
+			int index = strings.indexOf(string);
+			if (index < 0) {
+				index = strings.size();
+				strings.add(string);
+			}
+			return index;
+		}
+
+		@Nonnull
+		private static ByteBuffer buffer(int size) {
+			return ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+		}
+	}
+}
@@ -0,0 +1,90 @@
+package software.coley.androidres;
+
+import com.google.devrel.gmscore.tools.apk.arsc.BinaryResourceFile;
+import com.google.devrel.gmscore.tools.apk.arsc.Chunk;
+import com.google.devrel.gmscore.tools.apk.arsc.ParseIssue;
+import com.google.devrel.gmscore.tools.apk.arsc.ParseMetrics;
+import com.google.devrel.gmscore.tools.apk.arsc.ParseOptions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.EnumMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for reporting recoveries from malformed input through {@link ParseOptions#getDiagnostics()},
+ * and for collecting {@link ParseMetrics}.
+ */
+public class ParseDiagnosticsTests {
+	private static final String TABLE = "37320455848ce4a2f35aef85085105b442e61fe2e889f32a7edee32aed2a2d3f";
+
+	@Test
+	void testRegularTableHasNoIssues() throws IOException {
+		Map<ParseIssue, Integer> issues = parse("src/test/resources/normal/" + TABLE + "-normal.arsc");
+		assertTrue(issues.isEmpty(), "Unexpected issues: " + issues);
+	}
+
+	@Test
+	void testTamperedTableIssuesAreReported() throws IOException {
+		Map<ParseIssue, Integer> issues = parse("src/test/resources/janky/" + TABLE + ".arsc");
+		assertTrue(issues.containsKey(ParseIssue.INVALID_ENTRY), "Missing skipped entries: " + issues);
+		assertTrue(issues.containsKey(ParseIssue.BOGUS_UNKNOWN_CHUNK), "Missing bogus chunk: " + issues);
+	}
+
+	@Test
+	void testMetricsCountChunksAndRecoveries() throws IOException {
+		ParseMetrics metrics = new ParseMetrics();
+		ParseOptions options = ParseOptions.DEFAULT.withListener(metrics);
+		byte[] normal = Files.readAllBytes(Paths.get("src/test/resources/normal/" + TABLE + "-normal.arsc"));
+		byte[] janky = Files.readAllBytes(Paths.get("src/test/resources/janky/" + TABLE + ".arsc"));
+		new BinaryResourceFile(normal, options);
+		new BinaryResourceFile(janky, options);
+
+		assertEquals(2, metrics.getFileCount());
+		assertEquals(normal.length + janky.length, metrics.getBytesProcessed());
+		assertEquals(2, metrics.getChunkCount(Chunk.Type.TABLE));
+		assertTrue(metrics.getChunkCount(Chunk.Type.TABLE_TYPE) > 0);
+		assertTrue(metrics.getChunkNanos(Chunk.Type.TABLE) >= metrics.getChunkNanos(Chunk.Type.TABLE_PACKAGE),
+				"Table timings should include their packages");
+		assertTrue(metrics.getSkippedEntryCount() > 0, metrics.toString());
+		assertEquals(1, metrics.getPatchedChunkCount(), metrics.toString());
+	}
+
+	@Test
+	void testDiagnosticsAndListenerBothReceiveIssues() throws IOException {
+		byte[] janky = Files.readAllBytes(Paths.get("src/test/resources/janky/" + TABLE + ".arsc"));
+		Map<ParseIssue, Integer> expected = parse("src/test/resources/janky/" + TABLE + ".arsc");
+
+		// Either order of installing the two keeps both
+		ParseMetrics listenerFirst = new ParseMetrics();
+		Map<ParseIssue, Integer> diagnosticsLast = new EnumMap<>(ParseIssue.class);
+		new BinaryResourceFile(janky, ParseOptions.DEFAULT.withListener(listenerFirst)
+				.withDiagnostics((issue, type, offset) -> diagnosticsLast.merge(issue, 1, Integer::sum)));
+
+		ParseMetrics listenerLast = new ParseMetrics();
+		Map<ParseIssue, Integer> diagnosticsFirst = new EnumMap<>(ParseIssue.class);
+		new BinaryResourceFile(janky, ParseOptions.DEFAULT
+				.withDiagnostics((issue, type, offset) -> diagnosticsFirst.merge(issue, 1, Integer::sum))
+				.withListener(listenerLast));
+
+		assertEquals(expected, diagnosticsFirst);
+		assertEquals(expected, diagnosticsLast);
+		for (ParseIssue issue : ParseIssue.values()) {
+			long count = expected.getOrDefault(issue, 0);
+			assertEquals(count, listenerFirst.getIssueCount(issue), issue.name());
+			assertEquals(count, listenerLast.getIssueCount(issue), issue.name());
+		}
+	}
+
+	private static Map<ParseIssue, Integer> parse(String path) throws IOException {
+		Map<ParseIssue, Integer> issues = new EnumMap<>(ParseIssue.class);
+		ParseOptions options = ParseOptions.DEFAULT
+				.withDiagnostics((issue, type, offset) -> issues.merge(issue, 1, Integer::sum));
+		new BinaryResourceFile(Files.readAllBytes(Paths.get(path)), options);
+		return issues;
+	}
+}
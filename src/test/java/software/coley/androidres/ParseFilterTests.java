@@ -0,0 +1,53 @@
+package software.coley.androidres;
+
+import com.google.devrel.gmscore.tools.apk.arsc.*;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for skipping chunks with {@link ParseOptions#withFilter(ParseFilter)}.
+ */
+public class ParseFilterTests {
+	private static final String TABLE = "src/test/resources/normal/37320455848ce4a2f35aef85085105b442e61fe2e889f32a7edee32aed2a2d3f-normal.arsc";
+
+	@Test
+	void testOnlyAcceptedTypesAreParsed() throws IOException {
+		byte[] bytes = Files.readAllBytes(Paths.get(TABLE));
+		ParseFilter filter = new ParseFilter() {
+			@Override
+			public boolean acceptType(int id, String name) {
+				return "string".equals(name);
+			}
+
+			@Override
+			public boolean acceptConfiguration(BinaryResourceConfiguration configuration) {
+				return configuration.isDefault();
+			}
+		};
+		BinaryResourceFile file = new BinaryResourceFile(bytes, ParseOptions.DEFAULT.withFilter(filter));
+		ResourceTableChunk table = (ResourceTableChunk) file.getChunks().get(0);
+		PackageChunk packageChunk = table.getPackages().iterator().next();
+		assertFalse(packageChunk.getTypeChunks().isEmpty());
+		for (TypeChunk type : packageChunk.getTypeChunks()) {
+			assertEquals("string", type.getTypeName());
+			assertTrue(type.getConfiguration().isDefault());
+		}
+
+		int filtered = 0;
+		for (Chunk chunk : packageChunk.getChunks().values()) {
+			if (chunk instanceof FilteredChunk) {
+				assertArrayEquals(chunk.getOriginalBytes(), chunk.toByteArray());
+				filtered++;
+			}
+		}
+		assertTrue(filtered > 0);
+
+		// Rejected chunks are written back unchanged, and so is everything else that was not modified
+		assertArrayEquals(bytes, file.toByteArray());
+	}
+}
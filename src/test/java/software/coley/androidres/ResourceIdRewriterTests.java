@@ -0,0 +1,116 @@
+package software.coley.androidres;
+
+import com.google.devrel.gmscore.tools.apk.arsc.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntUnaryOperator;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for {@link ResourceIdRewriter} in-place id renumbering.
+ */
+public class ResourceIdRewriterTests {
+	private static final String SAMPLE = "37320455848ce4a2f35aef85085105b442e61fe2e889f32a7edee32aed2a2d3f";
+	private static final IntUnaryOperator REBASE = ResourceIdRewriter.rebasePackage(0x7f, 0x80);
+
+	@ParameterizedTest
+	@MethodSource("software.coley.androidres.ChunkIndexTests#getSamples")
+	void testRoundTrip(Path path) throws IOException {
+		byte[] original = Files.readAllBytes(path);
+		byte[] bytes = original.clone();
+		int rewritten = ResourceIdRewriter.rewrite(bytes, REBASE);
+		assertEquals(rewritten, ResourceIdRewriter.rewrite(bytes, ResourceIdRewriter.rebasePackage(0x80, 0x7f)));
+		assertArrayEquals(original, bytes);
+	}
+
+	@Test
+	void testTableMatchesModel() throws IOException {
+		byte[] original = Files.readAllBytes(Paths.get("src/test/resources/normal/" + SAMPLE + "-normal.arsc"));
+		byte[] bytes = original.clone();
+		assertTrue(ResourceIdRewriter.rewrite(bytes, REBASE) > 0);
+
+		List<TypeChunk> expectedTypes = new ArrayList<>();
+		List<TypeChunk> actualTypes = new ArrayList<>();
+		collect(new BinaryResourceFile(original).getChunks(), TypeChunk.class, expectedTypes);
+		collect(new BinaryResourceFile(bytes).getChunks(), TypeChunk.class, actualTypes);
+		assertEquals(expectedTypes.size(), actualTypes.size());
+		for (int i = 0; i < expectedTypes.size(); i++) {
+			assertEquals(0x80, actualTypes.get(i).getPackageChunk().getId());
+			Map<Integer, TypeChunk.Entry> expectedEntries = expectedTypes.get(i).getEntries();
+			Map<Integer, TypeChunk.Entry> actualEntries = actualTypes.get(i).getEntries();
+			assertEquals(expectedEntries.keySet(), actualEntries.keySet());
+			for (Map.Entry<Integer, TypeChunk.Entry> entry : expectedEntries.entrySet()) {
+				TypeChunk.Entry expected = entry.getValue();
+				TypeChunk.Entry actual = actualEntries.get(entry.getKey());
+				if (expected.isComplex()) {
+					assertEquals(rebase(expected.parentEntry()), actual.parentEntry());
+					assertEquals(expected.values().size(), actual.values().size());
+					Iterator<Map.Entry<Integer, BinaryResourceValue>> actualValues = actual.values().entrySet().iterator();
+					for (Map.Entry<Integer, BinaryResourceValue> value : expected.values().entrySet()) {
+						Map.Entry<Integer, BinaryResourceValue> actualValue = actualValues.next();
+						assertEquals(rebase(value.getKey()), (int) actualValue.getKey());
+						assertValueRebased(value.getValue(), actualValue.getValue());
+					}
+				} else {
+					assertValueRebased(expected.value(), actual.value());
+				}
+			}
+		}
+	}
+
+	@Test
+	void testXmlReferencesRebased() throws IOException {
+		byte[] original = Files.readAllBytes(Paths.get("src/test/resources/normal/" + SAMPLE + "-normal.xml"));
+		byte[] bytes = original.clone();
+		assertTrue(ResourceIdRewriter.rewrite(bytes, REBASE) > 0);
+		List<XmlStartElementChunk> expectedElements = new ArrayList<>();
+		List<XmlStartElementChunk> actualElements = new ArrayList<>();
+		collect(new BinaryResourceFile(original).getChunks(), XmlStartElementChunk.class, expectedElements);
+		collect(new BinaryResourceFile(bytes).getChunks(), XmlStartElementChunk.class, actualElements);
+		assertEquals(expectedElements.size(), actualElements.size());
+		for (int i = 0; i < expectedElements.size(); i++) {
+			List<XmlAttribute> expected = expectedElements.get(i).getAttributes();
+			List<XmlAttribute> actual = actualElements.get(i).getAttributes();
+			for (int j = 0; j < expected.size(); j++)
+				assertValueRebased(expected.get(j).typedValue(), actual.get(j).typedValue());
+		}
+	}
+
+	private static void assertValueRebased(BinaryResourceValue expected, BinaryResourceValue actual) {
+		assertEquals(expected.type(), actual.type());
+		switch (expected.type()) {
+			case REFERENCE:
+			case ATTRIBUTE:
+			case DYNAMIC_REFERENCE:
+			case DYNAMIC_ATTRIBUTE:
+				assertEquals(rebase(expected.data()), actual.data());
+				break;
+			default:
+				assertEquals(expected.data(), actual.data());
+		}
+	}
+
+	private static int rebase(int id) {
+		return id == 0 ? 0 : REBASE.applyAsInt(id);
+	}
+
+	private static <T extends Chunk> void collect(List<Chunk> chunks, Class<T> type, List<T> results) {
+		for (Chunk chunk : chunks) {
+			if (type.isInstance(chunk))
+				results.add(type.cast(chunk));
+			if (chunk instanceof ChunkWithChunks)
+				collect(new ArrayList<>(((ChunkWithChunks) chunk).getChunks().values()), type, results);
+		}
+	}
+}
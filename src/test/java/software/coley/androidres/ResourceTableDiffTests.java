@@ -0,0 +1,121 @@
+package software.coley.androidres;
+
+import com.google.devrel.gmscore.tools.apk.arsc.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for computing and applying {@link ResourceTablePatch} deltas between resource tables.
+ */
+public class ResourceTableDiffTests {
+	private static final byte COPY = 1;
+	private static final byte INSERT = 2;
+
+	@ParameterizedTest
+	@MethodSource("getTableSamples")
+	void testUnchangedTableIsCopied(Path path) throws IOException {
+		byte[] bytes = Files.readAllBytes(path);
+		BinaryResourceFile oldFile = new BinaryResourceFile(bytes);
+		BinaryResourceFile newFile = new BinaryResourceFile(bytes);
+
+		ResourceTablePatch patch = ResourceTableDiff.diff(oldFile, newFile);
+		assertArrayEquals(newFile.toByteArray(), patch.apply(bytes));
+
+		// The whole table is a single copy from the old file
+		assertTrue(patch.isIdentity(), "Unchanged table should be an identity patch: " + patch);
+		assertEquals(bytes.length, patch.getCopiedByteCount());
+		assertEquals(0, patch.getInsertedByteCount());
+	}
+
+	@ParameterizedTest
+	@MethodSource("getTableSamples")
+	void testRemovedEntryRoundTrip(Path path) throws IOException {
+		byte[] bytes = Files.readAllBytes(path);
+		BinaryResourceFile oldFile = new BinaryResourceFile(bytes);
+		BinaryResourceFile newFile = new BinaryResourceFile(bytes);
+
+		// Drop the first entry of the first type chunk
+		ResourceTableChunk table = (ResourceTableChunk) newFile.getChunks().get(0);
+		TypeChunk type = table.getPackages().iterator().next().getTypeChunks().iterator().next();
+		Map.Entry<Integer, TypeChunk.Entry> first = type.getEntries().entrySet().iterator().next();
+		type.overrideEntry(first.getKey(), null);
+
+		ResourceTablePatch patch = ResourceTablePatch.fromByteArray(ResourceTableDiff.diff(oldFile, newFile).toByteArray());
+		byte[] expected = newFile.toByteArray();
+		assertArrayEquals(expected, patch.apply(bytes));
+		assertTrue(patch.getCopiedByteCount() > patch.getInsertedByteCount(),
+				"Most of the table should be copied from the old file: " + patch);
+	}
+
+	@Test
+	void testMalformedPatchesRejected() {
+		byte[] copy = operations(op -> op.put(COPY).putInt(0).putInt(4));
+		assertEquals(4, ResourceTablePatch.fromByteArray(patch(16, 4, 1, copy)).getNewSize());
+
+		// Truncated in the middle of an operation
+		byte[] valid = patch(16, 4, 1, copy);
+		assertThrows(IllegalArgumentException.class,
+				() -> ResourceTablePatch.fromByteArray(Arrays.copyOf(valid, valid.length - 1)));
+		assertThrows(IllegalArgumentException.class,
+				() -> ResourceTablePatch.fromByteArray(patch(16, 4, 2, copy)));
+
+		// Insert with a negative or truncated length
+		assertThrows(IllegalArgumentException.class, () -> ResourceTablePatch.fromByteArray(
+				patch(16, 0, 1, operations(op -> op.put(INSERT).putInt(-1)))));
+		assertThrows(IllegalArgumentException.class, () -> ResourceTablePatch.fromByteArray(
+				patch(16, 8, 1, operations(op -> op.put(INSERT).putInt(8).putInt(0)))));
+
+		// Copy whose end overflows past the old size check
+		assertThrows(IllegalArgumentException.class, () -> ResourceTablePatch.fromByteArray(
+				patch(16, 16, 1, operations(op -> op.put(COPY).putInt(Integer.MAX_VALUE).putInt(16)))));
+
+		// Operations which do not add up to the new size
+		assertThrows(IllegalArgumentException.class,
+				() -> ResourceTablePatch.fromByteArray(patch(16, 8, 1, copy)));
+	}
+
+	private static byte[] patch(int oldSize, int newSize, int operationCount, byte[] operations) {
+		ByteBuffer buffer = ByteBuffer.allocate(24 + operations.length).order(ByteOrder.LITTLE_ENDIAN);
+		buffer.putInt(0x54505241).putInt(1).putInt(oldSize).putInt(0).putInt(newSize).putInt(operationCount);
+		buffer.put(operations);
+		return buffer.array();
+	}
+
+	private static byte[] operations(Consumer<ByteBuffer> writer) {
+		ByteBuffer buffer = ByteBuffer.allocate(64).order(ByteOrder.LITTLE_ENDIAN);
+		writer.accept(buffer);
+		return Arrays.copyOf(buffer.array(), buffer.position());
+	}
+
+	/**
+	 * @return Regular tables. Tampered tables cannot be re-serialized, so only these are diffed.
+	 */
+	public static Stream<Arguments> getTableSamples() throws IOException {
+		return Files.walk(Paths.get("src/test/resources/normal"))
+				.filter(Files::isRegularFile)
+				.filter(p -> p.toString().endsWith(".arsc"))
+				.map(p -> () -> new Path[]{p});
+	}
+
+	public static Stream<Arguments> getJankyTableSamples() throws IOException {
+		return Files.walk(Paths.get("src/test/resources/janky"))
+				.filter(Files::isRegularFile)
+				.filter(p -> p.toString().endsWith(".arsc"))
+				.map(p -> () -> new Path[]{p});
+	}
+}
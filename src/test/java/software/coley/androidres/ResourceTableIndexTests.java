@@ -0,0 +1,81 @@
+package software.coley.androidres;
+
+import com.google.devrel.gmscore.tools.apk.arsc.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for {@link ResourceTableIndex} lookups and the {@link ResourceTableIndexCache}.
+ */
+public class ResourceTableIndexTests {
+	@ParameterizedTest
+	@MethodSource({"software.coley.androidres.ResourceTableDiffTests#getTableSamples",
+			"software.coley.androidres.ResourceTableDiffTests#getJankyTableSamples"})
+	void testCachedIndexMatchesModel(Path path, @TempDir Path cacheDir) throws IOException {
+		byte[] bytes = Files.readAllBytes(path);
+		ResourceTableIndexCache cache = new ResourceTableIndexCache(cacheDir, 16 * 1024 * 1024);
+		cache.open(bytes);
+		assertTrue(cache.getSize() > 0, "Index should have been written to the cache");
+
+		// Second open is served from the memory-mapped cache file
+		ResourceTableIndex index = cache.open(bytes);
+		ResourceTableChunk table = (ResourceTableChunk) new BinaryResourceFile(bytes).getChunks().get(0);
+		for (PackageChunk packageChunk : table.getPackages()) {
+			for (TypeChunk type : packageChunk.getTypeChunks()) {
+				for (Map.Entry<Integer, TypeChunk.Entry> entry : type.getEntries().entrySet()) {
+					int id = packageChunk.getId() << 24 | type.getId() << 16 | entry.getKey();
+					assertEquals(type.getTypeName(), index.getTypeName(id));
+					int slot = findSlot(index, id, type.getConfiguration());
+					assertTrue(slot >= 0, "Missing configuration for " + Integer.toHexString(id));
+					assertEquals(entry.getValue().value(), index.getValue(id, slot));
+				}
+			}
+		}
+	}
+
+	@Test
+	void testCorruptIndexRebuilt(@TempDir Path cacheDir) throws IOException {
+		byte[] bytes = Files.readAllBytes(Paths.get("src/test/resources/normal/" +
+				"37320455848ce4a2f35aef85085105b442e61fe2e889f32a7edee32aed2a2d3f-normal.arsc"));
+		ResourceTableIndexCache cache = new ResourceTableIndexCache(cacheDir, 16 * 1024 * 1024);
+		int id = 0x7f010000;
+		String keyName = cache.open(bytes).getKeyName(id);
+		assertNotNull(keyName);
+		Path indexPath;
+		try (Stream<Path> files = Files.list(cacheDir)) {
+			indexPath = files.filter(p -> p.toString().endsWith(".arsc-index")).findFirst().orElseThrow(AssertionError::new);
+		}
+		byte[] indexBytes = Files.readAllBytes(indexPath);
+
+		// Truncated after the header
+		Files.write(indexPath, Arrays.copyOf(indexBytes, indexBytes.length / 2));
+		assertEquals(keyName, cache.open(bytes).getKeyName(id));
+		assertArrayEquals(indexBytes, Files.readAllBytes(indexPath));
+
+		// Garbled position in the body
+		byte[] garbled = indexBytes.clone();
+		garbled[garbled.length - 1] ^= 0x7f;
+		Files.write(indexPath, garbled);
+		assertEquals(keyName, cache.open(bytes).getKeyName(id));
+		assertArrayEquals(indexBytes, Files.readAllBytes(indexPath));
+	}
+
+	private static int findSlot(ResourceTableIndex index, int id, BinaryResourceConfiguration config) {
+		for (int slot = 0; slot < index.getSlotCount(id); slot++)
+			if (config.equals(index.getConfiguration(index.getConfigurationIndex(id, slot))))
+				return slot;
+		return -1;
+	}
+}
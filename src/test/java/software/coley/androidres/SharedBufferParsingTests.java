@@ -0,0 +1,52 @@
+package software.coley.androidres;
+
+import com.google.devrel.gmscore.tools.apk.arsc.BinaryResourceFile;
+import com.google.devrel.gmscore.tools.apk.arsc.ParseOptions;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for parsing one shared, non-array-backed buffer from several threads at once.
+ */
+public class SharedBufferParsingTests {
+	@ParameterizedTest
+	@MethodSource({"software.coley.androidres.XmlDecodingTests#getNormalSamples", "getTableSample"})
+	void testConcurrentParsesOfDirectBuffer(Path path) throws Exception {
+		byte[] bytes = Files.readAllBytes(path);
+		byte[] expected = new BinaryResourceFile(bytes).toByteArray();
+		ByteBuffer shared = ByteBuffer.allocateDirect(bytes.length);
+		shared.put(bytes).flip();
+
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<byte[]>> results = new ArrayList<>();
+			for (int i = 0; i < 16; i++) {
+				ParseOptions options = ParseOptions.DEFAULT.withLazyEntries(i % 2 == 0);
+				results.add(executor.submit(() -> new BinaryResourceFile(shared, options).toByteArray()));
+			}
+			for (Future<byte[]> result : results)
+				assertArrayEquals(expected, result.get());
+		} finally {
+			executor.shutdown();
+		}
+		assertEquals(0, shared.position());
+		assertEquals(bytes.length, shared.limit());
+	}
+
+	public static Stream<Path> getTableSample() {
+		return Stream.of(Paths.get("src/test/resources/normal/37320455848ce4a2f35aef85085105b442e61fe2e889f32a7edee32aed2a2d3f-normal.arsc"));
+	}
+}
@@ -0,0 +1,90 @@
+package software.coley.androidres;
+
+import com.google.devrel.gmscore.tools.apk.arsc.*;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for sorting key string pools and looking up names in them by binary search.
+ */
+public class SortedKeyPoolTests {
+	private static final String TABLE = "src/test/resources/normal/" +
+			"37320455848ce4a2f35aef85085105b442e61fe2e889f32a7edee32aed2a2d3f-normal.arsc";
+
+	@Test
+	void testSortedKeysMatchOriginal() throws IOException {
+		byte[] bytes = Files.readAllBytes(Paths.get(TABLE));
+		ResourceTableChunk table = (ResourceTableChunk) new BinaryResourceFile(bytes).getChunks().get(0);
+		Map<Integer, String> expectedKeys = getKeys(table);
+		for (PackageChunk packageChunk : table.getPackages()) {
+			assertFalse(packageChunk.getKeyStringPool().isSorted());
+			packageChunk.sortKeyStringPool();
+		}
+
+		byte[] sortedBytes = table.toByteArray();
+		ResourceTableChunk sortedTable = (ResourceTableChunk) new BinaryResourceFile(sortedBytes).getChunks().get(0);
+		assertEquals(expectedKeys, getKeys(sortedTable));
+
+		ResourceTableIndex index = new ResourceTableIndex(
+				ByteBuffer.wrap(ResourceTableIndex.build(new BinaryResourceFile(sortedBytes))), sortedBytes);
+		int pool = 2; // The key pool of the first package
+		for (PackageChunk packageChunk : sortedTable.getPackages()) {
+			StringPoolChunk keys = packageChunk.getKeyStringPool();
+			assertTrue(keys.isSorted());
+			List<String> strings = new ArrayList<>();
+			for (int i = 0; i < keys.getStringCount(); i++)
+				strings.add(keys.getString(i));
+			assertEquals(strings.stream().sorted().distinct().collect(Collectors.toList()), strings);
+			for (int i = 0; i < strings.size(); i++) {
+				assertEquals(i, keys.indexOf(strings.get(i)));
+				assertEquals(i, index.indexOfString(pool, strings.get(i)));
+			}
+			assertEquals(-1, keys.indexOf("\uFFFFmissing"));
+			assertEquals(-1, index.indexOfString(pool, "\uFFFFmissing"));
+			pool += 2;
+		}
+	}
+
+	@Test
+	void testFilteredPackageNotSorted() throws IOException {
+		ParseFilter filter = new ParseFilter() {
+			@Override
+			public boolean acceptConfiguration(BinaryResourceConfiguration configuration) {
+				return configuration.isDefault();
+			}
+		};
+		byte[] bytes = Files.readAllBytes(Paths.get(TABLE));
+		BinaryResourceFile file = new BinaryResourceFile(bytes, ParseOptions.DEFAULT.withFilter(filter));
+		ResourceTableChunk table = (ResourceTableChunk) file.getChunks().get(0);
+		PackageChunk packageChunk = table.getPackages().iterator().next();
+		assertThrows(IllegalStateException.class, packageChunk::sortKeyStringPool);
+
+		// Nothing was renumbered, so the table is written back unchanged
+		assertFalse(packageChunk.getKeyStringPool().isSorted());
+		assertArrayEquals(bytes, table.toByteArray());
+	}
+
+	/**
+	 * @return Map of resource ids to their key names in the first configuration which has an entry for them.
+	 */
+	private static Map<Integer, String> getKeys(ResourceTableChunk table) {
+		Map<Integer, String> keys = new HashMap<>();
+		for (PackageChunk packageChunk : table.getPackages())
+			for (TypeChunk type : packageChunk.getTypeChunks())
+				for (Map.Entry<Integer, TypeChunk.Entry> entry : type.getEntries().entrySet())
+					keys.putIfAbsent(packageChunk.getId() << 24 | type.getId() << 16 | entry.getKey(),
+							entry.getValue().key());
+		return keys;
+	}
+}
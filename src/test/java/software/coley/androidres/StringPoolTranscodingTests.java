@@ -0,0 +1,79 @@
+package software.coley.androidres;
+
+import com.google.devrel.gmscore.tools.apk.arsc.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import software.coley.android.xml.NoopAndroidResourceProvider;
+import software.coley.android.xml.XmlDecoder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for transcoding UTF-16 string pools to UTF-8 when shrinking.
+ */
+public class StringPoolTranscodingTests {
+	@ParameterizedTest
+	@MethodSource("software.coley.androidres.XmlDecodingTests#getNormalSamples")
+	void testXmlPoolTranscoded(Path path) throws IOException {
+		BinaryResourceFile file = new BinaryResourceFile(Files.readAllBytes(path));
+		StringPoolChunk pool = getStringPools(file).get(0);
+		assertFalse(pool.isUTF8());
+
+		byte[] shrunk = file.toByteArray(true);
+		BinaryResourceFile shrunkFile = new BinaryResourceFile(shrunk);
+		StringPoolChunk shrunkPool = getStringPools(shrunkFile).get(0);
+		assertTrue(shrunkPool.isUTF8());
+		assertTrue(shrunkPool.getOriginalChunkSize() < pool.getOriginalChunkSize());
+		assertStringsEqual(pool, shrunkPool);
+		assertEquals(XmlDecoder.decode(file, NoopAndroidResourceProvider.INSTANCE, null),
+				XmlDecoder.decode(shrunkFile, NoopAndroidResourceProvider.INSTANCE, null));
+
+		// Without shrinking, the encoding is kept.
+		assertFalse(getStringPools(new BinaryResourceFile(file.toByteArray())).get(0).isUTF8());
+	}
+
+	@Test
+	void testTablePoolsTranscoded() throws IOException {
+		BinaryResourceFile file = new BinaryResourceFile(Files.readAllBytes(Paths.get("src/test/resources/normal/" +
+				"37320455848ce4a2f35aef85085105b442e61fe2e889f32a7edee32aed2a2d3f-normal.arsc")));
+		List<StringPoolChunk> pools = getStringPools(file);
+		assertTrue(pools.stream().anyMatch(pool -> !pool.isUTF8()));
+
+		List<StringPoolChunk> shrunkPools = getStringPools(new BinaryResourceFile(file.toByteArray(true)));
+		assertEquals(pools.size(), shrunkPools.size());
+		for (int i = 0; i < pools.size(); i++) {
+			assertTrue(shrunkPools.get(i).isUTF8());
+			assertStringsEqual(pools.get(i), shrunkPools.get(i));
+		}
+	}
+
+	private static void assertStringsEqual(StringPoolChunk expected, StringPoolChunk actual) {
+		assertEquals(expected.getStringCount(), actual.getStringCount());
+		for (int i = 0; i < expected.getStringCount(); i++)
+			assertEquals(expected.getString(i), actual.getString(i));
+	}
+
+	private static List<StringPoolChunk> getStringPools(BinaryResourceFile file) {
+		List<StringPoolChunk> pools = new ArrayList<>();
+		collect(file.getChunks(), pools);
+		return pools;
+	}
+
+	private static void collect(Collection<Chunk> chunks, List<StringPoolChunk> pools) {
+		for (Chunk chunk : chunks) {
+			if (chunk instanceof StringPoolChunk)
+				pools.add((StringPoolChunk) chunk);
+			else if (chunk instanceof ChunkWithChunks)
+				collect(((ChunkWithChunks) chunk).getChunks().values(), pools);
+		}
+	}
+}
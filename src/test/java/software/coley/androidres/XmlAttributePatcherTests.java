@@ -0,0 +1,112 @@
+package software.coley.androidres;
+
+import com.google.devrel.gmscore.tools.apk.arsc.BinaryResourceFile;
+import com.google.devrel.gmscore.tools.apk.arsc.Chunk;
+import com.google.devrel.gmscore.tools.apk.arsc.StringPoolChunk;
+import com.google.devrel.gmscore.tools.apk.arsc.XmlChunk;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import software.coley.android.xml.ManifestSummary;
+import software.coley.android.xml.XmlAttributePatcher;
+import software.coley.android.xml.XmlDecoder;
+import software.coley.android.xml.XmlQuery;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for patching attribute values of binary XML in place with {@link XmlAttributePatcher}.
+ */
+public class XmlAttributePatcherTests {
+	private static final int ATTR_EXPORTED = 0x01010010;
+	private static final int ATTR_VERSION_CODE = 0x0101021b;
+	private static final int ATTR_VERSION_NAME = 0x0101021c;
+
+	@ParameterizedTest
+	@MethodSource({"software.coley.androidres.XmlDecodingTests#getNormalSamples",
+			"software.coley.androidres.XmlDecodingTests#getJankySamples"})
+	void testPatchVersion(Path path) throws IOException {
+		byte[] bytes = Files.readAllBytes(path);
+		ManifestSummary original = ManifestSummary.read(bytes.clone());
+		int originalCount = countChunks(bytes);
+
+		XmlAttributePatcher patcher = new XmlAttributePatcher(bytes);
+		assertEquals(1, patcher.setInt("/manifest", ATTR_VERSION_CODE, 4242));
+		assertSame(bytes, patcher.toByteArray(), "Typed values should be patched in place");
+		assertEquals(1, patcher.setString("/manifest", ATTR_VERSION_NAME, "4242-patched"));
+		byte[] patched = patcher.toByteArray();
+		assertTrue(patched.length > bytes.length);
+
+		ManifestSummary summary = ManifestSummary.read(patched);
+		assertEquals(4242, summary.getVersionCode());
+		assertEquals("4242-patched", summary.getVersionName());
+		assertEquals(original.getPackageName(), summary.getPackageName());
+		assertEquals(original.getPermissions(), summary.getPermissions());
+		assertEquals(original.getComponents(), summary.getComponents());
+
+		// The model must still read the whole document
+		assertEquals(originalCount, countChunks(patched));
+		assertTrue(XmlDecoder.decode(new BinaryResourceFile(patched), AndroidResourceProviderImpl.getAndroidBase(), null)
+				.contains("4242-patched"));
+	}
+
+	@Test
+	void testPatchExistingStringAndBooleans() throws IOException {
+		byte[] bytes = Files.readAllBytes(Paths.get("src/test/resources/normal/" +
+				"69334c3999ae9ef77194242e3e61ccab7102b0c67de644f9634e5a55c27043ef.xml"));
+		XmlAttributePatcher patcher = new XmlAttributePatcher(bytes);
+		int exported = XmlQuery.compile("//activity/@android:exported").selectAll(bytes).size();
+		assertTrue(exported > 0);
+		assertEquals(exported, patcher.setBoolean("//activity", ATTR_EXPORTED, false));
+		// Strings already in the pool are reused, so the document does not grow
+		String packageName = XmlQuery.compile("/manifest/@package").selectFirst(bytes);
+		assertEquals(1, patcher.setString("/manifest", ATTR_VERSION_NAME, packageName));
+		assertSame(bytes, patcher.toByteArray());
+
+		ManifestSummary summary = ManifestSummary.read(bytes);
+		assertEquals(packageName, summary.getVersionName());
+		for (ManifestSummary.Component component : summary.getComponents())
+			if (component.getKind() == ManifestSummary.ComponentKind.ACTIVITY && component.getExported() != null)
+				assertFalse(component.getExported());
+		assertEquals(0, patcher.setInt("/missing", ATTR_VERSION_CODE, 1));
+		assertThrows(IllegalArgumentException.class, () -> patcher.setInt("/manifest/@package", ATTR_VERSION_CODE, 1));
+	}
+
+	@Test
+	void testSortedFlagClearedWhenStringsAppended() throws IOException {
+		byte[] bytes = Files.readAllBytes(Paths.get("src/test/resources/normal/" +
+				"37320455848ce4a2f35aef85085105b442e61fe2e889f32a7edee32aed2a2d3f-normal.xml"));
+		int poolOffset = getStringPool(bytes).getOffset();
+		ByteBuffer buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+		buffer.putInt(poolOffset + 16, buffer.getInt(poolOffset + 16) | 1);
+		assertTrue(getStringPool(bytes).isSorted());
+
+		XmlAttributePatcher patcher = new XmlAttributePatcher(bytes);
+		assertEquals(1, patcher.setString("/manifest", ATTR_VERSION_NAME, "4242-patched"));
+		byte[] patched = patcher.toByteArray();
+		StringPoolChunk pool = getStringPool(patched);
+		assertFalse(pool.isSorted());
+		assertEquals(pool.getStringCount() - 1, pool.indexOf("4242-patched"));
+		// Only the sorted flag is changed
+		int flags = ByteBuffer.wrap(patched).order(ByteOrder.LITTLE_ENDIAN).getInt(poolOffset + 16);
+		assertEquals(buffer.getInt(poolOffset + 16) & ~1, flags);
+	}
+
+	private static StringPoolChunk getStringPool(byte[] bytes) {
+		for (Chunk chunk : ((XmlChunk) new BinaryResourceFile(bytes).getChunks().get(0)).getChunkList())
+			if (chunk instanceof StringPoolChunk)
+				return (StringPoolChunk) chunk;
+		throw new AssertionError("No string pool");
+	}
+
+	private static int countChunks(byte[] bytes) {
+		return ((XmlChunk) new BinaryResourceFile(bytes).getChunks().get(0)).getChunkCount();
+	}
+}
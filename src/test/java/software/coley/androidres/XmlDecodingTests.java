@@ -1,6 +1,10 @@
 package software.coley.androidres;
 
 import com.google.devrel.gmscore.tools.apk.arsc.BinaryResourceFile;
+import com.google.devrel.gmscore.tools.apk.arsc.Chunk;
+import com.google.devrel.gmscore.tools.apk.arsc.XmlChunk;
+import com.google.devrel.gmscore.tools.apk.arsc.XmlResourceMapChunk;
+import com.google.devrel.gmscore.tools.apk.arsc.XmlStartElementChunk;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
@@ -14,6 +18,8 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.stream.Stream;
 
+import static org.junit.jupiter.api.Assertions.*;
+
 /**
  * Tests showcasing XML decoding capabilities, even with tampered inputs.
  *
@@ -37,6 +43,30 @@ public class XmlDecodingTests {
 		printDecodedXml(path);
 	}
 
+	@ParameterizedTest
+	@MethodSource({"getNormalSamples", "getJankySamples"})
+	void testAttributeLookupById(Path path) throws IOException {
+		BinaryResourceFile binaryResource = new BinaryResourceFile(Files.readAllBytes(path));
+		XmlChunk xmlChunk = (XmlChunk) binaryResource.getChunks().get(0);
+		XmlResourceMapChunk resourceMap = xmlChunk.getResourceMap();
+		assertNotNull(resourceMap);
+		for (Chunk chunk : xmlChunk.getChunkList()) {
+			if (!(chunk instanceof XmlStartElementChunk))
+				continue;
+			XmlStartElementChunk element = (XmlStartElementChunk) chunk;
+			for (int i = 0; i < element.getAttributeCount(); i++) {
+				int id = resourceMap.getRawResourceId(element.getAttributeNameIndex(i));
+				if (id == 0)
+					continue;
+				// Tampered documents can repeat an attribute, in which case the first is found
+				int found = element.indexOfAttribute(id);
+				assertTrue(found >= 0 && found <= i, element.getName() + " " + element.getAttributeName(i));
+				assertEquals(id, resourceMap.getRawResourceId(element.getAttributeNameIndex(found)));
+			}
+			assertEquals(XmlStartElementChunk.NO_ATTRIBUTE, element.indexOfAttribute(0x7fffffff));
+		}
+	}
+
 	private static void printDecodedXml(@Nonnull Path path) throws IOException {
 		byte[] bytes = Files.readAllBytes(path);
 		BinaryResourceFile binaryResource = new BinaryResourceFile(bytes);
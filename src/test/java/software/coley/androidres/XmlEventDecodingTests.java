@@ -0,0 +1,91 @@
+package software.coley.androidres;
+
+import com.google.devrel.gmscore.tools.apk.arsc.BinaryResourceFile;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.xml.sax.InputSource;
+import software.coley.android.xml.XmlDecoder;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamWriter;
+import javax.xml.transform.dom.DOMResult;
+import javax.xml.transform.sax.SAXTransformerFactory;
+import javax.xml.transform.sax.TransformerHandler;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for decoding binary XML to SAX and StAX events, compared against the decoded text.
+ */
+public class XmlEventDecodingTests {
+	private static final AndroidResourceProviderImpl ANDROID_BASE = AndroidResourceProviderImpl.getAndroidBase();
+
+	@ParameterizedTest
+	@MethodSource("software.coley.androidres.XmlDecodingTests#getNormalSamples")
+	void testSaxMatchesText(Path path) throws Exception {
+		BinaryResourceFile binaryResource = new BinaryResourceFile(Files.readAllBytes(path));
+		Document expected = parse(XmlDecoder.decode(binaryResource, ANDROID_BASE, null));
+
+		TransformerHandler handler = ((SAXTransformerFactory) SAXTransformerFactory.newInstance()).newTransformerHandler();
+		DOMResult result = new DOMResult();
+		handler.setResult(result);
+		XmlDecoder.decode(binaryResource, ANDROID_BASE, null, handler);
+		assertEquals(describe(expected.getDocumentElement()), describe(((Document) result.getNode()).getDocumentElement()));
+	}
+
+	@ParameterizedTest
+	@MethodSource("software.coley.androidres.XmlDecodingTests#getNormalSamples")
+	void testStaxMatchesText(Path path) throws Exception {
+		BinaryResourceFile binaryResource = new BinaryResourceFile(Files.readAllBytes(path));
+		Document expected = parse(XmlDecoder.decode(binaryResource, ANDROID_BASE, null));
+
+		StringWriter out = new StringWriter();
+		XMLStreamWriter writer = XMLOutputFactory.newInstance().createXMLStreamWriter(out);
+		XmlDecoder.decode(binaryResource, ANDROID_BASE, null, writer);
+		assertEquals(describe(expected.getDocumentElement()), describe(parse(out.toString()).getDocumentElement()));
+	}
+
+	private static Document parse(String xml) throws Exception {
+		DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+		factory.setNamespaceAware(true);
+		return factory.newDocumentBuilder().parse(new InputSource(new StringReader(xml)));
+	}
+
+	/**
+	 * @return Description of the element tree, with namespaced names and attributes in a stable order.
+	 */
+	private static String describe(Element element) {
+		StringBuilder sb = new StringBuilder();
+		describe(element, sb);
+		return sb.toString();
+	}
+
+	private static void describe(Element element, StringBuilder sb) {
+		sb.append('<').append(element.getNamespaceURI()).append('|').append(element.getLocalName());
+		Map<String, String> attributes = new TreeMap<>();
+		NamedNodeMap attributeNodes = element.getAttributes();
+		for (int i = 0; i < attributeNodes.getLength(); i++) {
+			Node attribute = attributeNodes.item(i);
+			if (!"http://www.w3.org/2000/xmlns/".equals(attribute.getNamespaceURI()))
+				attributes.put(attribute.getNamespaceURI() + '|' + attribute.getLocalName(), attribute.getNodeValue());
+		}
+		sb.append(attributes).append('>');
+		NodeList children = element.getChildNodes();
+		for (int i = 0; i < children.getLength(); i++)
+			if (children.item(i) instanceof Element)
+				describe((Element) children.item(i), sb);
+		sb.append("</>");
+	}
+}
@@ -0,0 +1,61 @@
+package software.coley.androidres;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import software.coley.android.xml.XmlMinifier;
+import software.coley.android.xml.XmlPullReader;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for {@link XmlMinifier} stripping debug data and unused strings from binary XML.
+ */
+public class XmlMinifierTests {
+	@ParameterizedTest
+	@MethodSource({"software.coley.androidres.XmlDecodingTests#getNormalSamples",
+			"software.coley.androidres.XmlDecodingTests#getJankySamples"})
+	void testMinifiedDocumentReadsTheSame(Path path) throws IOException {
+		byte[] bytes = Files.readAllBytes(path);
+		byte[] minified = XmlMinifier.minify(bytes);
+		assertTrue(minified.length <= bytes.length);
+		assertEquals(describe(bytes, false), describe(minified, false));
+
+		// Nothing is left to strip from a minified document.
+		assertArrayEquals(minified, XmlMinifier.minify(minified));
+		String description = describe(minified, true);
+		assertFalse(description.matches("(?s).*line=[1-9].*"), description);
+		assertTrue(new XmlPullReader(minified).getStringPool().getStringCount()
+				<= new XmlPullReader(bytes).getStringPool().getStringCount());
+	}
+
+	/**
+	 * @return Description of the document's elements and attributes as seen by {@link XmlPullReader}.
+	 */
+	private static String describe(byte[] bytes, boolean lineNumbers) {
+		XmlPullReader reader = new XmlPullReader(bytes);
+		StringBuilder sb = new StringBuilder();
+		int event;
+		while ((event = reader.next()) != XmlPullReader.END_DOCUMENT) {
+			if (lineNumbers)
+				sb.append("line=").append(reader.getLineNumber());
+			if (event == XmlPullReader.START_TAG) {
+				sb.append('<').append(reader.getNamespace()).append('|').append(reader.getName());
+				for (int i = 0; i < reader.getAttributeCount(); i++)
+					sb.append(' ').append(reader.getAttributeNamespace(i)).append('|')
+							.append(reader.getAttributeName(i)).append('|')
+							.append(Integer.toHexString(reader.getAttributeNameResource(i))).append('=')
+							.append(reader.getAttributeValue(i));
+				sb.append(">\n");
+			} else if (event == XmlPullReader.END_TAG) {
+				sb.append("</").append(reader.getName()).append(">\n");
+			} else if (event == XmlPullReader.TEXT) {
+				sb.append(reader.getText()).append('\n');
+			}
+		}
+		return sb.toString();
+	}
+}
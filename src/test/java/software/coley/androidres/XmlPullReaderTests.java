@@ -0,0 +1,89 @@
+package software.coley.androidres;
+
+import com.google.devrel.gmscore.tools.apk.arsc.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import software.coley.android.xml.XmlPullReader;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for reading binary XML with {@link XmlPullReader}, compared against the {@link XmlChunk} model.
+ */
+public class XmlPullReaderTests {
+	@ParameterizedTest
+	@MethodSource({"software.coley.androidres.XmlDecodingTests#getNormalSamples",
+			"software.coley.androidres.XmlDecodingTests#getJankySamples"})
+	void testReaderMatchesModel(Path path) throws IOException {
+		byte[] bytes = Files.readAllBytes(path);
+		XmlChunk xmlChunk = (XmlChunk) new BinaryResourceFile(bytes).getChunks().get(0);
+		XmlResourceMapChunk resourceMap = xmlChunk.getResourceMap();
+		XmlPullReader reader = new XmlPullReader(bytes);
+		assertEquals(XmlPullReader.START_DOCUMENT, reader.getEventType());
+
+		int depth = 0;
+		for (Chunk chunk : xmlChunk.getChunkList()) {
+			if (chunk instanceof XmlStartElementChunk) {
+				XmlStartElementChunk element = (XmlStartElementChunk) chunk;
+				assertEquals(XmlPullReader.START_TAG, reader.next());
+				assertEquals(++depth, reader.getDepth());
+				assertEquals(element.getLineNumber(), reader.getLineNumber());
+				assertEquals(element.getNamespace(), reader.getNamespace());
+				assertEquals(element.getName(), reader.getName());
+				assertEquals(element.getAttributeCount(), reader.getAttributeCount());
+				for (int i = 0; i < element.getAttributeCount(); i++) {
+					XmlAttribute attribute = element.getAttribute(i);
+					assertEquals(attribute.namespace(), reader.getAttributeNamespace(i));
+					assertEquals(attribute.name(), reader.getAttributeName(i));
+					assertEquals(attribute.typedValue().type(), reader.getAttributeValueType(i));
+					assertEquals(attribute.typedValue().data(), reader.getAttributeValueData(i));
+					assertEquals(resourceMap.getRawResourceId(attribute.nameIndex()), reader.getAttributeNameResource(i));
+					if (attribute.rawValueIndex() != -1)
+						assertEquals(attribute.rawValue(), reader.getAttributeValue(i));
+				}
+			} else if (chunk instanceof XmlEndElementChunk) {
+				assertEquals(XmlPullReader.END_TAG, reader.next());
+				assertEquals(depth--, reader.getDepth());
+				assertEquals(((XmlEndElementChunk) chunk).getName(), reader.getName());
+			} else if (chunk instanceof XmlCdataChunk) {
+				assertEquals(XmlPullReader.TEXT, reader.next());
+				assertEquals(((XmlCdataChunk) chunk).getRawValue(), reader.getText());
+			}
+		}
+		assertEquals(XmlPullReader.END_DOCUMENT, reader.next());
+		assertEquals(XmlPullReader.END_DOCUMENT, reader.next());
+	}
+
+	@Test
+	void testReadManifestValues() throws IOException {
+		byte[] bytes = Files.readAllBytes(Paths.get("src/test/resources/normal/" +
+				"37320455848ce4a2f35aef85085105b442e61fe2e889f32a7edee32aed2a2d3f-normal.xml"));
+		XmlPullReader reader = new XmlPullReader(bytes);
+		assertEquals(XmlPullReader.START_TAG, reader.next());
+		assertEquals("manifest", reader.getName());
+
+		int packageIndex = -1;
+		for (int i = 0; i < reader.getAttributeCount(); i++)
+			if (reader.getAttributeName(i).equals("package"))
+				packageIndex = i;
+		assertNotEquals(-1, packageIndex);
+		assertFalse(reader.getAttributeValue(packageIndex).isEmpty());
+
+		boolean foundApplication = false;
+		while (reader.next() != XmlPullReader.END_DOCUMENT) {
+			if (reader.getEventType() == XmlPullReader.START_TAG && "application".equals(reader.getName())) {
+				foundApplication = true;
+				assertEquals(2, reader.getDepth());
+			}
+		}
+		assertTrue(foundApplication);
+		assertEquals(-1, reader.getAttributeCount());
+		assertThrows(IllegalStateException.class, () -> reader.getAttributeName(0));
+	}
+}
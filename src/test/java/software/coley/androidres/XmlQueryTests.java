@@ -0,0 +1,83 @@
+package software.coley.androidres;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import software.coley.android.xml.ManifestSummary;
+import software.coley.android.xml.XmlPullReader;
+import software.coley.android.xml.XmlQuery;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for evaluating {@link XmlQuery} paths over binary XML.
+ */
+public class XmlQueryTests {
+	private static final String SAMPLE = "37320455848ce4a2f35aef85085105b442e61fe2e889f32a7edee32aed2a2d3f";
+
+	@ParameterizedTest
+	@MethodSource("software.coley.androidres.XmlDecodingTests#getNormalSamples")
+	void testQueriesMatchSummary(Path path) throws IOException {
+		byte[] bytes = Files.readAllBytes(path);
+		ManifestSummary summary = ManifestSummary.read(bytes);
+		assertEquals(summary.getPackageName(), XmlQuery.compile("/manifest/@package").selectFirst(bytes));
+		List<String> permissions = XmlQuery.compile("/manifest/uses-permission/@android:name").selectAll(bytes);
+		permissions.addAll(XmlQuery.compile("/manifest/uses-permission-sdk-23/@android:name").selectAll(bytes));
+		assertEquals(summary.getPermissions().size(), permissions.size());
+		assertTrue(summary.getPermissions().containsAll(permissions));
+		List<String> activities = summary.getComponents().stream()
+				.filter(c -> c.getKind() == ManifestSummary.ComponentKind.ACTIVITY)
+				.map(ManifestSummary.Component::getName)
+				.collect(Collectors.toList());
+		assertEquals(activities, XmlQuery.compile("/manifest/application/activity/@android:name").selectAll(bytes));
+		assertEquals(activities, XmlQuery.compile("//activity/@0x01010003").selectAll(bytes));
+	}
+
+	@Test
+	void testPredicates() throws IOException {
+		byte[] bytes = Files.readAllBytes(Paths.get("src/test/resources/normal/" +
+				"69334c3999ae9ef77194242e3e61ccab7102b0c67de644f9634e5a55c27043ef.xml"));
+		assertEquals("com.example.demoapp.MainActivity",
+				XmlQuery.compile("//activity[@android:exported='true']/@android:name").selectFirst(bytes));
+		assertEquals("action",
+				XmlQuery.compile("//intent-filter/action[@android:name='android.intent.action.MAIN']").selectFirst(bytes));
+		assertNull(XmlQuery.compile("//action[@android:name='missing']").selectFirst(bytes));
+		assertTrue(XmlQuery.compile("//intent-filter//*").selectAll(bytes).contains("category"));
+	}
+
+	@Test
+	void testTamperedDocumentMatchesById() throws IOException {
+		XmlQuery query = XmlQuery.compile("//@0x01010003");
+		byte[] normal = Files.readAllBytes(Paths.get("src/test/resources/normal/" + SAMPLE + "-normal.xml"));
+		byte[] janky = Files.readAllBytes(Paths.get("src/test/resources/janky/" + SAMPLE + ".xml"));
+		List<String> names = query.selectAll(normal);
+		assertFalse(names.isEmpty());
+		assertEquals(names, query.selectAll(janky));
+	}
+
+	@Test
+	void testEvaluationStopsEarly() throws IOException {
+		byte[] bytes = Files.readAllBytes(Paths.get("src/test/resources/normal/" + SAMPLE + "-normal.xml"));
+		XmlPullReader reader = new XmlPullReader(bytes);
+		int[] matches = new int[1];
+		assertFalse(XmlQuery.compile("//*").evaluate(reader, (r, attributeIndex) -> ++matches[0] < 2));
+		assertEquals(2, matches[0]);
+		assertEquals(2, reader.getDepth());
+	}
+
+	@Test
+	void testInvalidPaths() {
+		assertThrows(IllegalArgumentException.class, () -> XmlQuery.compile("manifest"));
+		assertThrows(IllegalArgumentException.class, () -> XmlQuery.compile("/manifest[@package"));
+		assertThrows(IllegalArgumentException.class, () -> XmlQuery.compile("/manifest/@unknown:name"));
+		assertThrows(IllegalArgumentException.class, () -> XmlQuery.compile("/manifest/@package/x"));
+		assertThrows(IllegalArgumentException.class, () -> XmlQuery.compile("/@package"));
+	}
+}
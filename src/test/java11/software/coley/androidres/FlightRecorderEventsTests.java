@@ -0,0 +1,63 @@
+package software.coley.androidres;
+
+import com.google.devrel.gmscore.tools.apk.arsc.ArscBlamer;
+import com.google.devrel.gmscore.tools.apk.arsc.BinaryResourceFile;
+import com.google.devrel.gmscore.tools.apk.arsc.FlightRecorderEvents;
+import com.google.devrel.gmscore.tools.apk.arsc.ResourceTableChunk;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import software.coley.android.xml.XmlDecoder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the Java 11 version of {@link FlightRecorderEvents}, which is only compiled and tested with the
+ * {@code multi-release} profile.
+ */
+public class FlightRecorderEventsTests {
+	private static final String SAMPLE = "src/test/resources/normal/" +
+			"37320455848ce4a2f35aef85085105b442e61fe2e889f32a7edee32aed2a2d3f-normal";
+
+	@Test
+	void testEventsRecorded(@TempDir Path dir) throws IOException {
+		byte[] table = Files.readAllBytes(Paths.get(SAMPLE + ".arsc"));
+		byte[] xml = Files.readAllBytes(Paths.get(SAMPLE + ".xml"));
+		Path dump = dir.resolve("events.jfr");
+		try (Recording recording = new Recording()) {
+			for (String name : new String[]{"Parse", "XmlDecode", "Serialize", "Blame"})
+				recording.enable("binaryresources." + name).withThreshold(Duration.ZERO);
+			recording.start();
+			BinaryResourceFile tableFile = new BinaryResourceFile(table);
+			tableFile.toByteArray(true);
+			new ArscBlamer((ResourceTableChunk) tableFile.getChunks().get(0)).blame();
+			XmlDecoder.decode(new BinaryResourceFile(xml), AndroidResourceProviderImpl.getAndroidBase(), null);
+			recording.stop();
+			recording.dump(dump);
+		}
+
+		List<RecordedEvent> events = RecordingFile.readAllEvents(dump);
+		List<RecordedEvent> parses = named(events, "binaryresources.Parse");
+		assertEquals(2, parses.size());
+		assertTrue(parses.stream().anyMatch(e -> e.getInt("size") == table.length));
+		RecordedEvent serialize = named(events, "binaryresources.Serialize").get(0);
+		assertEquals("TABLE", serialize.getString("chunkType"));
+		assertTrue(serialize.getBoolean("shrink"));
+		assertTrue(named(events, "binaryresources.Blame").get(0).getInt("resourceCount") > 0);
+		assertTrue(named(events, "binaryresources.XmlDecode").get(0).getInt("length") > 0);
+	}
+
+	private static List<RecordedEvent> named(List<RecordedEvent> events, String name) {
+		return events.stream().filter(e -> e.getEventType().getName().equals(name)).collect(Collectors.toList());
+	}
+}